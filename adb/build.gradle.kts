@@ -0,0 +1,33 @@
+// Протокольный движок ADB без зависимостей от Android: тесты и JMH бенчмарки на обычной JVM
+plugins {
+    `java-library`
+    `java-test-fixtures`
+    alias(libs.plugins.jmh)
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+tasks.withType<JavaCompile>().configureEach {
+    options.encoding = "UTF-8"
+}
+
+dependencies {
+    implementation(libs.lz4.java)
+    testImplementation(libs.junit)
+    // FakeAdbServer сжимает и распаковывает sync v2 сам
+    testFixturesImplementation(libs.lz4.java)
+    jmhImplementation(testFixtures(project(":adb")))
+}
+
+// ./gradlew :adb:jmh -- результаты в build/results/jmh/results.json
+jmh {
+    jmhVersion.set(libs.versions.jmh)
+    profilers.add("gc")
+    fork.set(1)
+    warmupIterations.set(3)
+    iterations.set(5)
+    resultFormat.set("JSON")
+}
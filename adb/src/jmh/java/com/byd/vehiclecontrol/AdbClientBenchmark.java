@@ -0,0 +1,70 @@
+package com.byd.vehiclecontrol;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Задержки AdbClient против FakeAdbServer на loopback: рукопожатие с подписью
+ * и полный цикл команды через exec:, shell,v2 и интерактивный shell.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class AdbClientBenchmark {
+
+    private FakeAdbServer server;
+    private AdbSigner signer;
+    private AdbEventLoop loop;
+    private AdbClient client;
+    private AdbClient shellClient;
+
+    @Setup
+    public void setUp() throws IOException, InterruptedException {
+        server = new FakeAdbServer().setResponder(command -> "ok\n");
+
+        // Ключ, который сервер принимает: рукопожатие идет по пути с подписью
+        signer = FakeAdbServer.getSigner();
+        signer.prewarm();
+
+        loop = AdbEventLoop.getDefault();
+        client = AdbClient.connect(server.getHost(), server.getPort(), loop, signer);
+        shellClient = AdbClient.connectShell(server.getHost(), server.getPort());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        client.close();
+        shellClient.close();
+        server.close();
+    }
+
+    @Benchmark
+    public AdbHandshakeTiming handshake() throws IOException {
+        try (AdbClient connection = AdbClient.connect(server.getHost(), server.getPort(), loop, signer)) {
+            return connection.getHandshakeTiming();
+        }
+    }
+
+    @Benchmark
+    public String execRoundTrip() throws IOException {
+        return client.exec("echo ok");
+    }
+
+    @Benchmark
+    public AdbShellResult shellV2RoundTrip() throws IOException {
+        return client.executeShell("echo ok");
+    }
+
+    @Benchmark
+    public String interactiveShellRoundTrip() throws IOException {
+        return shellClient.executeCommand("echo ok");
+    }
+}
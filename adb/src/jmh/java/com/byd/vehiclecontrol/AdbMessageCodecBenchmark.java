@@ -0,0 +1,79 @@
+package com.byd.vehiclecontrol;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Пропускная способность кодирования и разбора ADB сообщений (бывшие generateMessage/readMessage)
+ * и расчета контрольной суммы. Выделения памяти на сообщение - с профилировщиком gc (gc.alloc.rate.norm).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class AdbMessageCodecBenchmark {
+
+    private static final int CMD_WRTE = 0x45545257;
+    // Сообщений в одном пакете для разбора
+    private static final int BATCH = 64;
+
+    @Param({"64", "4096", "262144"})
+    public int payloadSize;
+
+    @Param({"true", "false"})
+    public boolean checksum;
+
+    private ByteBuffer header;
+    private ByteBuffer payload;
+    private ByteBuffer wire;
+    private AdbMessageCodec.Decoder decoder;
+
+    @Setup
+    public void setUp() {
+        byte[] data = new byte[payloadSize];
+        new Random(1).nextBytes(data);
+        payload = ByteBuffer.wrap(data);
+        header = ByteBuffer.allocateDirect(AdbMessageCodec.HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+        wire = ByteBuffer.allocateDirect(BATCH * (AdbMessageCodec.HEADER_SIZE + payloadSize));
+        for (int i = 0; i < BATCH; i++) {
+            AdbMessageCodec.encodeHeader(header, CMD_WRTE, 1, 2, payload, checksum);
+            wire.put(header);
+            wire.put(payload.duplicate());
+        }
+        wire.flip();
+
+        decoder = new AdbMessageCodec.Decoder(new AdbBufferPool());
+        decoder.setVerifyChecksum(checksum);
+    }
+
+    @Benchmark
+    public ByteBuffer encode() {
+        AdbMessageCodec.encodeHeader(header, CMD_WRTE, 1, 2, payload, checksum);
+        return header;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void decode(Blackhole blackhole) throws IOException {
+        wire.rewind();
+        decoder.decode(wire, message -> blackhole.consume(message.arg0));
+    }
+
+    @Benchmark
+    public int checksumOnly() {
+        return AdbMessageCodec.checksum(payload);
+    }
+}
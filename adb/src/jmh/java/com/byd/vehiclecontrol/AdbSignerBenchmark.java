@@ -0,0 +1,43 @@
+package com.byd.vehiclecontrol;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Подпись AUTH токена ключом RSA 2048, как при рукопожатии
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class AdbSignerBenchmark {
+
+    private AdbSigner signer;
+    private final byte[] token = new byte[20];
+
+    @Setup
+    public void setUp() throws GeneralSecurityException {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        KeyPair keyPair = generator.generateKeyPair();
+        signer = new AdbSigner(keyPair.getPrivate().getEncoded(),
+                "benchmark@jmh\0".getBytes(StandardCharsets.UTF_8));
+        new Random(1).nextBytes(token);
+        signer.sign(token);
+    }
+
+    @Benchmark
+    public byte[] sign() throws GeneralSecurityException {
+        return signer.sign(token);
+    }
+}
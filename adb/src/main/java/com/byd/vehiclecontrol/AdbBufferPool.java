@@ -0,0 +1,91 @@
+package com.byd.vehiclecontrol;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+
+/**
+ * Пул буферов для данных ADB сообщений, чтобы чтение/запись не создавали мусор на каждый пакет.
+ * Два класса размеров: маленькие (служебные ответы, короткий вывод) и большие (до максимального maxdata).
+ * Большой вмещает и целое сообщение с заголовком - его копирует в очередь записи AdbTransport.
+ * Буферы больше LARGE_SIZE не пулятся.
+ */
+final class AdbBufferPool {
+
+    static final int SMALL_SIZE = 4 * 1024;
+    static final int LARGE_SIZE = AdbMessageCodec.HEADER_SIZE + AdbClient.MAX_PAYLOAD;
+
+    // Сколько свободных буферов держать, чтобы память не росла после пиков
+    private static final int MAX_SMALL = 128;
+    private static final int MAX_LARGE = 16;
+
+    private static final AdbBufferPool SHARED = new AdbBufferPool();
+
+    private final ArrayDeque<ByteBuffer> small = new ArrayDeque<>(MAX_SMALL);
+    private final ArrayDeque<ByteBuffer> large = new ArrayDeque<>(MAX_LARGE);
+    private long allocations;
+
+    static AdbBufferPool shared() {
+        return SHARED;
+    }
+
+    /**
+     * Буфер с position = 0, limit = size и порядком байт по умолчанию (BIG_ENDIAN)
+     */
+    ByteBuffer acquire(int size) {
+        ByteBuffer buffer = null;
+        if (size <= SMALL_SIZE) {
+            synchronized (this) {
+                buffer = small.poll();
+                if (buffer == null) {
+                    allocations++;
+                }
+            }
+            if (buffer == null) {
+                buffer = ByteBuffer.allocate(SMALL_SIZE);
+            }
+        } else if (size <= LARGE_SIZE) {
+            synchronized (this) {
+                buffer = large.poll();
+                if (buffer == null) {
+                    allocations++;
+                }
+            }
+            if (buffer == null) {
+                buffer = ByteBuffer.allocate(LARGE_SIZE);
+            }
+        } else {
+            synchronized (this) {
+                allocations++;
+            }
+            return ByteBuffer.allocate(size);
+        }
+
+        buffer.clear();
+        buffer.limit(size);
+        buffer.order(ByteOrder.BIG_ENDIAN);
+        return buffer;
+    }
+
+    void release(ByteBuffer buffer) {
+        if (buffer == null) {
+            return;
+        }
+        synchronized (this) {
+            if (buffer.capacity() == SMALL_SIZE) {
+                if (small.size() < MAX_SMALL) {
+                    small.add(buffer);
+                }
+            } else if (buffer.capacity() == LARGE_SIZE) {
+                if (large.size() < MAX_LARGE) {
+                    large.add(buffer);
+                }
+            }
+        }
+    }
+
+    // Сколько раз пулу пришлось создать новый буфер (для тестов и метрик)
+    synchronized long getAllocationCount() {
+        return allocations;
+    }
+}
@@ -0,0 +1,872 @@
+package com.byd.vehiclecontrol;
+
+import java.io.*;
+import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class AdbClient implements AutoCloseable {
+
+    private static final String TAG = "AdbClient";
+
+    // Типы AUTH сообщений (arg0)
+    private static final int AUTH_TOKEN = 1;
+    private static final int AUTH_SIGNATURE = 2;
+    private static final int AUTH_RSAPUBLICKEY = 3;
+
+    // Константы ADB протокола
+    private static final int CMD_AUTHORIZATION = 1213486401;  // AUTH
+    private static final int CMD_CLOSE = 1163086915;          // CLSE
+    private static final int CMD_CONNECTION = 1314410051;     // CNXN
+    private static final int CMD_OKAY = 1497451343;           // OKAY
+    private static final int CMD_OPEN = 1313165391;           // OPEN
+    private static final int CMD_WRITE = 1163154007;          // WRTE
+
+    // Таймауты
+    static final long CONNECT_TIMEOUT_MS = 10000;
+    static final long READ_TIMEOUT_MS = 8000;
+
+    // RSA приватный ключ из декомпилированной версии
+    private static final byte[] PRIVATE_KEY_DATA = {
+            48, -126, 4, -66, 2, 1, 0, 48, 13, 6, 9, 42, -122, 72, -122, -9, 13, 1, 1, 1, 5, 0, 4, -126, 4, -88, 48, -126, 4, -92, 2, 1, 0, 2, -126, 1, 1, 0, -97, -48, 71, -115, 36, 51, 83, -48, 3, -2, -96, 125, -38, -128, 53, 96, -69, -96, -23, -26, -35, -124, -88, 103, -80, 104, -75, -114, 36, -86, 27, 77, 64, -94, 123, -40, -127, 34, -67, -49, -91, -37, -9, 32, -37, 122, 90, 31, 112, -102, -7, -100, -113, 74, -36, -116, -32, -108, -76, 106, -88, -6, -83, 38, 114, -77, -21, 12, -88, -93, -105, 42, 45, -24, -113, 16, -91, -15, 52, -38, 52, 2, -25, 38, -45, 15, 77, -86, 14, -102, -77, 5, 35, 84, -14, -64, 88, 42, -6, 88, -101, -18, -11, 8, 56, 91, 17, -62, 108, -109, 2, 77, -10, -19, 125, 6, -1, -93, -127, -34, 46, -64, -126, 26, 29, 123, 30, 78, -54, -66, -81, 112, -124, 64, -14, -35, -33, 3, -54, 53, -68, -30, 77, -4, -81, 91, -63, -25, -68, 62, -124, 109, -99, 109, -81, 49, 50, 90, 97, -23, -43, -77, 108, -78, -92, 12, -80, -84, -28, -97, 126, -19, 116, -81, 88, 15, -42, 117, 27, -113, -86, 10, -10, 126, -67, 97, 58, -123, 79, 22, -94, -83, 105, 0, -34, -81, -115, -56, -87, -9, 92, -51, -123, 109, -67, -16, -108, -105, 13, 21, 19, -23, -76, -110, -93, 4, -63, -21, -37, 49, -109, -61, 53, 29, -57, 81, -24, 95, -11, -92, 62, -74, 111, -125, 49, 45, 34, 93, 83, -10, 122, 106, -35, -107, 59, 86, -76, 73, 24, 33, 43, -109, 108, 31, 59, -91, 2, 3, 1, 0, 1, 2, -126, 1, 0, 0, -69, -113, -92, 57, 93, 122, 4, -120, 60, -70, -3, 27, -65, 6, 27, 13, 29, 89, 24, -6, 127, -97, -91, -116, 36, 120, 69, -63, 1, 83, 29, -121, 0, -7, 55, -62, 12, 46, -101, 126, 55, 73, 16, 77, 109, 122, 0, -47, -76, -103, -28, -32, -106, -46, 14, -91, 72, 67, -23, 25, 44, -53, 80, -87, 6, 1, -27, -31, 93, 22, -46, -46, -3, 75, 66, -51, -69, 0, 49, 98, -38, 21, -53, 15, -77, -115, 84, -85, 95, -38, 11, 89, 87, -50, -13, 121, -54, -37, -30, -23, 3, -121, 69, 13, 54, 10, -48, -118, 3, 56, -74, -66, -67, -77, -41, -83, 125, -118, -121, 23, 115, 16, 112, 75, -81, -8, -104, 96, -70, -96, 123, -39, -16, 82, 79, 21, -94, -38, 12, -89, 65, -111, -104, 74, -59, 120, -16, 114, -84, -14, -81, 124, -39, -6, 43, -127, 100, -51, -114, -42, -102, 86, 62, 49, -14, 4, -112, -45, -15, 83, 125, -87, -46, -91, 93, 46, 106, -98, 49, -95, 114, 28, -10, 48, -40, 29, -47, 60, 52, 72, -112, 23, 60, 33, -114, -61, 126, -120, 117, 36, 123, -42, 10, 54, -21, -99, 52, -105, 10, 93, -28, 56, -6, -39, 36, -39, 27, -48, -66, 82, -116, -53, 65, 122, 110, -12, 109, -88, 22, -96, 85, -48, -88, -114, -49, -78, -7, 29, -117, 27, -104, 108, -24, 52, -66, 28, 17, -45, -110, -104, -55, -81, -61, -22, 11, 2, -127, -127, 0, -33, 56, 16, 4, 13, 39, 101, 58, 44, -112, 101, 70, -35, 66, 74, -69, 110, 108, -11, 28, -79, 12, -67, 25, -92, 101, 56, -68, 87, -68, 23, -35, 65, 51, 22, -21, 113, -127, -126, 71, 20, -65, -75, -25, -96, 105, 92, -67, -10, 45, -88, -103, -120, 56, 0, -88, -38, -42, -127, 68, -23, 71, 39, -36, -80, -10, -114, -126, -75, 12, -28, -52, -40, 26, -108, 97, -7, 10, 28, -23, 119, 103, 16, -109, 20, 118, 106, -48, 126, 76, -30, -96, -22, 25, 31, 34, -54, 126, 91, 106, 48, 30, -21, -98, -31, -60, 112, -21, 32, 117, -33, -51, -66, -81, -99, -9, 64, 65, 110, 34, -67, 123, -33, 71, 66, -80, 65, 3, 2, -127, -127, 0, -73, 72, 124, 62, -102, 12, -128, 42, -7, -27, 1, 66, 101, -32, 125, 86, -111, -3, 14, -43, 121, -118, -48, 120, -87, 23, -108, 23, 13, -41, -9, 35, 88, -49, 97, -31, -27, -109, -110, 14, 120, 73, 69, -48, -11, 66, -114, 108, -46, 79, 104, -81, -10, 108, -12, -92, -79, -3, 40, -48, 80, -115, -29, 76, 101, -49, -88, 115, -81, 71, 46, -106, -31, 68, 18, -15, 89, 82, -79, 51, 53, 38, -83, 42, 47, 96, 107, -127, 51, 43, -55, 82, 59, -59, -51, 10, 83, 88, -106, -123, -116, -10, -95, -121, -55, 59, -87, -87, -105, -31, 116, 127, 19, -29, -31, -119, 77, 123, -82, 8, 79, 74, 32, 65, -75, -100, 108, 55, 2, -127, -127, 0, -91, 110, -52, 87, -28, 83, -51, 47, 23, 54, 17, 9, 59, 20, 85, -124, -95, -21, 120, -95, -62, 9, -7, -32, 22, 57, -70, -103, -61, -64, 48, 67, -105, 125, -64, -65, -48, 8, -74, -65, -19, 125, -61, -40, 29, -57, -40, -89, 36, -37, 99, -8, 29, -65, -69, -91, 105, 66, -50, -35, 126, -78, 112, -75, -100, 37, -81, 42, -23, -7, -37, 92, -127, -48, -7, 37, -65, 71, -94, 115, -39, 61, 118, 72, 59, 67, 36, 24, -49, 114, 54, 8, 34, 87, 105, -1, 3, -22, 47, -33, -4, 55, -2, 82, 107, 106, -122, 113, -116, 70, 48, 15, 49, 2, -64, -27, 45, 39, 16, -12, 8, 80, -43, 2, -32, 70, -10, 119, 2, -127, -128, 35, -2, 34, 24, 17, 28, 127, 86, -15, 56, 29, -91, 50, 104, -127, 116, -84, -107, 91, -114, 100, -115, -12, 30, -99, -26, 57, 120, -59, -119, 49, -55, 73, 57, -128, -103, 98, 2, 54, -34, -116, -108, -89, 23, -3, -14, -48, 17, 98, -61, -95, 101, 92, -39, 76, -71, -62, -19, 10, 80, -50, 96, -18, -48, 35, -10, 65, -72, 102, 37, 110, 106, -58, -42, 29, 122, 51, -10, 95, 66, 21, 32, 1, 69, -107, -124, 51, -40, 109, 122, 29, -48, -2, 87, -5, -54, 25, 79, -2, 79, -3, -67, 119, -3, 57, 47, 116, 68, 15, -59, -128, -95, 44, 0, -58, 91, -74, 81, -95, 125, -108, 68, -108, 77, 19, 35, 34, -59, 2, -127, -127, 0, -100, 86, 105, -124, 16, -3, -77, 55, 97, 100, -76, -19, 93, -122, -55, -120, 38, 125, -127, 94, -34, 73, 105, -40, 59, -16, 100, -120, -53, -111, 58, 71, -109, 71, 12, -56, -119, 116, -104, 15, -49, -85, 19, -69, -99, -65, -7, 75, -104, 109, 126, 96, -54, -21, -111, -79, -93, -104, -48, 31, 107, -106, 81, -118, -57, -60, -128, -116, 112, 3, -42, -79, 68, -62, -3, -36, 10, -18, -81, -57, 32, 117, 54, -43, 57, 10, -127, -120, 96, 101, -97, -45, 114, 41, -75, 69, 32, -90, 86, -7, 25, 124, 43, -98, -116, 23, 54, 110, 87, 80, -45, 75, 65, -48, -51, -19, -95, -34, 44, 7, -7, 22, 107, 17, -121, 96, -39, -32
+    };
+
+    // Публичный ключ для авторизации из декомпилированной версии
+    private static final byte[] PUBLIC_KEY_AUTHORIZATION_DATA = {
+            81, 65, 65, 65, 65, 78, 80, 76, 80, 106, 121, 108, 79, 120, 57, 115, 107, 121, 115, 104, 71, 69, 109, 48, 86, 106, 117, 86, 51, 87, 112, 54, 57, 108, 78, 100, 73, 105, 48, 120, 103, 50, 43, 50, 80, 113, 84, 49, 88, 43, 104, 82, 120, 120, 48, 49, 119, 53, 77, 120, 50, 43, 118, 66, 66, 75, 79, 83, 116, 79, 107, 84, 70, 81, 50, 88, 108, 80, 67, 57, 98, 89, 88, 78, 88, 80, 101, 112, 121, 73, 50, 118, 51, 103, 66, 112, 114, 97, 73, 87, 84, 52, 85, 54, 89, 98, 49, 43, 57, 103, 113, 113, 106, 120, 116, 49, 49, 103, 57, 89, 114, 51, 84, 116, 102, 112, 47, 107, 114, 76, 65, 77, 112, 76, 74, 115, 115, 57, 88, 112, 89, 86, 111, 121, 77, 97, 57, 116, 110, 87, 50, 69, 80, 114, 122, 110, 119, 86, 117, 118, 47, 69, 51, 105, 118, 68, 88, 75, 65, 57, 47, 100, 56, 107, 67, 69, 99, 75, 43, 43, 121, 107, 52, 101, 101, 120, 48, 97, 103, 115, 65, 117, 51, 111, 71, 106, 47, 119, 90, 57, 55, 102, 90, 78, 65, 112, 78, 115, 119, 104, 70, 98, 79, 65, 106, 49, 55, 112, 116, 89, 43, 105, 112, 89, 119, 80, 74, 85, 73, 119, 87, 122, 109, 103, 54, 113, 84, 81, 47, 84, 74, 117, 99, 67, 78, 78, 111, 48, 56, 97, 85, 81, 106, 43, 103, 116, 75, 112, 101, 106, 113, 65, 122, 114, 115, 51, 73, 109, 114, 102, 113, 111, 97, 114, 83, 85, 52, 73, 122, 99, 83, 111, 43, 99, 43, 90, 112, 119, 72, 49, 112, 54, 50, 121, 68, 51, 50, 54, 88, 80, 118, 83, 75, 66, 50, 72, 117, 105, 81, 69, 48, 98, 113, 105, 83, 79, 116, 87, 105, 119, 90, 54, 105, 69, 51, 101, 98, 112, 111, 76, 116, 103, 78, 89, 68, 97, 102, 97, 68, 43, 65, 57, 66, 84, 77, 121, 83, 78, 82, 57, 67, 102, 101, 55, 86, 53, 110, 72, 89, 119, 85, 90, 71, 68, 57, 99, 87, 53, 82, 51, 56, 121, 120, 82, 65, 68, 48, 111, 69, 69, 81, 68, 57, 120, 79, 73, 122, 47, 122, 97, 103, 81, 65, 47, 106, 98, 103, 70, 100, 83, 103, 74, 118, 90, 52, 71, 88, 99, 88, 77, 116, 90, 88, 85, 105, 49, 122, 121, 68, 66, 73, 67, 97, 85, 51, 101, 108, 117, 48, 67, 71, 88, 75, 84, 104, 117, 76, 82, 106, 71, 49, 109, 80, 122, 83, 50, 86, 51, 101, 116, 90, 78, 101, 82, 117, 75, 103, 69, 103, 122, 57, 113, 75, 69, 101, 68, 106, 83, 81, 119, 119, 74, 90, 76, 54, 97, 78, 82, 65, 106, 87, 51, 50, 104, 97, 66, 115, 106, 114, 115, 111, 117, 110, 88, 65, 109, 104, 115, 101, 110, 109, 101, 103, 53, 112, 103, 122, 120, 108, 72, 111, 57, 47, 83, 57, 57, 98, 120, 43, 47, 115, 117, 110, 115, 72, 71, 117, 112, 81, 87, 82, 71, 79, 106, 81, 97, 76, 69, 116, 77, 70, 122, 111, 118, 53, 89, 104, 118, 111, 120, 49, 90, 83, 107, 52, 57, 66, 43, 98, 102, 119, 43, 77, 72, 53, 48, 77, 87, 118, 49, 43, 70, 48, 47, 89, 78, 71, 51, 53, 75, 67, 112, 104, 79, 88, 48, 83, 77, 74, 97, 83, 99, 113, 56, 103, 100, 109, 43, 99, 122, 76, 90, 117, 53, 84, 78, 79, 51, 113, 52, 66, 89, 72, 68, 97, 112, 50, 115, 102, 47, 71, 73, 43, 112, 57, 50, 109, 86, 88, 121, 56, 54, 112, 106, 117, 106, 73, 117, 120, 119, 119, 120, 107, 120, 116, 109, 81, 48, 49, 71, 52, 79, 103, 52, 121, 101, 113, 121, 51, 75, 120, 85, 89, 73, 90, 87, 50, 115, 47, 114, 87, 115, 109, 69, 99, 50, 86, 106, 100, 50, 85, 97, 70, 105, 85, 112, 82, 99, 78, 72, 69, 87, 71, 81, 69, 65, 65, 81, 65, 61, 32, 119, 105, 114, 101, 108, 101, 115, 115, 64, 97, 100, 98, 0
+    };
+
+    // Версии протокола: начиная с 0x01000001 контрольные суммы данных не считаются
+    static final int A_VERSION_MIN = 0x01000000;
+    static final int A_VERSION_SKIP_CHECKSUM = 0x01000001;
+    private static final int A_VERSION = A_VERSION_SKIP_CHECKSUM;
+
+    // Максимальный размер данных в одном сообщении: предлагаем 256 KiB, старые adbd понимают только 4 KiB
+    static final int MAX_PAYLOAD = 256 * 1024;
+    static final int MAX_PAYLOAD_LEGACY = 4096;
+
+    // Порог, после которого вывод exec(command, spillDir) пишется во временный файл
+    public static final long DEFAULT_SPILL_THRESHOLD = 1024 * 1024;
+
+    // Окончание приглашения интерактивного shell
+    private static final String PROMPT_SUFFIX = " $ ";
+
+    public static final String FEATURE_SHELL_V2 = "shell_v2";
+    public static final String FEATURE_DELAYED_ACK = "delayed_ack";
+    public static final String FEATURE_SENDRECV_V2 = "sendrecv_v2";
+    public static final String FEATURE_SENDRECV_V2_LZ4 = "sendrecv_v2_lz4";
+
+    // Окно приема потока при delayed_ack: устройство шлет данные, не дожидаясь OKAY на каждый WRTE
+    static final int RECEIVE_WINDOW = 2 * 1024 * 1024;
+
+    // Возможности протокола, которые клиент объявляет устройству в CNXN
+    private static final String[] HOST_FEATURES = {
+            FEATURE_SHELL_V2, FEATURE_DELAYED_ACK, FEATURE_SENDRECV_V2, FEATURE_SENDRECV_V2_LZ4
+    };
+
+    private static volatile AdbSigner defaultSigner;
+
+    // Состояние соединения
+    private final AdbTransport transport;
+    private final AdbSigner signer;
+    private final AdbHandshakeTiming timing = new AdbHandshakeTiming();
+    private final AdbMetrics metrics = new AdbMetrics(AdbMetrics.global());
+    private volatile boolean connected = false;
+
+    // Мультиплексирование: все логические потоки живут на одном сокете
+    private final Map<Integer, AdbClientStream> streams = new ConcurrentHashMap<>();
+    private final AtomicInteger nextLocalId = new AtomicInteger(1);
+    private AdbClientStream shellStream;
+
+    // CNXN/AUTH не относятся к потокам - их забирает handshake
+    private final BlockingQueue<AdbMessage> controlQueue = new LinkedBlockingQueue<>();
+    private volatile IOException transportFailure;
+
+    // Интерактивный shell: одна команда за раз, декодер переиспользуется между командами
+    private final Object shellLock = new Object();
+    private final AdbOutputDecoder shellDecoder = new AdbOutputDecoder();
+
+    // Shell для конвейерного выполнения, открывается при первом использовании
+    private AdbPipelinedShell pipelinedShell;
+
+    // Результат согласования с устройством (из его CNXN)
+    private volatile int protocolVersion = A_VERSION_MIN;
+    private volatile int maxData = MAX_PAYLOAD_LEGACY;
+    private volatile Set<String> features = Collections.emptySet();
+    private volatile String deviceBanner = "";
+
+    private AdbClient(String host, int port, AdbEventLoop loop, AdbSigner signer, int connectTimeoutMs)
+            throws IOException {
+        this.signer = signer;
+        long start = System.nanoTime();
+        transport = AdbTransport.open(host, port, connectTimeoutMs, loop, new AdbTransport.Listener() {
+            @Override
+            public void onMessage(AdbMessage message) throws IOException {
+                dispatch(message);
+            }
+
+            @Override
+            public void onClosed(IOException cause) {
+                onTransportClosed(cause);
+            }
+        }, metrics);
+        timing.tcpConnectNanos = System.nanoTime() - start;
+    }
+
+    /**
+     * Подключение с авторизацией, но без открытия потоков.
+     * Потоки открываются через openStream() и делят одно соединение.
+     */
+    public static AdbClient connect(String host, int port) throws IOException {
+        return connect(host, port, AdbEventLoop.getDefault());
+    }
+
+    /**
+     * То же, но на заданном цикле событий (один цикл обслуживает любое число соединений)
+     */
+    public static AdbClient connect(String host, int port, AdbEventLoop loop) throws IOException {
+        return connect(host, port, loop, getDefaultSigner());
+    }
+
+    public static AdbClient connect(String host, int port, AdbEventLoop loop, AdbSigner signer) throws IOException {
+        return connect(host, port, loop, signer, (int) CONNECT_TIMEOUT_MS);
+    }
+
+    private static AdbClient connect(String host, int port, AdbEventLoop loop, AdbSigner signer,
+                                     int connectTimeoutMs) throws IOException {
+        // Ключ загружается в фоне, пока идут TCP и CNXN: к приходу AUTH остается только подписать токен
+        signer.prewarm();
+        AdbClient client = new AdbClient(host, port, loop, signer, connectTimeoutMs);
+        try {
+            if (!client.performHandshake()) {
+                throw new IOException("Handshake rejected by device");
+            }
+            client.connected = true;
+            client.metrics.recordHandshake(client.timing);
+            return client;
+        } catch (IOException e) {
+            client.close();
+            throw e;
+        }
+    }
+
+    public static AdbClient connectShell(String host, int port, long timeoutMs, int maxRetries)
+            throws IOException, InterruptedException {
+        return connectShell(host, port, new AdbReconnectPolicy(AdbReconnectPolicy.DEFAULT_INITIAL_DELAY_MS,
+                AdbReconnectPolicy.DEFAULT_MAX_DELAY_MS, timeoutMs, maxRetries,
+                AdbReconnectPolicy.DEFAULT_MAX_REFUSED_ATTEMPTS));
+    }
+
+    public static AdbClient connectShell(String host, int port) throws IOException, InterruptedException {
+        return connectShell(host, port, AdbReconnectPolicy.getDefault());
+    }
+
+    /**
+     * Подключение с открытием shell по политике переподключения:
+     * паузы растут экспоненциально, каждая попытка ограничена оставшимся временем до дедлайна,
+     * а серия "connection refused" прекращает попытки сразу.
+     */
+    public static AdbClient connectShell(String host, int port, AdbReconnectPolicy policy)
+            throws IOException, InterruptedException {
+        long start = System.currentTimeMillis();
+        long deadline = start + policy.getDeadlineMs();
+        IOException lastException = null;
+        int refused = 0;
+        int attempt = 0;
+
+        while (attempt < policy.getMaxAttempts()) {
+            long left = deadline - System.currentTimeMillis();
+            if (left <= 0) {
+                break;
+            }
+
+            try {
+                AdbClient client = connect(host, port, AdbEventLoop.getDefault(), getDefaultSigner(),
+                        (int) Math.min(CONNECT_TIMEOUT_MS, left));
+                try {
+                    client.openShell();
+                } catch (IOException e) {
+                    client.close();
+                    throw e;
+                }
+
+                if (attempt > 0) {
+                    long elapsed = System.currentTimeMillis() - start;
+                    policy.recordRecovery(elapsed);
+                    client.metrics.recordReconnect();
+                    AdbLog.i(TAG, "Reconnected to " + host + ":" + port + " after " + (attempt + 1)
+                            + " attempts in " + elapsed + " ms");
+                }
+                return client;
+
+            } catch (ConnectException e) {
+                // Порт закрыт: adbd перезапускается или adb по TCP выключен
+                lastException = e;
+                refused++;
+            } catch (IOException e) {
+                lastException = e;
+                refused = 0;
+            }
+            AdbMetrics.global().recordConnectFailure();
+
+            if (refused >= policy.getMaxRefusedAttempts()) {
+                AdbLog.w(TAG, "Connection refused " + refused + " times, giving up");
+                attempt++;
+                break;
+            }
+            long delay = Math.min(policy.nextDelayMs(attempt), deadline - System.currentTimeMillis());
+            attempt++;
+            if (delay > 0) {
+                Thread.sleep(delay);
+            }
+        }
+
+        policy.recordFailure();
+        throw new IOException("Failed to connect to " + host + ":" + port + " after " + attempt + " attempts in "
+                + (System.currentTimeMillis() - start) + " ms", lastException);
+    }
+
+    private boolean performHandshake() throws IOException {
+        AdbLog.d(TAG, "Starting handshake...");
+
+        long start = System.nanoTime();
+        sendMessage(CMD_CONNECTION, A_VERSION, MAX_PAYLOAD, buildConnectBanner());
+        AdbMessage response = readMessage();
+        timing.cnxnNanos = System.nanoTime() - start;
+
+        if (response.command == CMD_CONNECTION) {
+            // Авторизация на устройстве отключена - соединение уже установлено
+            AdbLog.d(TAG, "Device accepted connection without auth, " + timing);
+            return true;
+        }
+        if (response.command != CMD_AUTHORIZATION || response.arg0 != AUTH_TOKEN) {
+            AdbLog.e(TAG, "Unexpected response command: " + Integer.toHexString(response.command));
+            return false;
+        }
+
+        // Сначала подпись: если устройство уже знает наш ключ, этого достаточно
+        start = System.nanoTime();
+        byte[] signature = null;
+        try {
+            signature = signer.sign(response.data());
+        } catch (GeneralSecurityException e) {
+            AdbLog.w(TAG, "Signing failed, sending public key instead", e);
+        }
+        timing.authSignNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        if (signature != null) {
+            sendMessage(CMD_AUTHORIZATION, AUTH_SIGNATURE, 0, signature);
+            response = readMessage();
+        }
+
+        // Подпись не принята (новый AUTH токен) - отправляем открытый ключ на подтверждение
+        if (signature == null || response.command == CMD_AUTHORIZATION) {
+            sendMessage(CMD_AUTHORIZATION, AUTH_RSAPUBLICKEY, 0, signer.getPublicKey());
+            response = readMessage();
+        }
+        timing.finalCnxnNanos = System.nanoTime() - start;
+
+        boolean success = response.command == CMD_CONNECTION;
+        AdbLog.d(TAG, "Handshake " + (success ? "SUCCESS" : "FAILED") + ", " + timing);
+        return success;
+    }
+
+    /**
+     * Подписчик со встроенным ключом; ключ загружается при первом обращении
+     */
+    public static AdbSigner getDefaultSigner() {
+        AdbSigner signer = defaultSigner;
+        if (signer == null) {
+            synchronized (AdbClient.class) {
+                signer = defaultSigner;
+                if (signer == null) {
+                    signer = new AdbSigner(PRIVATE_KEY_DATA, PUBLIC_KEY_AUTHORIZATION_DATA);
+                    defaultSigner = signer;
+                }
+            }
+        }
+        return signer;
+    }
+
+    /**
+     * Загрузка ключа и прогрев криптографии в фоне, чтобы первое подключение не тратило на это время
+     */
+    public static void prewarm() {
+        getDefaultSigner().prewarm();
+    }
+
+    public AdbHandshakeTiming getHandshakeTiming() {
+        return timing;
+    }
+
+    /**
+     * Метрики этого соединения (они же суммируются в AdbMetrics.global())
+     */
+    public AdbMetrics getMetrics() {
+        return metrics;
+    }
+
+    // Открытые сейчас потоки (у каждого свои счетчики байт и OKAY)
+    public List<AdbClientStream> getOpenStreams() {
+        return new ArrayList<>(streams.values());
+    }
+
+    // Payload - буфер из пула: порядок байт и позиция не меняются, он уходит следующему владельцу как был
+    private static int readIntLE(ByteBuffer buffer, int index) {
+        return (buffer.get(index) & 0xFF) | (buffer.get(index + 1) & 0xFF) << 8
+                | (buffer.get(index + 2) & 0xFF) << 16 | (buffer.get(index + 3) & 0xFF) << 24;
+    }
+
+    private static byte[] buildConnectBanner() {
+        StringBuilder banner = new StringBuilder("host::");
+        if (HOST_FEATURES.length > 0) {
+            banner.append("features=");
+            for (int i = 0; i < HOST_FEATURES.length; i++) {
+                if (i > 0) {
+                    banner.append(',');
+                }
+                banner.append(HOST_FEATURES[i]);
+            }
+        }
+        banner.append('\0');
+        return banner.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Применяет параметры из CNXN устройства: версия, maxdata и список возможностей.
+     * Вызывается в цикле событий до того, как придет следующее сообщение.
+     */
+    private void applyConnection(AdbMessage message) {
+        protocolVersion = Math.min(A_VERSION, message.arg0);
+        maxData = Math.max(1, Math.min(MAX_PAYLOAD, message.arg1));
+
+        String banner = new String(message.data(), StandardCharsets.UTF_8).trim();
+        deviceBanner = banner;
+        features = parseFeatures(banner);
+
+        transport.setChecksumEnabled(protocolVersion < A_VERSION_SKIP_CHECKSUM);
+
+        AdbLog.d(TAG, "Negotiated version=0x" + Integer.toHexString(protocolVersion)
+                + " maxdata=" + maxData + " features=" + features);
+    }
+
+    // "device::ro.product.name=x;ro.product.model=y;features=shell_v2,cmd"
+    static Set<String> parseFeatures(String banner) {
+        int start = banner.indexOf("::");
+        String props = start >= 0 ? banner.substring(start + 2) : banner;
+
+        for (String prop : props.split(";")) {
+            if (prop.startsWith("features=")) {
+                Set<String> result = new HashSet<>();
+                for (String feature : prop.substring("features=".length()).split(",")) {
+                    String name = feature.trim();
+                    if (!name.isEmpty()) {
+                        result.add(name);
+                    }
+                }
+                return Collections.unmodifiableSet(result);
+            }
+        }
+        return Collections.emptySet();
+    }
+
+    public int getProtocolVersion() {
+        return protocolVersion;
+    }
+
+    // Сколько байт можно передать в одном WRTE
+    public int getMaxData() {
+        return maxData;
+    }
+
+    public Set<String> getFeatures() {
+        return features;
+    }
+
+    public boolean hasFeature(String feature) {
+        return features.contains(feature);
+    }
+
+    public String getDeviceBanner() {
+        return deviceBanner;
+    }
+
+    private void openShell() throws IOException {
+        shellStream = openStream("shell:");
+
+        // После открытия shell присылает приглашение, его пропускаем
+        readUntilPrompt(chunk -> { });
+    }
+
+    /**
+     * Открывает новый логический поток (shell:, exec:, sync:, tcp:...) на текущем соединении.
+     */
+    public AdbClientStream openStream(String destination) throws IOException {
+        if (!connected) {
+            throw new IllegalStateException("Not connected");
+        }
+
+        int localId = nextLocalId.getAndIncrement();
+        // delayed_ack: в OPEN передаем свое окно приема, подтверждения идут пачками
+        boolean delayedAck = hasFeature(FEATURE_DELAYED_ACK);
+        AdbClientStream stream = new AdbClientStream(this, localId, destination, delayedAck ? RECEIVE_WINDOW : 0);
+        streams.put(localId, stream);
+
+        long start = System.nanoTime();
+        try {
+            sendMessage(CMD_OPEN, localId, delayedAck ? RECEIVE_WINDOW : 0, (destination + "\0").getBytes("UTF-8"));
+            stream.awaitOpen(CONNECT_TIMEOUT_MS);
+        } catch (IOException e) {
+            streams.remove(localId);
+            throw e;
+        }
+        metrics.recordLatency(AdbMetrics.OP_OPEN, System.nanoTime() - start);
+
+        AdbLog.d(TAG, "Opened stream " + localId + " -> " + destination);
+        return stream;
+    }
+
+    /**
+     * Выполняет команду в отдельном exec: потоке и возвращает весь вывод.
+     * Можно вызывать из нескольких потоков параллельно - все команды идут через одно соединение.
+     */
+    public String exec(String command) throws IOException {
+        StringBuilder result = new StringBuilder();
+        exec(command, result::append);
+        return result.toString();
+    }
+
+    /**
+     * Выполняет команду и отдает вывод кусками по мере прихода.
+     * Память не растет с размером вывода: используются один буфер из пула и один декодер на команду.
+     */
+    public void exec(String command, OutputCallback callback) throws IOException {
+        AdbOutputDecoder decoder = new AdbOutputDecoder();
+        AdbBufferPool pool = AdbBufferPool.shared();
+        ByteBuffer buffer = pool.acquire(AdbBufferPool.SMALL_SIZE);
+
+        long start = System.nanoTime();
+        try (AdbClientStream stream = openStream("exec:" + command)) {
+            while (stream.read(buffer, READ_TIMEOUT_MS) >= 0) {
+                buffer.flip();
+                decoder.decode(buffer, callback);
+                buffer.clear();
+            }
+            decoder.finish(callback);
+            metrics.recordLatency(AdbMetrics.OP_EXEC, System.nanoTime() - start);
+        } finally {
+            pool.release(buffer);
+        }
+    }
+
+    /**
+     * Выполняет команду и сохраняет вывод: до spillThreshold байт в памяти, дальше во временный файл в spillDir.
+     * Вызывающий закрывает результат (удаляет файл).
+     */
+    public AdbCommandOutput exec(String command, long spillThreshold, File spillDir) throws IOException {
+        AdbCommandOutput output = new AdbCommandOutput(spillThreshold, spillDir);
+        AdbBufferPool pool = AdbBufferPool.shared();
+        ByteBuffer buffer = pool.acquire(AdbBufferPool.SMALL_SIZE);
+
+        long start = System.nanoTime();
+        try (AdbClientStream stream = openStream("exec:" + command)) {
+            while (stream.read(buffer, READ_TIMEOUT_MS) >= 0) {
+                buffer.flip();
+                output.append(buffer);
+                buffer.clear();
+            }
+            output.finish();
+            metrics.recordLatency(AdbMetrics.OP_EXEC, System.nanoTime() - start);
+            return output;
+        } catch (IOException e) {
+            output.close();
+            throw e;
+        } finally {
+            pool.release(buffer);
+        }
+    }
+
+    public AdbCommandOutput exec(String command, File spillDir) throws IOException {
+        return exec(command, DEFAULT_SPILL_THRESHOLD, spillDir);
+    }
+
+    /**
+     * Открывает службу sync: для передачи файлов и просмотра каталогов.
+     * Сжатие LZ4 включается, если устройство объявило sendrecv_v2 и sendrecv_v2_lz4.
+     * Клиент нужно закрыть, чтобы освободить канал ADB.
+     */
+    public AdbSyncClient openSync() throws IOException {
+        boolean lz4 = hasFeature(FEATURE_SENDRECV_V2) && hasFeature(FEATURE_SENDRECV_V2_LZ4);
+        return new AdbSyncClient(openStream("sync:"), lz4);
+    }
+
+    /**
+     * Выполняет команду и возвращает ее вывод как InputStream (сырые байты).
+     * Поток нужно закрыть, чтобы освободить канал ADB.
+     */
+    public InputStream execAsStream(String command) throws IOException {
+        return openStream("exec:" + command).asInputStream();
+    }
+
+    /**
+     * Выполняет команду и возвращает stdout, stderr и код завершения.
+     * Если устройство не поддерживает shell,v2 - через конвейерный shell (stderr смешан со stdout).
+     */
+    public AdbShellResult executeShell(String command) throws IOException {
+        if (!hasFeature(FEATURE_SHELL_V2)) {
+            CompletableFuture<AdbShellResult> result = executePipelined(command);
+            try {
+                return result.get(READ_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted executing " + command);
+            } catch (TimeoutException e) {
+                // Зависшую команду снимет срок конвейерного shell
+                result.cancel(false);
+                throw new SocketTimeoutException("Timed out executing " + command);
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+            }
+        }
+
+        StringBuilder stdout = new StringBuilder();
+        StringBuilder stderr = new StringBuilder();
+        int exitCode = executeShellV2(command, stdout::append, stderr::append);
+        return new AdbShellResult(stdout.toString(), stderr.toString(), exitCode);
+    }
+
+    /**
+     * Выполняет команду по протоколу shell,v2 (без PTY), отдавая stdout и stderr по мере прихода.
+     * Команда считается завершенной по пакету exit, а не по приглашению shell.
+     * @return код завершения команды
+     */
+    public int executeShellV2(String command, OutputCallback stdout, OutputCallback stderr) throws IOException {
+        if (!hasFeature(FEATURE_SHELL_V2)) {
+            throw new IOException("Device does not support " + FEATURE_SHELL_V2);
+        }
+
+        AdbOutputDecoder stdoutDecoder = new AdbOutputDecoder();
+        AdbOutputDecoder stderrDecoder = new AdbOutputDecoder();
+        int[] exitCode = {-1};
+        AdbShellV2Codec.Parser.Handler handler = new AdbShellV2Codec.Parser.Handler() {
+            @Override
+            public void onStdout(ByteBuffer data) throws IOException {
+                stdoutDecoder.decode(data, stdout);
+            }
+
+            @Override
+            public void onStderr(ByteBuffer data) throws IOException {
+                stderrDecoder.decode(data, stderr);
+            }
+
+            @Override
+            public void onExit(int code) {
+                exitCode[0] = code;
+            }
+        };
+
+        AdbShellV2Codec.Parser parser = new AdbShellV2Codec.Parser();
+        AdbBufferPool pool = AdbBufferPool.shared();
+        ByteBuffer buffer = pool.acquire(AdbBufferPool.SMALL_SIZE);
+
+        long start = System.nanoTime();
+        try (AdbClientStream stream = openStream("shell,v2,raw:" + command)) {
+            // stdin не нужен: команда сразу получает EOF
+            stream.write(AdbShellV2Codec.packet(AdbShellV2Codec.ID_CLOSE_STDIN, new byte[0]));
+
+            while (exitCode[0] < 0) {
+                if (stream.read(buffer, READ_TIMEOUT_MS) < 0) {
+                    throw new IOException("Shell stream closed before exit status: " + command);
+                }
+                buffer.flip();
+                parser.feed(buffer, handler);
+                buffer.clear();
+            }
+
+            stdoutDecoder.finish(stdout);
+            stderrDecoder.finish(stderr);
+            metrics.recordLatency(AdbMetrics.OP_SHELL_V2, System.nanoTime() - start);
+            return exitCode[0];
+        } finally {
+            pool.release(buffer);
+        }
+    }
+
+    public String executeCommand(String command) throws IOException {
+        return executeCommand(command, true);
+    }
+
+    public String executeCommand(String command, boolean waitForResponse) throws IOException {
+        if (!waitForResponse) {
+            writeShellCommand(command);
+            return "";
+        }
+
+        StringBuilder result = new StringBuilder();
+        executeCommand(command, result::append);
+        return result.toString();
+    }
+
+    /**
+     * Выполняет команду в интерактивном shell и отдает вывод кусками до появления приглашения " $ "
+     */
+    public void executeCommand(String command, OutputCallback callback) throws IOException {
+        synchronized (shellLock) {
+            long start = System.nanoTime();
+            writeShellCommand(command);
+
+            readUntilPrompt(callback);
+            metrics.recordLatency(AdbMetrics.OP_SHELL, System.nanoTime() - start);
+        }
+    }
+
+    // Читает вывод shell до приглашения " $ ", которое может прийти разрезанным между пакетами
+    private void readUntilPrompt(OutputCallback callback) throws IOException {
+        StringBuilder tail = new StringBuilder(PROMPT_SUFFIX.length() * 2);
+        OutputCallback tracker = chunk -> {
+            callback.onOutput(chunk);
+            int from = Math.max(0, chunk.length() - PROMPT_SUFFIX.length());
+            tail.append(chunk, from, chunk.length());
+            if (tail.length() > PROMPT_SUFFIX.length()) {
+                tail.delete(0, tail.length() - PROMPT_SUFFIX.length());
+            }
+        };
+
+        AdbBufferPool pool = AdbBufferPool.shared();
+        ByteBuffer buffer = pool.acquire(AdbBufferPool.SMALL_SIZE);
+        try {
+            while (true) {
+                if (shellStream.read(buffer, READ_TIMEOUT_MS) < 0) {
+                    throw new IOException("Shell stream closed");
+                }
+                buffer.flip();
+                shellDecoder.decode(buffer, tracker);
+                buffer.clear();
+
+                if (PROMPT_SUFFIX.contentEquals(tail) && !shellStream.hasPendingData()) {
+                    return;
+                }
+            }
+        } finally {
+            pool.release(buffer);
+        }
+    }
+
+    /**
+     * Отправляет все команды подряд, не дожидаясь ответов, и возвращает по future на каждую.
+     * Пакет из N команд занимает примерно один round trip плюс время их выполнения.
+     */
+    public List<CompletableFuture<AdbShellResult>> executePipelined(List<String> commands) throws IOException {
+        long start = System.nanoTime();
+        List<CompletableFuture<AdbShellResult>> results = getPipelinedShell().submitAll(commands);
+        for (CompletableFuture<AdbShellResult> result : results) {
+            recordPipelined(result, start);
+        }
+        return results;
+    }
+
+    public CompletableFuture<AdbShellResult> executePipelined(String command) throws IOException {
+        long start = System.nanoTime();
+        return recordPipelined(getPipelinedShell().submit(command), start);
+    }
+
+    private CompletableFuture<AdbShellResult> recordPipelined(CompletableFuture<AdbShellResult> result, long start) {
+        result.thenRun(() -> metrics.recordLatency(AdbMetrics.OP_PIPELINED, System.nanoTime() - start));
+        return result;
+    }
+
+    private synchronized AdbPipelinedShell getPipelinedShell() throws IOException {
+        if (pipelinedShell == null || pipelinedShell.isClosed()) {
+            // shell с командой запускается без PTY: нет эха и приглашения, только вывод
+            pipelinedShell = new AdbPipelinedShell(openStream("shell:sh"));
+        }
+        return pipelinedShell;
+    }
+
+    /**
+     * Прерывает текущую команду интерактивного shell: поток закрывается с CLSE, ожидающий вывода поток
+     * сразу получает ошибку. После этого сессию нужно закрыть (в пуле она будет заменена).
+     */
+    public void abortShell() {
+        AdbClientStream stream = shellStream;
+        if (stream != null) {
+            stream.close();
+        }
+    }
+
+    private void writeShellCommand(String command) throws IOException {
+        if (!connected || shellStream == null) {
+            throw new IllegalStateException("Not connected");
+        }
+        shellStream.write((command + "\n").getBytes("UTF-8"));
+    }
+
+    // Из кэша AdbEndpointProbe, пока результат свежий; иначе одна пробная проверка
+    public static boolean isAdbAvailable(String host, int port) {
+        return AdbEndpointProbe.shared().isReachable(host, port);
+    }
+
+    // ===== Демультиплексирование (поток AdbEventLoop) =====
+
+    private void dispatch(AdbMessage message) throws IOException {
+        AdbClientStream stream = streams.get(message.arg1);
+
+        switch (message.command) {
+            case CMD_CONNECTION:
+                applyConnection(message);
+                controlQueue.add(message.copy());
+                break;
+
+            case CMD_AUTHORIZATION:
+                controlQueue.add(message.copy());
+                break;
+
+            case CMD_OKAY:
+                if (stream != null) {
+                    // При delayed_ack в OKAY лежит число подтвержденных байт (в ответе на OPEN - окно устройства)
+                    int acked = message.payload != null && message.payload.remaining() >= 4
+                            ? readIntLE(message.payload, message.payload.position())
+                            : -1;
+                    stream.onOkay(message.arg0, acked);
+                }
+                break;
+
+            case CMD_WRITE:
+                if (stream == null) {
+                    // Поток нам неизвестен - просим устройство его закрыть
+                    transport.send(CMD_CLOSE, 0, message.arg0, null);
+                } else if (message.payload != null) {
+                    stream.onData(message.detachPayload());
+                } else {
+                    stream.onEmptyWrite();
+                }
+                break;
+
+            case CMD_CLOSE:
+                if (stream != null) {
+                    streams.remove(message.arg1);
+                    stream.onRemoteClose();
+                }
+                break;
+
+            default:
+                AdbLog.w(TAG, "Unexpected command on established connection: " + Integer.toHexString(message.command));
+                break;
+        }
+    }
+
+    private void onTransportClosed(IOException cause) {
+        boolean wasConnected = connected;
+        connected = false;
+
+        IOException failure = cause != null
+                ? new IOException("Connection lost", cause)
+                : new IOException("Connection closed");
+        transportFailure = failure;
+        if (wasConnected && cause != null) {
+            AdbLog.e(TAG, "Connection lost: " + cause.getMessage());
+        }
+
+        // Будим handshake, если он ждет ответа
+        controlQueue.add(new AdbMessage(0, 0, 0, new byte[0]));
+
+        for (AdbClientStream stream : streams.values()) {
+            stream.onTransportError(failure);
+        }
+        streams.clear();
+    }
+
+    void sendOkay(int localId, int remoteId) throws IOException {
+        transport.send(CMD_OKAY, localId, remoteId, null);
+    }
+
+    // OKAY для delayed_ack: подтверждает прием ackedBytes байт
+    void sendOkay(int localId, int remoteId, int ackedBytes) throws IOException {
+        transport.sendInt(CMD_OKAY, localId, remoteId, ackedBytes);
+    }
+
+    void sendWrite(int localId, int remoteId, ByteBuffer data) throws IOException {
+        transport.send(CMD_WRITE, localId, remoteId, data);
+    }
+
+    void onStreamClosed(AdbClientStream stream, boolean sendClose) {
+        streams.remove(stream.getLocalId());
+        if (stream == shellStream) {
+            shellStream = null;
+        }
+        if (sendClose && connected) {
+            try {
+                transport.send(CMD_CLOSE, stream.getLocalId(), stream.getRemoteId(), null);
+            } catch (IOException e) {
+                AdbLog.w(TAG, "Failed to send CLSE: " + e.getMessage());
+            }
+        }
+    }
+
+    // Следующее служебное сообщение (CNXN/AUTH) во время handshake
+    private AdbMessage readMessage() throws IOException {
+        AdbMessage message;
+        try {
+            message = controlQueue.poll(READ_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted during handshake");
+        }
+
+        if (message == null) {
+            metrics.recordTimeout();
+            throw new SocketTimeoutException("Timeout waiting for device response");
+        }
+        if (message.command == 0) {
+            throw transportFailure != null ? transportFailure : new IOException("Connection closed");
+        }
+        return message;
+    }
+
+    private void sendMessage(int command, int arg0, int arg1, byte[] data) throws IOException {
+        transport.send(command, arg0, arg1, ByteBuffer.wrap(data));
+    }
+
+    @Override
+    public void close() throws IOException {
+        connected = false;
+        synchronized (this) {
+            if (pipelinedShell != null) {
+                pipelinedShell.close();
+            }
+        }
+        transport.close();
+    }
+
+    public boolean isConnected() {
+        return connected && transport.isOpen();
+    }
+
+    // Соединение живо и интерактивный shell открыт (проверка пула без обмена с устройством)
+    boolean isShellOpen() {
+        return isConnected() && shellStream != null && !shellStream.isClosed();
+    }
+
+    /**
+     * Получатель вывода команды. Кусок текста действителен только на время вызова.
+     */
+    public interface OutputCallback {
+        void onOutput(CharSequence chunk) throws IOException;
+    }
+}
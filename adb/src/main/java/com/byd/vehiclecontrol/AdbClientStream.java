@@ -0,0 +1,529 @@
+package com.byd.vehiclecontrol;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayDeque;
+import java.util.Locale;
+
+/**
+ * Логический поток ADB (shell:, exec:, sync:, tcp: ...) поверх общего соединения AdbClient.
+ * Входящие WRTE/OKAY/CLSE доставляет AdbClient из цикла событий по localId.
+ */
+public class AdbClientStream implements AutoCloseable {
+
+    private final AdbClient client;
+    private final int localId;
+    private final String destination;
+
+    // Буферы данных из AdbBufferPool; освобождаются, когда их полностью вычитали
+    private final ArrayDeque<ByteBuffer> readQueue = new ArrayDeque<>();
+    private final AdbBufferPool pool = AdbBufferPool.shared();
+    private final Object lock = new Object();
+
+    private int remoteId;
+    private boolean opened = false;
+    private boolean remoteClosed = false;
+    private boolean localClosed = false;
+    private boolean writeReady = false;
+    private IOException failure;
+
+    // delayed_ack: окно приема (0 - классический режим, OKAY на каждый WRTE)
+    private final int receiveWindow;
+    // Сколько байт прочитано, но еще не подтверждено устройству
+    private int unackedBytes;
+    // Сколько байт еще можно отправить без подтверждения устройства
+    private long sendWindow;
+
+    // Метрики потока: пишет только читатель/писатель потока, читать можно из любого
+    private final long createdNanos = System.nanoTime();
+    private volatile long openNanos;
+    private volatile long bytesRead;
+    private volatile long bytesWritten;
+    private volatile long okaysSent;
+
+    AdbClientStream(AdbClient client, int localId, String destination, int receiveWindow) {
+        this.client = client;
+        this.localId = localId;
+        this.destination = destination;
+        this.receiveWindow = receiveWindow;
+    }
+
+    public int getLocalId() {
+        return localId;
+    }
+
+    public int getRemoteId() {
+        synchronized (lock) {
+            return remoteId;
+        }
+    }
+
+    public String getDestination() {
+        return destination;
+    }
+
+    // Время от OPEN до OKAY устройства
+    public double getOpenLatencyMs() {
+        return openNanos / 1e6;
+    }
+
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    // Сколько OKAY отправлено устройству (при delayed_ack их намного меньше, чем WRTE)
+    public long getOkaysSent() {
+        return okaysSent;
+    }
+
+    public double getAgeMs() {
+        return (System.nanoTime() - createdNanos) / 1e6;
+    }
+
+    // ===== События из цикла событий AdbClient =====
+
+    /**
+     * @param ackedBytes для delayed_ack - сколько байт подтвердило устройство (в ответе на OPEN - его окно),
+     *                   -1 в классическом режиме
+     */
+    void onOkay(int remoteId, int ackedBytes) {
+        synchronized (lock) {
+            if (!opened) {
+                this.remoteId = remoteId;
+                opened = true;
+                openNanos = System.nanoTime() - createdNanos;
+            }
+            if (receiveWindow > 0 && ackedBytes >= 0) {
+                sendWindow += ackedBytes;
+                writeReady = sendWindow > 0;
+            } else {
+                writeReady = true;
+            }
+            lock.notifyAll();
+        }
+    }
+
+    // WRTE без данных: подтверждаем сразу, в очередь ничего не кладем
+    void onEmptyWrite() throws IOException {
+        if (receiveWindow > 0) {
+            client.sendOkay(localId, getRemoteId(), 0);
+        } else {
+            client.sendOkay(localId, getRemoteId());
+        }
+    }
+
+    void onData(ByteBuffer data) {
+        synchronized (lock) {
+            if (localClosed) {
+                pool.release(data);
+                return;
+            }
+            readQueue.add(data);
+            lock.notifyAll();
+        }
+    }
+
+    void onRemoteClose() {
+        synchronized (lock) {
+            remoteClosed = true;
+            lock.notifyAll();
+        }
+    }
+
+    void onTransportError(IOException e) {
+        synchronized (lock) {
+            if (failure == null) {
+                failure = e;
+            }
+            remoteClosed = true;
+            lock.notifyAll();
+        }
+    }
+
+    // Ожидание OKAY на OPEN (или CLSE, если устройство отказало)
+    void awaitOpen(long timeoutMs) throws IOException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        synchronized (lock) {
+            while (!opened && !remoteClosed) {
+                long left = deadline - System.currentTimeMillis();
+                if (left <= 0) {
+                    client.getMetrics().recordTimeout();
+                    throw new SocketTimeoutException("Timeout opening stream " + destination);
+                }
+                waitOn(left);
+            }
+            if (!opened) {
+                throw failure != null ? failure : new IOException("Device refused stream " + destination);
+            }
+        }
+    }
+
+    /**
+     * Читает следующий блок данных.
+     * @return данные или null, если поток закрыт и все данные вычитаны
+     */
+    public byte[] read(long timeoutMs) throws IOException {
+        ByteBuffer head;
+        synchronized (lock) {
+            head = awaitData(timeoutMs);
+            if (head == null) {
+                return null;
+            }
+            readQueue.poll();
+        }
+
+        byte[] data = new byte[head.remaining()];
+        head.get(data);
+        consumed(head);
+        return data;
+    }
+
+    public byte[] read() throws IOException {
+        return read(AdbClient.READ_TIMEOUT_MS);
+    }
+
+    /**
+     * Читает данные в буфер вызывающего без промежуточных массивов.
+     * @return число прочитанных байт или -1, если поток закрыт и все данные вычитаны
+     */
+    public int read(ByteBuffer dst, long timeoutMs) throws IOException {
+        ByteBuffer head;
+        int n;
+        synchronized (lock) {
+            head = awaitData(timeoutMs);
+            if (head == null) {
+                return -1;
+            }
+
+            n = Math.min(dst.remaining(), head.remaining());
+            int limit = head.limit();
+            head.limit(head.position() + n);
+            dst.put(head);
+            head.limit(limit);
+
+            if (head.hasRemaining()) {
+                return n;
+            }
+            readQueue.poll();
+        }
+
+        consumed(head);
+        return n;
+    }
+
+    /**
+     * Читает данные, пока буфер не заполнится.
+     * @throws EOFException если поток закрылся раньше
+     */
+    public void readFully(ByteBuffer dst, long timeoutMs) throws IOException {
+        while (dst.hasRemaining()) {
+            if (read(dst, timeoutMs) < 0) {
+                throw new EOFException("Stream closed: " + destination);
+            }
+        }
+    }
+
+    /**
+     * Переписывает ровно length байт в канал прямо из принятых буферов, без промежуточного копирования.
+     * Запись в канал идет вне блокировки, чтобы медленный диск не задерживал цикл событий;
+     * записываемый буфер на это время принадлежит только читателю.
+     * @throws EOFException если поток закрылся раньше
+     */
+    public void transferTo(WritableByteChannel target, long length, long timeoutMs) throws IOException {
+        while (length > 0) {
+            ByteBuffer head;
+            synchronized (lock) {
+                head = awaitData(timeoutMs);
+                if (head == null) {
+                    throw new EOFException("Stream closed: " + destination);
+                }
+                // Буфер забирается из очереди: close() во время записи не вернет его в пул
+                readQueue.poll();
+            }
+
+            int n = (int) Math.min(length, head.remaining());
+            int limit = head.limit();
+            head.limit(head.position() + n);
+            try {
+                while (head.hasRemaining()) {
+                    target.write(head);
+                }
+            } catch (IOException e) {
+                head.limit(limit);
+                giveBack(head);
+                throw e;
+            }
+            head.limit(limit);
+            length -= n;
+
+            if (head.hasRemaining()) {
+                // Остаток буфера возвращается в голову очереди для следующего чтения
+                if (!giveBack(head)) {
+                    throw new EOFException("Stream closed: " + destination);
+                }
+                continue;
+            }
+            consumed(head);
+        }
+    }
+
+    // Возвращает недочитанный буфер в голову очереди; если поток уже закрыт - в пул
+    private boolean giveBack(ByteBuffer head) {
+        synchronized (lock) {
+            if (!localClosed) {
+                readQueue.addFirst(head);
+                return true;
+            }
+        }
+        pool.release(head);
+        return false;
+    }
+
+    /**
+     * Читает данные в массив вызывающего.
+     * @return число прочитанных байт или -1, если поток закрыт и все данные вычитаны
+     */
+    public int read(byte[] dst, int offset, int length, long timeoutMs) throws IOException {
+        ByteBuffer head;
+        int n;
+        synchronized (lock) {
+            head = awaitData(timeoutMs);
+            if (head == null) {
+                return -1;
+            }
+
+            n = Math.min(length, head.remaining());
+            head.get(dst, offset, n);
+
+            if (head.hasRemaining()) {
+                return n;
+            }
+            readQueue.poll();
+        }
+
+        consumed(head);
+        return n;
+    }
+
+    /**
+     * Поток как InputStream: данные отдаются по мере прихода, закрытие InputStream закрывает поток ADB
+     */
+    public InputStream asInputStream() {
+        return new InputStream() {
+            // Для побайтового чтения: без выделения памяти на каждый байт
+            private final byte[] one = new byte[1];
+
+            @Override
+            public int read() throws IOException {
+                int n = read(one, 0, 1);
+                return n < 0 ? -1 : one[0] & 0xFF;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (len == 0) {
+                    return 0;
+                }
+                return AdbClientStream.this.read(b, off, len, AdbClient.READ_TIMEOUT_MS);
+            }
+
+            @Override
+            public int available() {
+                synchronized (lock) {
+                    ByteBuffer head = readQueue.peek();
+                    return head != null ? head.remaining() : 0;
+                }
+            }
+
+            @Override
+            public void close() {
+                AdbClientStream.this.close();
+            }
+        };
+    }
+
+    // Ждет, пока в очереди появятся данные; null - конец потока
+    private ByteBuffer awaitData(long timeoutMs) throws IOException {
+        ByteBuffer head;
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while ((head = readQueue.peek()) == null) {
+            if (remoteClosed || localClosed) {
+                if (failure != null) {
+                    throw failure;
+                }
+                return null;
+            }
+            long left = deadline - System.currentTimeMillis();
+            if (left <= 0) {
+                client.getMetrics().recordTimeout();
+                throw new SocketTimeoutException("Read timeout on " + destination);
+            }
+            waitOn(left);
+        }
+        return head;
+    }
+
+    /**
+     * Ждет данных или конца потока, но по истечении срока не бросает исключение и не считает таймаут:
+     * для фоновых читателей, для которых тишина в потоке - не ошибка.
+     * @return false, если за timeoutMs ничего не пришло
+     */
+    boolean awaitReadable(long timeoutMs) throws IOException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        synchronized (lock) {
+            while (readQueue.isEmpty() && !remoteClosed && !localClosed) {
+                long left = deadline - System.currentTimeMillis();
+                if (left <= 0) {
+                    return false;
+                }
+                waitOn(left);
+            }
+            return true;
+        }
+    }
+
+    // Таймаут, которым завершилась операция над потоком (учитывается в метриках соединения)
+    void recordTimeout() {
+        client.getMetrics().recordTimeout();
+    }
+
+    // Блок полностью прочитан: возвращаем буфер в пул и подтверждаем прием.
+    // OKAY уходит только после того, как данные забрали - так adbd не шлет больше, чем мы успеваем читать.
+    // При delayed_ack подтверждения копятся до половины окна и уходят одним OKAY
+    private void consumed(ByteBuffer buffer) throws IOException {
+        int length = buffer.limit();
+        pool.release(buffer);
+        bytesRead += length;
+
+        int ack = 0;
+        synchronized (lock) {
+            if (localClosed || remoteClosed) {
+                return;
+            }
+            if (receiveWindow > 0) {
+                unackedBytes += length;
+                if (unackedBytes < receiveWindow / 2) {
+                    return;
+                }
+                ack = unackedBytes;
+                unackedBytes = 0;
+            }
+        }
+
+        if (receiveWindow > 0) {
+            client.sendOkay(localId, getRemoteId(), ack);
+        } else {
+            client.sendOkay(localId, getRemoteId());
+        }
+        okaysSent++;
+    }
+
+    // Есть ли уже принятые, но не прочитанные данные
+    public boolean hasPendingData() {
+        synchronized (lock) {
+            return !readQueue.isEmpty();
+        }
+    }
+
+    public void write(byte[] data) throws IOException {
+        write(ByteBuffer.wrap(data));
+    }
+
+    public void write(byte[] data, int offset, int length) throws IOException {
+        write(ByteBuffer.wrap(data, offset, length));
+    }
+
+    /**
+     * Отправляет данные из буфера (буфер вычитывается до конца).
+     * Данные режутся на куски по согласованному maxdata.
+     */
+    public void write(ByteBuffer data) throws IOException {
+        int maxData = client.getMaxData();
+        do {
+            int chunk = Math.min(maxData, data.remaining());
+            awaitWriteReady(chunk);
+
+            int limit = data.limit();
+            data.limit(data.position() + chunk);
+            try {
+                client.sendWrite(localId, getRemoteId(), data);
+            } finally {
+                data.limit(limit);
+            }
+            bytesWritten += chunk;
+        } while (data.hasRemaining());
+    }
+
+    // Классический режим: на поток может быть только один неподтвержденный WRTE.
+    // delayed_ack: пишем, пока не исчерпано окно устройства
+    private void awaitWriteReady(int chunk) throws IOException {
+        long deadline = System.currentTimeMillis() + AdbClient.READ_TIMEOUT_MS;
+        synchronized (lock) {
+            while (!writeReady) {
+                if (remoteClosed || localClosed) {
+                    throw failure != null ? failure : new IOException("Stream closed: " + destination);
+                }
+                long left = deadline - System.currentTimeMillis();
+                if (left <= 0) {
+                    client.getMetrics().recordTimeout();
+                    throw new SocketTimeoutException("Write timeout on " + destination);
+                }
+                waitOn(left);
+            }
+            if (receiveWindow > 0) {
+                sendWindow -= chunk;
+                writeReady = sendWindow > 0;
+            } else {
+                writeReady = false;
+            }
+        }
+    }
+
+    public boolean isClosed() {
+        synchronized (lock) {
+            return localClosed || remoteClosed;
+        }
+    }
+
+    @Override
+    public void close() {
+        boolean sendClose;
+        synchronized (lock) {
+            if (localClosed) {
+                return;
+            }
+            sendClose = opened && !remoteClosed;
+            localClosed = true;
+            ByteBuffer buffer;
+            while ((buffer = readQueue.poll()) != null) {
+                pool.release(buffer);
+            }
+            lock.notifyAll();
+        }
+        client.onStreamClosed(this, sendClose);
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "%s #%d: open=%.1fms read=%d written=%d okays=%d",
+                destination, localId, getOpenLatencyMs(), bytesRead, bytesWritten, okaysSent);
+    }
+
+    private void waitOn(long timeoutMs) throws IOException {
+        try {
+            lock.wait(timeoutMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted on " + destination);
+        }
+    }
+}
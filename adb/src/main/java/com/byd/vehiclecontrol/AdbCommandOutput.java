@@ -0,0 +1,123 @@
+package com.byd.vehiclecontrol;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Вывод команды: до порога хранится в памяти, после - сбрасывается во временный файл.
+ * Файл удаляется в close().
+ */
+public final class AdbCommandOutput implements Closeable {
+
+    private final long spillThreshold;
+    private final File spillDir;
+
+    private ByteArrayOutputStream memory = new ByteArrayOutputStream();
+    private File file;
+    private FileOutputStream fileOutput;
+    private FileChannel fileChannel;
+    private long size;
+
+    AdbCommandOutput(long spillThreshold, File spillDir) {
+        this.spillThreshold = spillThreshold;
+        this.spillDir = spillDir;
+    }
+
+    // Дописывает данные (буфер вычитывается до конца)
+    void append(ByteBuffer data) throws IOException {
+        size += data.remaining();
+        if (file == null && size > spillThreshold) {
+            spill();
+        }
+
+        if (fileChannel != null) {
+            while (data.hasRemaining()) {
+                fileChannel.write(data);
+            }
+        } else if (data.hasArray()) {
+            memory.write(data.array(), data.arrayOffset() + data.position(), data.remaining());
+            data.position(data.limit());
+        } else {
+            while (data.hasRemaining()) {
+                memory.write(data.get());
+            }
+        }
+    }
+
+    private void spill() throws IOException {
+        file = File.createTempFile("adb-output", ".tmp", spillDir);
+        fileOutput = new FileOutputStream(file);
+        fileChannel = fileOutput.getChannel();
+        memory.writeTo(fileOutput);
+        memory = null;
+    }
+
+    // Команда завершилась: файл закрывается для записи
+    void finish() throws IOException {
+        if (fileOutput != null) {
+            fileOutput.close();
+            fileOutput = null;
+            fileChannel = null;
+        }
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public boolean isSpilled() {
+        return file != null;
+    }
+
+    // Временный файл с выводом или null, если вывод поместился в память
+    public File getFile() {
+        return file;
+    }
+
+    public InputStream openInputStream() throws IOException {
+        if (file != null) {
+            return new FileInputStream(file);
+        }
+        return new ByteArrayInputStream(memory.toByteArray());
+    }
+
+    /**
+     * Потоковое чтение вывода как текста, без загрузки файла в память целиком
+     */
+    public void decode(AdbClient.OutputCallback callback) throws IOException {
+        AdbOutputDecoder decoder = new AdbOutputDecoder();
+        byte[] chunk = new byte[AdbBufferPool.SMALL_SIZE];
+        try (InputStream input = openInputStream()) {
+            int n;
+            while ((n = input.read(chunk)) > 0) {
+                decoder.decode(ByteBuffer.wrap(chunk, 0, n), callback);
+            }
+        }
+        decoder.finish(callback);
+    }
+
+    /**
+     * Весь вывод строкой (для больших выводов лучше decode() или openInputStream())
+     */
+    public String asString() throws IOException {
+        StringBuilder result = new StringBuilder();
+        decode(result::append);
+        return result.toString();
+    }
+
+    @Override
+    public void close() throws IOException {
+        finish();
+        if (file != null && !file.delete()) {
+            file.deleteOnExit();
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package com.byd.vehiclecontrol;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Общая проверка доступности adbd по ключу host:port.
+ *
+ * Проверка и настоящее подключение - одно и то же TCP соединение: connect() отдает подключенный сокет
+ * вызывающему (adblib), connectChannel() - канал транспорту AdbClient; результат обновляет кэш доступности.
+ * Блокирующим клиентам отдается обычный Socket, а не адаптер канала: на Android (libcore на OpenJDK 8)
+ * чтение и запись адаптера синхронизированы на одном blockingLock, и запись ждала бы висящее чтение.
+ * isReachable() отвечает из кэша, пока результат моложе ttlMs; startRefresh() держит кэш свежим
+ * фоновыми проверками, так что перед подключением не нужен отдельный пробный сокет.
+ */
+public final class AdbEndpointProbe {
+    private static final String TAG = "AdbEndpointProbe";
+
+    public static final int UNKNOWN = 0;
+    public static final int REACHABLE = 1;
+    public static final int UNREACHABLE = 2;
+
+    public static final long DEFAULT_TTL_MS = 15_000;
+    public static final int DEFAULT_CONNECT_TIMEOUT_MS = 3_000;
+    public static final long DEFAULT_REFRESH_INTERVAL_MS = 10_000;
+
+    private static volatile AdbEndpointProbe sharedProbe;
+
+    // Последний результат для одного host:port
+    private static final class Endpoint {
+        final String host;
+        final int port;
+        volatile int state = UNKNOWN;
+        volatile long checkedAtNanos;
+        volatile String lastError;
+        ScheduledFuture<?> refresh;
+
+        Endpoint(String host, int port) {
+            this.host = host;
+            this.port = port;
+        }
+    }
+
+    private final long ttlNanos;
+    private final int connectTimeoutMs;
+    private final ConcurrentHashMap<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService refresher;
+
+    public AdbEndpointProbe() {
+        this(DEFAULT_TTL_MS, DEFAULT_CONNECT_TIMEOUT_MS);
+    }
+
+    public AdbEndpointProbe(long ttlMs, int connectTimeoutMs) {
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMs);
+        this.connectTimeoutMs = connectTimeoutMs;
+
+        refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "AdbEndpointProbe-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public static AdbEndpointProbe shared() {
+        AdbEndpointProbe probe = sharedProbe;
+        if (probe == null) {
+            synchronized (AdbEndpointProbe.class) {
+                probe = sharedProbe;
+                if (probe == null) {
+                    probe = new AdbEndpointProbe();
+                    sharedProbe = probe;
+                }
+            }
+        }
+        return probe;
+    }
+
+    /**
+     * Подключается с таймаутом по умолчанию. Сокет принадлежит вызывающему.
+     */
+    public Socket connect(String host, int port) throws IOException {
+        return connect(host, port, connectTimeoutMs);
+    }
+
+    public Socket connect(String host, int port, int timeoutMs) throws IOException {
+        Endpoint endpoint = endpoint(host, port);
+        Socket socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress(host, port), timeoutMs);
+        } catch (IOException e) {
+            socket.close();
+            record(endpoint, UNREACHABLE, e.toString());
+            throw e;
+        }
+        record(endpoint, REACHABLE, null);
+        return socket;
+    }
+
+    /**
+     * Подключение для неблокирующего транспорта. Канал в блокирующем режиме принадлежит вызывающему.
+     */
+    public SocketChannel connectChannel(String host, int port, int timeoutMs) throws IOException {
+        Endpoint endpoint = endpoint(host, port);
+        SocketChannel channel = SocketChannel.open();
+        try {
+            channel.socket().connect(new InetSocketAddress(host, port), timeoutMs);
+        } catch (IOException e) {
+            channel.close();
+            record(endpoint, UNREACHABLE, e.toString());
+            throw e;
+        }
+        record(endpoint, REACHABLE, null);
+        return channel;
+    }
+
+    /**
+     * Доступен ли adbd. Свежий результат берется из кэша; устаревший проверяется заново,
+     * параллельные вызовы при этом ждут одну проверку.
+     */
+    public boolean isReachable(String host, int port) {
+        Endpoint endpoint = endpoint(host, port);
+        if (isFresh(endpoint)) {
+            return endpoint.state == REACHABLE;
+        }
+        synchronized (endpoint) {
+            if (!isFresh(endpoint)) {
+                check(endpoint);
+            }
+        }
+        return endpoint.state == REACHABLE;
+    }
+
+    /**
+     * Последний известный результат без обращения к сети: UNKNOWN, если его нет или он старше ttlMs
+     */
+    public int getCachedState(String host, int port) {
+        Endpoint endpoint = endpoints.get(key(host, port));
+        return endpoint != null && isFresh(endpoint) ? endpoint.state : UNKNOWN;
+    }
+
+    // Причина последней неудачной проверки или null
+    public String getLastError(String host, int port) {
+        Endpoint endpoint = endpoints.get(key(host, port));
+        return endpoint != null ? endpoint.lastError : null;
+    }
+
+    /**
+     * Фоновая проверка раз в intervalMs. Если кэш освежило подключение, проверка пропускается.
+     * Повторный вызов для того же host:port ничего не делает.
+     */
+    public void startRefresh(String host, int port, long intervalMs) {
+        Endpoint endpoint = endpoint(host, port);
+        synchronized (endpoint) {
+            if (endpoint.refresh != null) {
+                return;
+            }
+            long intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMs);
+            endpoint.refresh = refresher.scheduleWithFixedDelay(() -> {
+                if (System.nanoTime() - endpoint.checkedAtNanos >= intervalNanos || endpoint.state == UNKNOWN) {
+                    synchronized (endpoint) {
+                        check(endpoint);
+                    }
+                }
+            }, 0, intervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public void stopRefresh(String host, int port) {
+        Endpoint endpoint = endpoints.get(key(host, port));
+        if (endpoint == null) {
+            return;
+        }
+        synchronized (endpoint) {
+            if (endpoint.refresh != null) {
+                endpoint.refresh.cancel(false);
+                endpoint.refresh = null;
+            }
+        }
+    }
+
+    // Пробное подключение: соединение сразу закрывается
+    private void check(Endpoint endpoint) {
+        try {
+            connect(endpoint.host, endpoint.port).close();
+        } catch (IOException e) {
+            AdbLog.d(TAG, "adbd недоступен " + key(endpoint.host, endpoint.port) + ": " + e.getMessage());
+        }
+    }
+
+    private void record(Endpoint endpoint, int state, String error) {
+        int previous = endpoint.state;
+        endpoint.lastError = error;
+        endpoint.state = state;
+        endpoint.checkedAtNanos = System.nanoTime();
+        if (previous != state) {
+            AdbLog.i(TAG, key(endpoint.host, endpoint.port) + (state == REACHABLE ? " доступен" : " недоступен"));
+        }
+    }
+
+    private boolean isFresh(Endpoint endpoint) {
+        return endpoint.state != UNKNOWN && System.nanoTime() - endpoint.checkedAtNanos < ttlNanos;
+    }
+
+    private Endpoint endpoint(String host, int port) {
+        return endpoints.computeIfAbsent(key(host, port), k -> new Endpoint(host, port));
+    }
+
+    private static String key(String host, int port) {
+        return host + ":" + port;
+    }
+}
@@ -0,0 +1,150 @@
+package com.byd.vehiclecontrol;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Один поток с Selector, который обслуживает все ADB соединения.
+ * Чтение и разбор сообщений происходят здесь, запись - из вызывающих потоков
+ * (а остаток, не влезший в сокет, дописывается по OP_WRITE).
+ */
+public class AdbEventLoop implements AutoCloseable {
+    private static final String TAG = "AdbEventLoop";
+
+    // Общий буфер чтения: данные сразу разбираются по соединениям, поэтому одного буфера на поток достаточно
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    private static volatile AdbEventLoop defaultLoop;
+
+    private final Selector selector;
+    private final Thread thread;
+    private final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+    private volatile boolean running = true;
+
+    public AdbEventLoop(String name) throws IOException {
+        selector = Selector.open();
+        thread = new Thread(this::loop, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Общий цикл для всех AdbClient по умолчанию. Остановленный цикл заменяется новым
+     */
+    public static AdbEventLoop getDefault() throws IOException {
+        AdbEventLoop loop = defaultLoop;
+        if (loop == null || !loop.running) {
+            synchronized (AdbEventLoop.class) {
+                loop = defaultLoop;
+                if (loop == null || !loop.running) {
+                    loop = new AdbEventLoop("AdbEventLoop");
+                    defaultLoop = loop;
+                }
+            }
+        }
+        return loop;
+    }
+
+    public boolean inEventLoop() {
+        return Thread.currentThread() == thread;
+    }
+
+    // Выполнить задачу в потоке цикла (регистрация каналов, смена interestOps)
+    void execute(Runnable task) {
+        if (!running) {
+            throw new IllegalStateException("Event loop is closed");
+        }
+        tasks.add(task);
+        selector.wakeup();
+    }
+
+    void register(AdbTransport transport) {
+        execute(() -> {
+            try {
+                SelectionKey key = transport.channel().register(selector, SelectionKey.OP_READ, transport);
+                transport.onRegistered(key);
+            } catch (IOException e) {
+                transport.closeWithError(e);
+            }
+        });
+    }
+
+    public int getConnectionCount() {
+        return selector.isOpen() ? selector.keys().size() : 0;
+    }
+
+    private void loop() {
+        try {
+            while (running) {
+                runTasks();
+                selector.select();
+                runTasks();
+
+                Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    SelectionKey key = it.next();
+                    it.remove();
+
+                    AdbTransport transport = (AdbTransport) key.attachment();
+                    try {
+                        if (!key.isValid()) {
+                            continue;
+                        }
+                        if (key.isReadable()) {
+                            transport.onReadable(readBuffer);
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            transport.onWritable();
+                        }
+                    } catch (IOException e) {
+                        transport.closeWithError(e);
+                    } catch (RuntimeException e) {
+                        AdbLog.e(TAG, "Unexpected error in transport", e);
+                        transport.closeWithError(new IOException(e));
+                    }
+                }
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            if (running) {
+                AdbLog.e(TAG, "Event loop stopped: " + e.getMessage());
+            }
+        } finally {
+            running = false;
+            shutdownTransports();
+        }
+    }
+
+    private void runTasks() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                AdbLog.e(TAG, "Event loop task failed", e);
+            }
+        }
+    }
+
+    private void shutdownTransports() {
+        try {
+            for (SelectionKey key : selector.keys()) {
+                ((AdbTransport) key.attachment()).closeWithError(new IOException("Event loop closed"));
+            }
+            selector.close();
+        } catch (IOException | ClosedSelectorException e) {
+            // Игнорируем ошибки при закрытии
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        selector.wakeup();
+    }
+}
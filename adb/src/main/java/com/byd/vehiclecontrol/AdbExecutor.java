@@ -0,0 +1,246 @@
+package com.byd.vehiclecontrol;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Отдельный ограниченный пул потоков для блокирующей ADB работы, чтобы она не занимала общий ForkJoinPool.
+ *
+ * Таймаут действительно отменяет задачу: закрываются ресурсы, которые она зарегистрировала
+ * (поток ADB уходит с CLSE), и рабочий поток прерывается. То же при cancel() у future.
+ */
+public final class AdbExecutor {
+    private static final String TAG = "AdbExecutor";
+
+    public static final int DEFAULT_THREADS = 4;
+    public static final int DEFAULT_QUEUE_CAPACITY = 64;
+
+    private static volatile AdbExecutor sharedExecutor;
+
+    /**
+     * ADB задача. Ресурсы, которые нужно закрыть при отмене, регистрируются в cancellation.
+     */
+    public interface Task<T> {
+        T run(Cancellation cancellation) throws Exception;
+    }
+
+    /**
+     * Отмена задачи: закрывает зарегистрированные ресурсы (в т.ч. зарегистрированные уже после отмены)
+     */
+    public static final class Cancellation {
+        private final List<AutoCloseable> resources = new ArrayList<>();
+        private boolean cancelled = false;
+
+        public void onCancel(AutoCloseable resource) {
+            boolean closeNow;
+            synchronized (this) {
+                closeNow = cancelled;
+                if (!closeNow) {
+                    resources.add(resource);
+                }
+            }
+            if (closeNow) {
+                closeQuietly(resource);
+            }
+        }
+
+        public synchronized boolean isCancelled() {
+            return cancelled;
+        }
+
+        void cancel() {
+            List<AutoCloseable> toClose;
+            synchronized (this) {
+                if (cancelled) {
+                    return;
+                }
+                cancelled = true;
+                toClose = new ArrayList<>(resources);
+                resources.clear();
+            }
+            for (AutoCloseable resource : toClose) {
+                closeQuietly(resource);
+            }
+        }
+
+        private static void closeQuietly(AutoCloseable resource) {
+            try {
+                resource.close();
+            } catch (Exception e) {
+                AdbLog.w(TAG, "Error closing cancelled resource", e);
+            }
+        }
+    }
+
+    private final ThreadPoolExecutor workers;
+    private final ScheduledThreadPoolExecutor timer;
+
+    // Незавершенные задачи (в очереди и выполняющиеся) - для cancelAll()
+    private final Set<CompletableFuture<?>> pending = ConcurrentHashMap.newKeySet();
+
+    // Метрики
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong timedOut = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    public AdbExecutor() {
+        this(DEFAULT_THREADS, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    public AdbExecutor(int threads, int queueCapacity) {
+        this("adb-io", threads, queueCapacity);
+    }
+
+    /**
+     * @param name префикс имен рабочих потоков (name-1, name-2, ...) и потока таймаутов (name-timeout)
+     */
+    public AdbExecutor(String name, int threads, int queueCapacity) {
+        AtomicInteger threadNumber = new AtomicInteger(1);
+        workers = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), r -> {
+                    Thread thread = new Thread(r, name + "-" + threadNumber.getAndIncrement());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        workers.allowCoreThreadTimeOut(true);
+
+        timer = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread thread = new Thread(r, name + "-timeout");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.setRemoveOnCancelPolicy(true);
+    }
+
+    public static AdbExecutor shared() {
+        AdbExecutor executor = sharedExecutor;
+        if (executor == null) {
+            synchronized (AdbExecutor.class) {
+                executor = sharedExecutor;
+                if (executor == null) {
+                    executor = new AdbExecutor();
+                    sharedExecutor = executor;
+                }
+            }
+        }
+        return executor;
+    }
+
+    /**
+     * Выполняет задачу в пуле ADB.
+     * По истечении timeoutMs future завершается TimeoutException, а задача отменяется.
+     * Если очередь заполнена - future сразу завершается RejectedExecutionException.
+     */
+    public <T> CompletableFuture<T> submit(Task<T> task, long timeoutMs) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Cancellation cancellation = new Cancellation();
+
+        Future<?> running;
+        try {
+            running = workers.submit(() -> {
+                if (result.isDone()) {
+                    return;
+                }
+                inFlight.incrementAndGet();
+                try {
+                    result.complete(task.run(cancellation));
+                } catch (Throwable e) {
+                    result.completeExceptionally(e);
+                } finally {
+                    inFlight.decrementAndGet();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            result.completeExceptionally(e);
+            return result;
+        }
+
+        pending.add(result);
+        ScheduledFuture<?> timeout = timer.schedule(() -> {
+            if (result.completeExceptionally(new TimeoutException("ADB task timed out after " + timeoutMs + " ms"))) {
+                timedOut.incrementAndGet();
+            }
+        }, timeoutMs, TimeUnit.MILLISECONDS);
+
+        result.whenComplete((value, error) -> {
+            timeout.cancel(false);
+            pending.remove(result);
+            if (error == null) {
+                completed.incrementAndGet();
+                return;
+            }
+            failed.incrementAndGet();
+            if (error instanceof TimeoutException || error instanceof CancellationException) {
+                // Таймаут или cancel() вызывающего: освобождаем поток ADB и рабочий поток
+                cancellation.cancel();
+                running.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Выполняет действие через delayMs в потоке таймаутов (действие должно быть коротким: закрыть поток и т.п.)
+     */
+    public ScheduledFuture<?> schedule(Runnable action, long delayMs) {
+        return timer.schedule(action, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Отменяет все задачи в очереди и выполняющиеся (например, при разрыве соединения):
+     * их future завершаются CancellationException, ресурсы закрываются
+     */
+    public void cancelAll() {
+        for (CompletableFuture<?> future : pending) {
+            future.cancel(true);
+        }
+    }
+
+    // Задачи, ожидающие свободного потока
+    public int getQueueDepth() {
+        return workers.getQueue().size();
+    }
+
+    // Задачи, выполняющиеся прямо сейчас
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public long getCompletedCount() {
+        return completed.get();
+    }
+
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    public long getTimedOutCount() {
+        return timedOut.get();
+    }
+
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    public void shutdown() {
+        workers.shutdownNow();
+        timer.shutdownNow();
+    }
+}
@@ -0,0 +1,49 @@
+package com.byd.vehiclecontrol;
+
+import java.util.Locale;
+
+/**
+ * Время этапов подключения AdbClient, в миллисекундах.
+ * 0 - этап не выполнялся (например, подпись, если устройство не запросило AUTH).
+ */
+public final class AdbHandshakeTiming {
+
+    long tcpConnectNanos;
+    long cnxnNanos;
+    long authSignNanos;
+    long finalCnxnNanos;
+
+    // TCP соединение до устройства
+    public double getTcpConnectMs() {
+        return tcpConnectNanos / 1e6;
+    }
+
+    // От отправки CNXN до первого ответа (AUTH или CNXN)
+    public double getCnxnMs() {
+        return cnxnNanos / 1e6;
+    }
+
+    // Подпись токена (включая ожидание загрузки ключа)
+    public double getAuthSignMs() {
+        return authSignNanos / 1e6;
+    }
+
+    // От отправки подписи/ключа до итогового CNXN
+    public double getFinalCnxnMs() {
+        return finalCnxnNanos / 1e6;
+    }
+
+    public double getTotalMs() {
+        return getTotalNanos() / 1e6;
+    }
+
+    long getTotalNanos() {
+        return tcpConnectNanos + cnxnNanos + authSignNanos + finalCnxnNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "tcp=%.1fms cnxn=%.1fms sign=%.1fms final=%.1fms total=%.1fms",
+                getTcpConnectMs(), getCnxnMs(), getAuthSignMs(), getFinalCnxnMs(), getTotalMs());
+    }
+}
@@ -0,0 +1,65 @@
+package com.byd.vehiclecontrol;
+
+/**
+ * Журнал протокольного движка ADB без зависимости от Android.
+ * В приложении VehicleApplication направляет его в android.util.Log, на JVM (тесты, бенчмарки)
+ * предупреждения и ошибки пишутся в System.err.
+ */
+public final class AdbLog {
+
+    // Приоритеты совпадают с android.util.Log
+    public static final int DEBUG = 3;
+    public static final int INFO = 4;
+    public static final int WARN = 5;
+    public static final int ERROR = 6;
+
+    /**
+     * Получатель записей журнала
+     */
+    public interface Sink {
+        void log(int priority, String tag, String message, Throwable error);
+    }
+
+    private static final Sink STDERR = (priority, tag, message, error) -> {
+        if (priority < WARN) {
+            return;
+        }
+        System.err.println((priority == WARN ? "W/" : "E/") + tag + ": " + message);
+        if (error != null) {
+            error.printStackTrace();
+        }
+    };
+
+    private static volatile Sink sink = STDERR;
+
+    private AdbLog() {
+    }
+
+    public static void setSink(Sink newSink) {
+        sink = newSink != null ? newSink : STDERR;
+    }
+
+    static void d(String tag, String message) {
+        sink.log(DEBUG, tag, message, null);
+    }
+
+    static void i(String tag, String message) {
+        sink.log(INFO, tag, message, null);
+    }
+
+    static void w(String tag, String message) {
+        sink.log(WARN, tag, message, null);
+    }
+
+    static void w(String tag, String message, Throwable error) {
+        sink.log(WARN, tag, message, error);
+    }
+
+    static void e(String tag, String message) {
+        sink.log(ERROR, tag, message, null);
+    }
+
+    static void e(String tag, String message, Throwable error) {
+        sink.log(ERROR, tag, message, error);
+    }
+}
@@ -0,0 +1,319 @@
+package com.byd.vehiclecontrol;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import net.jpountz.xxhash.StreamingXXHash32;
+import net.jpountz.xxhash.XXHash32;
+import net.jpountz.xxhash.XXHashFactory;
+
+/**
+ * Потоковая распаковка формата LZ4 frame.
+ *
+ * adbd сжимает данные RCV2 через LZ4F с настройками по умолчанию - блоки связаны: совпадения
+ * ссылаются на последние 64 КиБ предыдущих блоков. LZ4FrameInputStream из lz4-java такие кадры
+ * не читает, поэтому блоки распаковываются здесь, в окно с историей предыдущих блоков.
+ * Память - одно окно (64 КиБ + максимальный блок) и буфер сжатого блока, независимо от размера файла.
+ */
+final class AdbLz4FrameInputStream extends InputStream {
+
+    private static final int MAGIC = 0x184D2204;
+    private static final int SKIPPABLE_MAGIC_MASK = 0xFFFFFFF0;
+    private static final int SKIPPABLE_MAGIC = 0x184D2A50;
+
+    private static final int FLG_VERSION_MASK = 0xC0;
+    private static final int FLG_VERSION = 0x40;
+    private static final int FLG_BLOCK_CHECKSUM = 0x10;
+    private static final int FLG_CONTENT_SIZE = 0x08;
+    private static final int FLG_CONTENT_CHECKSUM = 0x04;
+    private static final int FLG_DICT_ID = 0x01;
+
+    private static final int UNCOMPRESSED_BLOCK = 0x80000000;
+    // Дальность ссылок LZ4
+    private static final int HISTORY_SIZE = 64 * 1024;
+    private static final int MIN_MATCH = 4;
+
+    private static final XXHash32 HASH = XXHashFactory.safeInstance().hash32();
+
+    private final InputStream in;
+    private final byte[] header = new byte[15];
+    private final byte[] one = new byte[1];
+
+    // Параметры текущего кадра
+    private boolean inFrame = false;
+    private boolean blockChecksum;
+    private boolean contentChecksum;
+    private StreamingXXHash32 contentHash;
+    private int maxBlockSize;
+
+    // Окно: история (до HISTORY_SIZE байт) + последний распакованный блок
+    private byte[] window = new byte[0];
+    private byte[] compressed = new byte[0];
+    private int windowEnd = 0;
+    private int readPos = 0;
+
+    private boolean finished = false;
+
+    AdbLz4FrameInputStream(InputStream in) {
+        this.in = in;
+    }
+
+    @Override
+    public int read() throws IOException {
+        return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        while (readPos == windowEnd) {
+            if (!nextBlock()) {
+                return -1;
+            }
+        }
+        int n = Math.min(len, windowEnd - readPos);
+        System.arraycopy(window, readPos, b, off, n);
+        readPos += n;
+        return n;
+    }
+
+    @Override
+    public int available() {
+        return windowEnd - readPos;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    // Распаковывает следующий блок в окно; false - данные кончились
+    private boolean nextBlock() throws IOException {
+        if (finished) {
+            return false;
+        }
+        if (!inFrame && !readFrameHeader()) {
+            finished = true;
+            return false;
+        }
+
+        readFully(header, 0, 4);
+        int blockHeader = intLE(header, 0);
+        if (blockHeader == 0) {
+            // EndMark
+            if (contentChecksum) {
+                readFully(header, 0, 4);
+                if (contentHash.getValue() != intLE(header, 0)) {
+                    throw new IOException("LZ4 content checksum mismatch");
+                }
+            }
+            inFrame = false;
+            return true;
+        }
+
+        boolean stored = (blockHeader & UNCOMPRESSED_BLOCK) != 0;
+        int size = blockHeader & ~UNCOMPRESSED_BLOCK;
+        if (size > maxBlockSize) {
+            throw new IOException("LZ4 block of " + size + " bytes exceeds " + maxBlockSize);
+        }
+        readFully(compressed, 0, size);
+        if (blockChecksum) {
+            readFully(header, 0, 4);
+            if (HASH.hash(compressed, 0, size, 0) != intLE(header, 0)) {
+                throw new IOException("LZ4 block checksum mismatch");
+            }
+        }
+
+        // Оставляем в окне последние HISTORY_SIZE байт, если новый блок может не поместиться
+        if (windowEnd + maxBlockSize > window.length) {
+            int keep = Math.min(windowEnd, HISTORY_SIZE);
+            System.arraycopy(window, windowEnd - keep, window, 0, keep);
+            windowEnd = keep;
+        }
+
+        int start = windowEnd;
+        if (stored) {
+            System.arraycopy(compressed, 0, window, start, size);
+            windowEnd = start + size;
+        } else {
+            windowEnd = decompressBlock(compressed, size, window, start, start + maxBlockSize);
+        }
+        readPos = start;
+
+        if (contentChecksum) {
+            contentHash.update(window, start, windowEnd - start);
+        }
+        return true;
+    }
+
+    // Читает заголовок следующего кадра, пропуская skippable кадры; false - конец потока
+    private boolean readFrameHeader() throws IOException {
+        while (true) {
+            int first = in.read();
+            if (first < 0) {
+                return false;
+            }
+            header[0] = (byte) first;
+            readFully(header, 1, 3);
+            int magic = intLE(header, 0);
+            if ((magic & SKIPPABLE_MAGIC_MASK) == SKIPPABLE_MAGIC) {
+                readFully(header, 0, 4);
+                skipFully(intLE(header, 0) & 0xFFFFFFFFL);
+                continue;
+            }
+            if (magic != MAGIC) {
+                throw new IOException("Not an LZ4 frame: magic " + Integer.toHexString(magic));
+            }
+            break;
+        }
+
+        // Дескриптор: FLG, BD, [размер содержимого: 8], [DictID: 4], HC
+        readFully(header, 0, 2);
+        int flg = header[0] & 0xFF;
+        int bd = header[1] & 0xFF;
+        if ((flg & FLG_VERSION_MASK) != FLG_VERSION) {
+            throw new IOException("Unsupported LZ4 frame version");
+        }
+        if ((flg & FLG_DICT_ID) != 0) {
+            throw new IOException("LZ4 frames with a dictionary are not supported");
+        }
+        int length = 2;
+        if ((flg & FLG_CONTENT_SIZE) != 0) {
+            readFully(header, length, 8);
+            length += 8;
+        }
+        readFully(header, length, 1);
+        int expected = (HASH.hash(header, 0, length, 0) >> 8) & 0xFF;
+        if ((header[length] & 0xFF) != expected) {
+            throw new IOException("LZ4 frame descriptor checksum mismatch");
+        }
+
+        int blockSizeId = (bd >> 4) & 0x07;
+        if (blockSizeId < 4) {
+            throw new IOException("Invalid LZ4 block size id " + blockSizeId);
+        }
+        maxBlockSize = 1 << (2 * blockSizeId + 8);
+        blockChecksum = (flg & FLG_BLOCK_CHECKSUM) != 0;
+        contentChecksum = (flg & FLG_CONTENT_CHECKSUM) != 0;
+        if (contentChecksum) {
+            contentHash = XXHashFactory.safeInstance().newStreamingHash32(0);
+        }
+
+        if (compressed.length < maxBlockSize) {
+            compressed = new byte[maxBlockSize];
+        }
+        if (window.length < HISTORY_SIZE + maxBlockSize) {
+            window = new byte[HISTORY_SIZE + maxBlockSize];
+        }
+        // Новый кадр не ссылается на данные предыдущего. Для независимых блоков
+        // ссылок назад тоже не будет - окно работает одинаково
+        windowEnd = 0;
+        readPos = 0;
+        inFrame = true;
+        return true;
+    }
+
+    /**
+     * Распаковывает блок LZ4 в dst начиная с dstOff; совпадения могут ссылаться на данные до dstOff (история).
+     * @return конец распакованных данных в dst
+     */
+    static int decompressBlock(byte[] src, int srcLen, byte[] dst, int dstOff, int dstLimit) throws IOException {
+        int s = 0;
+        int d = dstOff;
+        while (true) {
+            if (s >= srcLen) {
+                throw new IOException("Malformed LZ4 block: truncated sequence");
+            }
+            int token = src[s++] & 0xFF;
+
+            int literals = token >>> 4;
+            if (literals == 15) {
+                int b;
+                do {
+                    if (s >= srcLen) {
+                        throw new IOException("Malformed LZ4 block: truncated literal length");
+                    }
+                    b = src[s++] & 0xFF;
+                    literals += b;
+                } while (b == 255);
+            }
+            if (literals > srcLen - s || literals > dstLimit - d) {
+                throw new IOException("Malformed LZ4 block: literals out of bounds");
+            }
+            System.arraycopy(src, s, dst, d, literals);
+            s += literals;
+            d += literals;
+
+            // Последняя последовательность содержит только литералы
+            if (s == srcLen) {
+                return d;
+            }
+
+            if (srcLen - s < 2) {
+                throw new IOException("Malformed LZ4 block: truncated offset");
+            }
+            int offset = (src[s] & 0xFF) | (src[s + 1] & 0xFF) << 8;
+            s += 2;
+            if (offset == 0 || offset > d) {
+                throw new IOException("Malformed LZ4 block: invalid offset " + offset);
+            }
+
+            int matchLength = token & 0x0F;
+            if (matchLength == 15) {
+                int b;
+                do {
+                    if (s >= srcLen) {
+                        throw new IOException("Malformed LZ4 block: truncated match length");
+                    }
+                    b = src[s++] & 0xFF;
+                    matchLength += b;
+                } while (b == 255);
+            }
+            matchLength += MIN_MATCH;
+            if (matchLength > dstLimit - d) {
+                throw new IOException("Malformed LZ4 block: match out of bounds");
+            }
+
+            int match = d - offset;
+            if (offset >= matchLength) {
+                System.arraycopy(dst, match, dst, d, matchLength);
+                d += matchLength;
+            } else {
+                // Перекрывающееся совпадение повторяет последние offset байт
+                for (int i = 0; i < matchLength; i++) {
+                    dst[d++] = dst[match++];
+                }
+            }
+        }
+    }
+
+    private void readFully(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            int n = in.read(b, off, len);
+            if (n < 0) {
+                throw new EOFException("LZ4 stream ended prematurely");
+            }
+            off += n;
+            len -= n;
+        }
+    }
+
+    private void skipFully(long count) throws IOException {
+        while (count > 0) {
+            long n = in.skip(count);
+            if (n <= 0) {
+                if (in.read() < 0) {
+                    throw new EOFException("LZ4 stream ended prematurely");
+                }
+                n = 1;
+            }
+            count -= n;
+        }
+    }
+
+    private static int intLE(byte[] b, int off) {
+        return (b[off] & 0xFF) | (b[off + 1] & 0xFF) << 8 | (b[off + 2] & 0xFF) << 16 | (b[off + 3] & 0xFF) << 24;
+    }
+}
@@ -0,0 +1,51 @@
+package com.byd.vehiclecontrol;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Разобранное ADB сообщение. Декодер переиспользует один экземпляр на соединение,
+ * поэтому данные, которые нужно сохранить, забираются через detachPayload().
+ */
+final class AdbMessage {
+    int command;
+    int arg0;
+    int arg1;
+    int dataLength;
+    int dataChecksum;
+
+    // Данные из AdbBufferPool (position..limit), null если сообщение без данных
+    ByteBuffer payload;
+
+    AdbMessage() {
+    }
+
+    AdbMessage(int command, int arg0, int arg1, byte[] data) {
+        this.command = command;
+        this.arg0 = arg0;
+        this.arg1 = arg1;
+        this.dataLength = data.length;
+        this.payload = data.length > 0 ? ByteBuffer.wrap(data) : null;
+    }
+
+    // Забрать данные себе: после этого декодер не вернет буфер в пул
+    ByteBuffer detachPayload() {
+        ByteBuffer data = payload;
+        payload = null;
+        return data;
+    }
+
+    // Копия данных в отдельный массив (только для редких служебных сообщений)
+    byte[] data() {
+        if (payload == null) {
+            return new byte[0];
+        }
+        byte[] data = new byte[payload.remaining()];
+        payload.duplicate().get(data);
+        return data;
+    }
+
+    // Независимая копия для передачи в другой поток
+    AdbMessage copy() {
+        return new AdbMessage(command, arg0, arg1, data());
+    }
+}
@@ -0,0 +1,187 @@
+package com.byd.vehiclecontrol;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Кодирование и инкрементальный разбор ADB сообщений без выделения памяти на каждый пакет:
+ * заголовок пишется в переиспользуемый буфер, данные берутся из AdbBufferPool.
+ */
+final class AdbMessageCodec {
+
+    static final int HEADER_SIZE = 24;
+
+    // Защита от мусора в заголовке: больше 1 MiB adbd никогда не отправляет
+    static final int MAX_PAYLOAD = 1024 * 1024;
+
+    private AdbMessageCodec() {
+    }
+
+    /**
+     * Сумма байт данных от position до limit (позиция буфера не меняется)
+     */
+    static int checksum(ByteBuffer data) {
+        if (data == null) {
+            return 0;
+        }
+        int sum = 0;
+        if (data.hasArray()) {
+            byte[] array = data.array();
+            int end = data.arrayOffset() + data.limit();
+            for (int i = data.arrayOffset() + data.position(); i < end; i++) {
+                sum += array[i] & 0xFF;
+            }
+        } else {
+            for (int i = data.position(); i < data.limit(); i++) {
+                sum += data.get(i) & 0xFF;
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Записывает заголовок в header (little endian, 24 байта) и готовит его к записи в канал
+     */
+    static void encodeHeader(ByteBuffer header, int command, int arg0, int arg1, ByteBuffer payload) {
+        encodeHeader(header, command, arg0, arg1, payload, true);
+    }
+
+    /**
+     * withChecksum = false для протокола 0x01000001+, где adbd не проверяет сумму данных
+     */
+    static void encodeHeader(ByteBuffer header, int command, int arg0, int arg1, ByteBuffer payload,
+                             boolean withChecksum) {
+        int length = payload != null ? payload.remaining() : 0;
+        header.clear();
+        header.putInt(command)
+                .putInt(arg0)
+                .putInt(arg1)
+                .putInt(length)
+                .putInt(withChecksum ? checksum(payload) : 0)
+                .putInt(~command);
+        header.flip();
+    }
+
+    /**
+     * Инкрементальный разбор потока байт в сообщения.
+     * Хранит недочитанный заголовок/данные между вызовами decode().
+     */
+    static final class Decoder {
+
+        interface Handler {
+            /**
+             * Сообщение действительно только на время вызова; данные можно забрать detachPayload()
+             */
+            void onMessage(AdbMessage message) throws IOException;
+        }
+
+        private final AdbBufferPool pool;
+        private final AdbMetrics metrics;
+        private final ByteBuffer header = ByteBuffer.allocateDirect(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        private final AdbMessage message = new AdbMessage();
+        private boolean headerComplete = false;
+
+        // До согласования версии допускаем нулевую сумму: новый adbd перестает ее считать сразу после нашего CNXN
+        private volatile boolean verifyChecksum = true;
+        private volatile boolean negotiated = false;
+
+        Decoder(AdbBufferPool pool) {
+            this(pool, null);
+        }
+
+        // metrics (может быть null) получает время проверки контрольных сумм
+        Decoder(AdbBufferPool pool, AdbMetrics metrics) {
+            this.pool = pool;
+            this.metrics = metrics;
+        }
+
+        /**
+         * После согласования версии: проверять ли сумму данных входящих сообщений
+         */
+        void setVerifyChecksum(boolean verify) {
+            verifyChecksum = verify;
+            negotiated = true;
+        }
+
+        void decode(ByteBuffer src, Handler handler) throws IOException {
+            while (src.hasRemaining()) {
+                if (!headerComplete) {
+                    if (!fill(header, src)) {
+                        return;
+                    }
+                    parseHeader();
+                }
+
+                if (message.payload != null && !fill(message.payload, src)) {
+                    return;
+                }
+                deliver(handler);
+            }
+        }
+
+        private void parseHeader() throws IOException {
+            header.flip();
+            message.command = header.getInt();
+            message.arg0 = header.getInt();
+            message.arg1 = header.getInt();
+            message.dataLength = header.getInt();
+            message.dataChecksum = header.getInt();
+            int magic = header.getInt();
+            header.clear();
+
+            if (message.command != (~magic)) {
+                throw new IOException("Invalid magic number in response");
+            }
+            if (message.dataLength < 0 || message.dataLength > MAX_PAYLOAD) {
+                throw new IOException("Invalid payload length: " + message.dataLength);
+            }
+
+            message.payload = message.dataLength > 0 ? pool.acquire(message.dataLength) : null;
+            headerComplete = true;
+        }
+
+        private void deliver(Handler handler) throws IOException {
+            headerComplete = false;
+            if (message.payload != null) {
+                message.payload.flip();
+                boolean verify = verifyChecksum && (negotiated || message.dataChecksum != 0);
+                if (verify) {
+                    long start = System.nanoTime();
+                    int sum = checksum(message.payload);
+                    if (metrics != null) {
+                        metrics.recordChecksum(message.dataLength, System.nanoTime() - start);
+                    }
+                    if (sum != message.dataChecksum) {
+                        release();
+                        throw new IOException("Data checksum mismatch");
+                    }
+                }
+            }
+
+            try {
+                handler.onMessage(message);
+            } finally {
+                // Если обработчик не забрал данные - возвращаем буфер в пул
+                release();
+            }
+        }
+
+        // Освободить недочитанные данные (при закрытии соединения)
+        void release() {
+            pool.release(message.detachPayload());
+        }
+
+        // Копирует из src в dst сколько влезет; true - dst заполнен
+        private static boolean fill(ByteBuffer dst, ByteBuffer src) {
+            int n = Math.min(dst.remaining(), src.remaining());
+            if (n > 0) {
+                int limit = src.limit();
+                src.limit(src.position() + n);
+                dst.put(src);
+                src.limit(limit);
+            }
+            return !dst.hasRemaining();
+        }
+    }
+}
@@ -0,0 +1,413 @@
+package com.byd.vehiclecontrol;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Счетчики и гистограммы задержек ADB соединения.
+ * У каждого AdbClient свой экземпляр; все записи дублируются в общий global(),
+ * чтобы MainActivity или CLI могли выгрузить цифры без доступа к конкретному соединению.
+ * Запись - несколько атомарных инкрементов, снимок snapshot() не блокирует пишущих.
+ */
+public final class AdbMetrics {
+
+    // Операции, для которых собирается гистограмма задержек
+    public static final int OP_HANDSHAKE = 0;  // TCP + CNXN/AUTH до итогового CNXN
+    public static final int OP_OPEN = 1;       // OPEN до OKAY
+    public static final int OP_EXEC = 2;       // exec: от OPEN до конца вывода
+    public static final int OP_SHELL = 3;      // команда интерактивного shell до приглашения
+    public static final int OP_SHELL_V2 = 4;   // shell,v2 до пакета exit
+    public static final int OP_PIPELINED = 5;  // конвейерный shell от отправки до результата
+    private static final String[] OP_NAMES = {"handshake", "open", "exec", "shell", "shell_v2", "pipelined"};
+
+    // Команды протокола, по которым считаются сообщения и байты; прочее попадает в "other"
+    private static final int[] COMMANDS = {
+            0x4e584e43, // CNXN
+            0x48545541, // AUTH
+            0x4e45504f, // OPEN
+            0x59414b4f, // OKAY
+            0x45534c43, // CLSE
+            0x45545257, // WRTE
+    };
+    private static final String[] COMMAND_NAMES = {"CNXN", "AUTH", "OPEN", "OKAY", "CLSE", "WRTE", "other"};
+
+    private static volatile AdbMetrics global;
+
+    private final AdbMetrics parent;
+
+    private final AtomicLongArray messagesIn = new AtomicLongArray(COMMAND_NAMES.length);
+    private final AtomicLongArray messagesOut = new AtomicLongArray(COMMAND_NAMES.length);
+    private final AtomicLongArray bytesIn = new AtomicLongArray(COMMAND_NAMES.length);
+    private final AtomicLongArray bytesOut = new AtomicLongArray(COMMAND_NAMES.length);
+    private final AtomicLong checksumNanos = new AtomicLong();
+    private final AtomicLong checksumBytes = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong reconnects = new AtomicLong();
+    private final AtomicLong connectFailures = new AtomicLong();
+    private final Histogram[] latencies = new Histogram[OP_NAMES.length];
+    private volatile AdbHandshakeTiming handshakeTiming;
+
+    AdbMetrics(AdbMetrics parent) {
+        this.parent = parent;
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = new Histogram();
+        }
+    }
+
+    /**
+     * Сумма по всем соединениям процесса с момента запуска
+     */
+    public static AdbMetrics global() {
+        AdbMetrics metrics = global;
+        if (metrics == null) {
+            synchronized (AdbMetrics.class) {
+                metrics = global;
+                if (metrics == null) {
+                    metrics = new AdbMetrics(null);
+                    global = metrics;
+                }
+            }
+        }
+        return metrics;
+    }
+
+    // ===== Запись =====
+
+    // bytes - размер сообщения на проводе: заголовок и данные
+    void recordIn(int command, int bytes) {
+        int index = commandIndex(command);
+        messagesIn.incrementAndGet(index);
+        bytesIn.addAndGet(index, bytes);
+        if (parent != null) {
+            parent.recordIn(command, bytes);
+        }
+    }
+
+    void recordOut(int command, int bytes) {
+        int index = commandIndex(command);
+        messagesOut.incrementAndGet(index);
+        bytesOut.addAndGet(index, bytes);
+        if (parent != null) {
+            parent.recordOut(command, bytes);
+        }
+    }
+
+    // Подсчет или проверка контрольной суммы данных (только протокол до 0x01000001)
+    void recordChecksum(int bytes, long nanos) {
+        checksumBytes.addAndGet(bytes);
+        checksumNanos.addAndGet(nanos);
+        if (parent != null) {
+            parent.recordChecksum(bytes, nanos);
+        }
+    }
+
+    void recordLatency(int operation, long nanos) {
+        latencies[operation].record(nanos);
+        if (parent != null) {
+            parent.recordLatency(operation, nanos);
+        }
+    }
+
+    void recordHandshake(AdbHandshakeTiming timing) {
+        handshakeTiming = timing;
+        recordLatency(OP_HANDSHAKE, timing.getTotalNanos());
+        if (parent != null) {
+            parent.handshakeTiming = timing;
+        }
+    }
+
+    void recordTimeout() {
+        timeouts.incrementAndGet();
+        if (parent != null) {
+            parent.recordTimeout();
+        }
+    }
+
+    // Соединение установлено после неудачных попыток
+    void recordReconnect() {
+        reconnects.incrementAndGet();
+        if (parent != null) {
+            parent.recordReconnect();
+        }
+    }
+
+    // Неудачная попытка подключения (соединения еще нет, поэтому пишется сразу в global)
+    void recordConnectFailure() {
+        connectFailures.incrementAndGet();
+        if (parent != null) {
+            parent.recordConnectFailure();
+        }
+    }
+
+    private static int commandIndex(int command) {
+        for (int i = 0; i < COMMANDS.length; i++) {
+            if (COMMANDS[i] == command) {
+                return i;
+            }
+        }
+        return COMMANDS.length;
+    }
+
+    // ===== Чтение =====
+
+    public Snapshot snapshot() {
+        return new Snapshot(this);
+    }
+
+    /**
+     * Гистограмма задержек в микросекундах: логарифмические корзины по 4 на каждую степень двойки,
+     * погрешность перцентилей не больше 25%. Память фиксированная, запись без блокировок.
+     */
+    static final class Histogram {
+
+        private static final int SUB_BUCKETS = 4;
+        // 4 * 40 корзин покрывают до 2^40 мкс (~12 суток)
+        private static final int BUCKETS = SUB_BUCKETS * 40;
+
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong totalMicros = new AtomicLong();
+        private final AtomicLong maxMicros = new AtomicLong();
+
+        void record(long nanos) {
+            long micros = Math.max(0, nanos / 1000);
+            counts.incrementAndGet(bucket(micros));
+            count.incrementAndGet();
+            totalMicros.addAndGet(micros);
+            long max;
+            while (micros > (max = maxMicros.get())) {
+                if (maxMicros.compareAndSet(max, micros)) {
+                    break;
+                }
+            }
+        }
+
+        static int bucket(long micros) {
+            if (micros < SUB_BUCKETS) {
+                return (int) micros;
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(micros);
+            int sub = (int) (micros >>> (exponent - 2)) & (SUB_BUCKETS - 1);
+            return Math.min(BUCKETS - 1, (exponent - 1) * SUB_BUCKETS + sub);
+        }
+
+        // Верхняя граница корзины (включительно)
+        static long upperBound(int bucket) {
+            if (bucket < SUB_BUCKETS) {
+                return bucket;
+            }
+            int exponent = bucket / SUB_BUCKETS + 1;
+            long lower = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << (exponent - 2);
+            return lower + (1L << (exponent - 2)) - 1;
+        }
+    }
+
+    /**
+     * Сводка гистограммы одной операции, в миллисекундах
+     */
+    public static final class LatencySnapshot {
+
+        private final long count;
+        private final double meanMs;
+        private final double p50Ms;
+        private final double p90Ms;
+        private final double p99Ms;
+        private final double maxMs;
+
+        LatencySnapshot(Histogram histogram) {
+            long[] counts = new long[Histogram.BUCKETS];
+            long total = 0;
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = histogram.counts.get(i);
+                total += counts[i];
+            }
+            long max = histogram.maxMicros.get();
+            this.count = total;
+            this.meanMs = total == 0 ? 0 : histogram.totalMicros.get() / 1e3 / histogram.count.get();
+            this.p50Ms = percentile(counts, total, 0.50, max);
+            this.p90Ms = percentile(counts, total, 0.90, max);
+            this.p99Ms = percentile(counts, total, 0.99, max);
+            this.maxMs = max / 1e3;
+        }
+
+        private static double percentile(long[] counts, long total, double quantile, long max) {
+            if (total == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(quantile * total);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(Histogram.upperBound(i), max) / 1e3;
+                }
+            }
+            return max / 1e3;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public double getMeanMs() {
+            return meanMs;
+        }
+
+        public double getP50Ms() {
+            return p50Ms;
+        }
+
+        public double getP90Ms() {
+            return p90Ms;
+        }
+
+        public double getP99Ms() {
+            return p99Ms;
+        }
+
+        public double getMaxMs() {
+            return maxMs;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "n=%d mean=%.2fms p50=%.2fms p90=%.2fms p99=%.2fms max=%.2fms",
+                    count, meanMs, p50Ms, p90Ms, p99Ms, maxMs);
+        }
+    }
+
+    /**
+     * Неизменяемый снимок метрик. Счетчики читаются по одному, поэтому между ними
+     * возможен небольшой разброс, если соединение в этот момент работает.
+     */
+    public static final class Snapshot {
+
+        private final long[] messagesIn = new long[COMMAND_NAMES.length];
+        private final long[] messagesOut = new long[COMMAND_NAMES.length];
+        private final long[] bytesIn = new long[COMMAND_NAMES.length];
+        private final long[] bytesOut = new long[COMMAND_NAMES.length];
+        private final long checksumNanos;
+        private final long checksumBytes;
+        private final long timeouts;
+        private final long reconnects;
+        private final long connectFailures;
+        private final LatencySnapshot[] latencies = new LatencySnapshot[OP_NAMES.length];
+        private final AdbHandshakeTiming handshakeTiming;
+
+        Snapshot(AdbMetrics metrics) {
+            for (int i = 0; i < COMMAND_NAMES.length; i++) {
+                messagesIn[i] = metrics.messagesIn.get(i);
+                messagesOut[i] = metrics.messagesOut.get(i);
+                bytesIn[i] = metrics.bytesIn.get(i);
+                bytesOut[i] = metrics.bytesOut.get(i);
+            }
+            checksumNanos = metrics.checksumNanos.get();
+            checksumBytes = metrics.checksumBytes.get();
+            timeouts = metrics.timeouts.get();
+            reconnects = metrics.reconnects.get();
+            connectFailures = metrics.connectFailures.get();
+            for (int i = 0; i < latencies.length; i++) {
+                latencies[i] = new LatencySnapshot(metrics.latencies[i]);
+            }
+            handshakeTiming = metrics.handshakeTiming;
+        }
+
+        // command - код команды ADB (например, 0x45545257 для WRTE)
+        public long getMessagesIn(int command) {
+            return messagesIn[commandIndex(command)];
+        }
+
+        public long getMessagesOut(int command) {
+            return messagesOut[commandIndex(command)];
+        }
+
+        public long getBytesIn(int command) {
+            return bytesIn[commandIndex(command)];
+        }
+
+        public long getBytesOut(int command) {
+            return bytesOut[commandIndex(command)];
+        }
+
+        public long getTotalMessagesIn() {
+            return sum(messagesIn);
+        }
+
+        public long getTotalMessagesOut() {
+            return sum(messagesOut);
+        }
+
+        public long getTotalBytesIn() {
+            return sum(bytesIn);
+        }
+
+        public long getTotalBytesOut() {
+            return sum(bytesOut);
+        }
+
+        public double getChecksumMs() {
+            return checksumNanos / 1e6;
+        }
+
+        public long getChecksumBytes() {
+            return checksumBytes;
+        }
+
+        public long getTimeoutCount() {
+            return timeouts;
+        }
+
+        public long getReconnectCount() {
+            return reconnects;
+        }
+
+        public long getConnectFailureCount() {
+            return connectFailures;
+        }
+
+        // operation - одна из констант OP_*
+        public LatencySnapshot getLatency(int operation) {
+            return latencies[operation];
+        }
+
+        // Этапы последнего рукопожатия, null - подключений еще не было
+        public AdbHandshakeTiming getHandshakeTiming() {
+            return handshakeTiming;
+        }
+
+        private static long sum(long[] values) {
+            long total = 0;
+            for (long value : values) {
+                total += value;
+            }
+            return total;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder out = new StringBuilder();
+            out.append(String.format(Locale.US, "messages in=%d (%d bytes) out=%d (%d bytes)%n",
+                    getTotalMessagesIn(), getTotalBytesIn(), getTotalMessagesOut(), getTotalBytesOut()));
+            for (int i = 0; i < COMMAND_NAMES.length; i++) {
+                if (messagesIn[i] == 0 && messagesOut[i] == 0) {
+                    continue;
+                }
+                out.append(String.format(Locale.US, "  %-5s in=%d (%d bytes) out=%d (%d bytes)%n",
+                        COMMAND_NAMES[i], messagesIn[i], bytesIn[i], messagesOut[i], bytesOut[i]));
+            }
+            out.append(String.format(Locale.US, "checksum %.2fms over %d bytes%n", getChecksumMs(), checksumBytes));
+            out.append(String.format(Locale.US, "timeouts=%d reconnects=%d connect failures=%d%n",
+                    timeouts, reconnects, connectFailures));
+            if (handshakeTiming != null) {
+                out.append("last handshake ").append(handshakeTiming).append('\n');
+            }
+            for (int i = 0; i < latencies.length; i++) {
+                if (latencies[i].getCount() > 0) {
+                    out.append(String.format(Locale.US, "%-9s ", OP_NAMES[i])).append(latencies[i]).append('\n');
+                }
+            }
+            return out.toString();
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.byd.vehiclecontrol;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Потоковое декодирование вывода команды из UTF-8.
+ * Один CharsetDecoder и фиксированные буферы на всю команду: многобайтные символы,
+ * разрезанные между пакетами, доклеиваются из хвоста предыдущего пакета.
+ */
+final class AdbOutputDecoder {
+
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+    // Байты, ожидающие декодирования (в т.ч. неполный символ с конца прошлого пакета)
+    private final ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE);
+    private final CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
+
+    /**
+     * Декодирует данные (буфер вычитывается до конца) и отдает текст в callback
+     */
+    void decode(ByteBuffer data, AdbClient.OutputCallback callback) throws IOException {
+        while (data.hasRemaining()) {
+            int n = Math.min(bytes.remaining(), data.remaining());
+            int limit = data.limit();
+            data.limit(data.position() + n);
+            bytes.put(data);
+            data.limit(limit);
+
+            bytes.flip();
+            drain(callback, false);
+            bytes.compact();
+        }
+    }
+
+    /**
+     * Конец вывода: недописанный символ заменяется на U+FFFD, декодер готов к следующей команде
+     */
+    void finish(AdbClient.OutputCallback callback) throws IOException {
+        bytes.flip();
+        drain(callback, true);
+        while (decoder.flush(chars).isOverflow()) {
+            emit(callback);
+        }
+        emit(callback);
+
+        bytes.clear();
+        decoder.reset();
+    }
+
+    private void drain(AdbClient.OutputCallback callback, boolean endOfInput) throws IOException {
+        while (decoder.decode(bytes, chars, endOfInput).isOverflow()) {
+            emit(callback);
+        }
+        // Underflow: остаток в bytes - начало символа, который придет следующим пакетом
+        emit(callback);
+    }
+
+    private void emit(AdbClient.OutputCallback callback) throws IOException {
+        chars.flip();
+        if (chars.hasRemaining()) {
+            callback.onOutput(chars);
+        }
+        chars.clear();
+    }
+}
@@ -0,0 +1,265 @@
+package com.byd.vehiclecontrol;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shell без PTY, в который команды пишутся подряд, не дожидаясь ответа на предыдущую.
+ * После каждой команды shell печатает маркер с ее номером и кодом завершения,
+ * по маркерам вывод разрезается и раздается в CompletableFuture в порядке отправки.
+ *
+ * Команда выполняется в текущем shell ({ ... }), поэтому cd и переменные сохраняются между командами.
+ * stdin команды - /dev/null, чтобы она не съела следующие команды из потока.
+ *
+ * Команды выполняются по очереди, поэтому у каждой свой срок commandTimeoutMs, отсчитываемый с момента,
+ * когда она становится первой в очереди. Зависшая команда держала бы все следующие, так что по истечении
+ * срока ее future завершается SocketTimeoutException, а shell закрывается.
+ */
+public final class AdbPipelinedShell implements AutoCloseable {
+    private static final String TAG = "AdbPipelinedShell";
+
+    public static final long DEFAULT_COMMAND_TIMEOUT_MS = 30_000;
+
+    private static final class Pending {
+        final long id;
+        final CompletableFuture<AdbShellResult> future = new CompletableFuture<>();
+
+        Pending(long id) {
+            this.id = id;
+        }
+    }
+
+    private final AdbClientStream stream;
+    private final String marker;
+    private final ArrayDeque<Pending> pending = new ArrayDeque<>();
+    private final Object writeLock = new Object();
+    private final Thread reader;
+    private final long commandTimeoutNanos;
+    private long nextId = 1;
+    // Срок первой команды в очереди (под pending)
+    private long headDeadlineNanos;
+    private volatile boolean closed = false;
+
+    // Накопленный вывод текущей команды (только поток reader)
+    private final StringBuilder output = new StringBuilder();
+    private int scanFrom = 0;
+
+    AdbPipelinedShell(AdbClientStream stream) {
+        this(stream, DEFAULT_COMMAND_TIMEOUT_MS);
+    }
+
+    AdbPipelinedShell(AdbClientStream stream, long commandTimeoutMs) {
+        this.stream = stream;
+        this.commandTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(commandTimeoutMs);
+
+        // Случайная часть маркера, чтобы он не совпал с выводом команды
+        byte[] random = new byte[8];
+        new SecureRandom().nextBytes(random);
+        StringBuilder token = new StringBuilder("__ADB_DONE_");
+        for (byte b : random) {
+            token.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        marker = token.append("__").toString();
+
+        reader = new Thread(this::readLoop, "AdbPipeline-" + stream.getLocalId());
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    public CompletableFuture<AdbShellResult> submit(String command) {
+        return submitAll(Collections.singletonList(command)).get(0);
+    }
+
+    /**
+     * Отправляет все команды одной записью и возвращает по future на каждую (в том же порядке)
+     */
+    public List<CompletableFuture<AdbShellResult>> submitAll(List<String> commands) {
+        List<CompletableFuture<AdbShellResult>> futures = new ArrayList<>(commands.size());
+        StringBuilder script = new StringBuilder();
+
+        synchronized (writeLock) {
+            List<Pending> batch = new ArrayList<>(commands.size());
+            synchronized (pending) {
+                for (String command : commands) {
+                    Pending entry = new Pending(nextId++);
+                    if (closed) {
+                        entry.future.completeExceptionally(new IOException("Pipelined shell closed"));
+                    } else {
+                        if (pending.isEmpty()) {
+                            headDeadlineNanos = System.nanoTime() + commandTimeoutNanos;
+                        }
+                        pending.add(entry);
+                        batch.add(entry);
+                    }
+                    futures.add(entry.future);
+
+                    script.append("{ ").append(command).append("\n} </dev/null; echo \"")
+                            .append(marker).append(entry.id).append(":$?\"\n");
+                }
+            }
+
+            if (!batch.isEmpty()) {
+                try {
+                    stream.write(script.toString().getBytes(StandardCharsets.UTF_8));
+                } catch (IOException e) {
+                    fail(e);
+                }
+            }
+        }
+        return futures;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        stream.close();
+        fail(new IOException("Pipelined shell closed"));
+    }
+
+    // ===== Поток чтения =====
+
+    private void readLoop() {
+        AdbOutputDecoder decoder = new AdbOutputDecoder();
+        AdbBufferPool pool = AdbBufferPool.shared();
+        ByteBuffer buffer = pool.acquire(AdbBufferPool.SMALL_SIZE);
+        IOException cause = new IOException("Shell stream closed");
+        try {
+            while (true) {
+                // Тишина в простаивающем shell - не таймаут: ждем без учета в метриках,
+                // таймаутом считается только истекший срок команды (expireHead)
+                long timeoutMs = readTimeoutMs();
+                if (!stream.awaitReadable(timeoutMs)) {
+                    if (expireHead()) {
+                        return;
+                    }
+                    continue;
+                }
+                int n = stream.read(buffer, timeoutMs);
+                if (n < 0) {
+                    break;
+                }
+                buffer.flip();
+                decoder.decode(buffer, this::onOutput);
+                buffer.clear();
+                // Команда, которая пишет без остановки, тоже не должна жить дольше срока
+                if (expireHead()) {
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            if (!closed) {
+                AdbLog.e(TAG, "Pipelined shell failed", e);
+            }
+            cause = e;
+        } finally {
+            pool.release(buffer);
+        }
+
+        closed = true;
+        fail(cause);
+    }
+
+    // Ждем данных не дольше, чем до срока первой команды; без команд - не дольше одного срока,
+    // чтобы команда, отправленная во время ожидания, не пережила свой срок намного
+    private long readTimeoutMs() {
+        synchronized (pending) {
+            if (pending.isEmpty()) {
+                return Math.min(TimeUnit.NANOSECONDS.toMillis(commandTimeoutNanos), AdbClient.READ_TIMEOUT_MS);
+            }
+            long remaining = TimeUnit.NANOSECONDS.toMillis(headDeadlineNanos - System.nanoTime());
+            return Math.max(1, Math.min(remaining, AdbClient.READ_TIMEOUT_MS));
+        }
+    }
+
+    /**
+     * Срок первой команды истек: ее future завершается таймаутом, shell закрывается (остальные команды
+     * получают IOException). Возвращает true, если shell закрыт.
+     */
+    private boolean expireHead() {
+        Pending entry;
+        synchronized (pending) {
+            entry = pending.peek();
+            if (entry == null || System.nanoTime() - headDeadlineNanos < 0) {
+                return false;
+            }
+            pending.poll();
+        }
+        long timeoutMs = TimeUnit.NANOSECONDS.toMillis(commandTimeoutNanos);
+        AdbLog.w(TAG, "Command " + entry.id + " timed out after " + timeoutMs + " ms, closing shell");
+        stream.recordTimeout();
+        entry.future.completeExceptionally(
+                new SocketTimeoutException("Command timed out after " + timeoutMs + " ms"));
+        close();
+        return true;
+    }
+
+    private void onOutput(CharSequence chunk) {
+        output.append(chunk);
+
+        int start;
+        while ((start = output.indexOf(marker, scanFrom)) >= 0) {
+            int end = output.indexOf("\n", start);
+            if (end < 0) {
+                // Маркер пришел не полностью
+                scanFrom = start;
+                return;
+            }
+
+            String status = output.substring(start + marker.length(), end);
+            String text = output.substring(0, start);
+            output.delete(0, end + 1);
+            scanFrom = 0;
+            complete(status, text);
+        }
+        scanFrom = Math.max(0, output.length() - marker.length());
+    }
+
+    private void complete(String status, String text) {
+        int colon = status.indexOf(':');
+        long id;
+        int exitCode;
+        try {
+            id = Long.parseLong(status.substring(0, colon));
+            exitCode = Integer.parseInt(status.substring(colon + 1).trim());
+        } catch (RuntimeException e) {
+            AdbLog.w(TAG, "Malformed marker: " + status);
+            return;
+        }
+
+        Pending entry;
+        synchronized (pending) {
+            entry = pending.peek();
+            if (entry == null || entry.id != id) {
+                AdbLog.w(TAG, "Unexpected marker " + id);
+                return;
+            }
+            pending.poll();
+            headDeadlineNanos = System.nanoTime() + commandTimeoutNanos;
+        }
+        entry.future.complete(new AdbShellResult(text, "", exitCode));
+    }
+
+    private void fail(IOException cause) {
+        List<Pending> failed;
+        synchronized (pending) {
+            failed = new ArrayList<>(pending);
+            pending.clear();
+        }
+        for (Pending entry : failed) {
+            entry.future.completeExceptionally(cause);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.byd.vehiclecontrol;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Политика переподключения к adbd: экспоненциальная пауза со случайным разбросом,
+ * общий дедлайн на все попытки и быстрый отказ, если порт отвечает "connection refused"
+ * (adb по TCP выключен - ждать нечего).
+ *
+ * Также собирает метрики восстановления: сколько раз соединение удалось восстановить и за какое время.
+ */
+public final class AdbReconnectPolicy {
+
+    public static final long DEFAULT_INITIAL_DELAY_MS = 200;
+    public static final long DEFAULT_MAX_DELAY_MS = 5000;
+    public static final long DEFAULT_DEADLINE_MS = 30_000;
+    public static final int DEFAULT_MAX_ATTEMPTS = 10;
+    public static final int DEFAULT_MAX_REFUSED_ATTEMPTS = 3;
+
+    // Доля паузы, на которую она случайно сокращается: клиенты не переподключаются одновременно
+    private static final double JITTER = 0.5;
+    private static final double MULTIPLIER = 2.0;
+
+    private static final AdbReconnectPolicy DEFAULT = new AdbReconnectPolicy(DEFAULT_INITIAL_DELAY_MS,
+            DEFAULT_MAX_DELAY_MS, DEFAULT_DEADLINE_MS, DEFAULT_MAX_ATTEMPTS, DEFAULT_MAX_REFUSED_ATTEMPTS);
+
+    private final long initialDelayMs;
+    private final long maxDelayMs;
+    private final long deadlineMs;
+    private final int maxAttempts;
+    private final int maxRefusedAttempts;
+
+    // Метрики
+    private final AtomicLong recoveries = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong lastRecoveryMs = new AtomicLong();
+    private final AtomicLong maxRecoveryMs = new AtomicLong();
+    private final AtomicLong totalRecoveryMs = new AtomicLong();
+
+    /**
+     * @param deadlineMs общее время на все попытки
+     * @param maxRefusedAttempts сколько попыток подряд с "connection refused" допускается до отказа
+     */
+    public AdbReconnectPolicy(long initialDelayMs, long maxDelayMs, long deadlineMs, int maxAttempts,
+                              int maxRefusedAttempts) {
+        this.initialDelayMs = initialDelayMs;
+        this.maxDelayMs = maxDelayMs;
+        this.deadlineMs = deadlineMs;
+        this.maxAttempts = maxAttempts;
+        this.maxRefusedAttempts = maxRefusedAttempts;
+    }
+
+    public static AdbReconnectPolicy getDefault() {
+        return DEFAULT;
+    }
+
+    public long getDeadlineMs() {
+        return deadlineMs;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public int getMaxRefusedAttempts() {
+        return maxRefusedAttempts;
+    }
+
+    /**
+     * Пауза перед следующей попыткой (attempt - номер неудачной попытки, с 0)
+     */
+    public long nextDelayMs(int attempt) {
+        double delay = Math.min(maxDelayMs, initialDelayMs * Math.pow(MULTIPLIER, attempt));
+        double jitter = delay * JITTER * ThreadLocalRandom.current().nextDouble();
+        return (long) (delay - jitter);
+    }
+
+    // Соединение восстановлено после неудачных попыток
+    void recordRecovery(long elapsedMs) {
+        recoveries.incrementAndGet();
+        lastRecoveryMs.set(elapsedMs);
+        totalRecoveryMs.addAndGet(elapsedMs);
+        long max;
+        while (elapsedMs > (max = maxRecoveryMs.get())) {
+            if (maxRecoveryMs.compareAndSet(max, elapsedMs)) {
+                break;
+            }
+        }
+    }
+
+    void recordFailure() {
+        failures.incrementAndGet();
+    }
+
+    public long getRecoveryCount() {
+        return recoveries.get();
+    }
+
+    // Сколько раз все попытки исчерпаны без результата
+    public long getFailureCount() {
+        return failures.get();
+    }
+
+    public long getLastRecoveryMs() {
+        return lastRecoveryMs.get();
+    }
+
+    public long getMaxRecoveryMs() {
+        return maxRecoveryMs.get();
+    }
+
+    public long getAverageRecoveryMs() {
+        long count = recoveries.get();
+        return count == 0 ? 0 : totalRecoveryMs.get() / count;
+    }
+}
@@ -0,0 +1,365 @@
+package com.byd.vehiclecontrol;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Пул авторизованных shell сессий AdbClient по ключу host:port.
+ * Повторные команды берут готовую сессию и не платят за TCP connect, рукопожатие и открытие shell.
+ *
+ * Перед выдачей сессия проверяется: соединение и shell открыты, а если она простаивала дольше
+ * probeAfterIdleMs - выполняется пробная команда. Сломанные сессии закрываются и заменяются новыми.
+ * Сессии, которые простаивают дольше idleTimeoutMs, закрываются фоновым потоком.
+ *
+ * Состояние интерактивного shell (текущий каталог, переменные) сохраняется между заимствованиями.
+ */
+public final class AdbSessionPool implements AutoCloseable {
+    private static final String TAG = "AdbSessionPool";
+
+    public static final int DEFAULT_MAX_SESSIONS_PER_KEY = 4;
+    public static final long DEFAULT_IDLE_TIMEOUT_MS = 60_000;
+    public static final long DEFAULT_PROBE_AFTER_IDLE_MS = 5_000;
+    public static final long DEFAULT_BORROW_TIMEOUT_MS = AdbClient.CONNECT_TIMEOUT_MS;
+
+    private static volatile AdbSessionPool sharedPool;
+
+    /**
+     * Действие с сессией из пула
+     */
+    public interface SessionTask<T> {
+        T run(AdbClient client) throws IOException;
+    }
+
+    private static final class IdleSession {
+        final AdbClient client;
+        final long idleSince;
+
+        IdleSession(AdbClient client, long idleSince) {
+            this.client = client;
+            this.idleSince = idleSince;
+        }
+    }
+
+    // Сессии одного устройства; total - включая выданные и создающиеся
+    private static final class Slot {
+        final String host;
+        final int port;
+        final ArrayDeque<IdleSession> idle = new ArrayDeque<>();
+        int total;
+
+        Slot(String host, int port) {
+            this.host = host;
+            this.port = port;
+        }
+    }
+
+    private final int maxSessionsPerKey;
+    private final long idleTimeoutMs;
+    private final long probeAfterIdleMs;
+    private final long borrowTimeoutMs;
+    private final AdbReconnectPolicy reconnectPolicy = AdbReconnectPolicy.getDefault();
+
+    private final Map<String, Slot> slots = new HashMap<>();
+    private final Map<AdbClient, Slot> borrowed = new HashMap<>();
+    private final ScheduledExecutorService evictor;
+    private boolean closed = false;
+
+    // Метрики
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong reused = new AtomicLong();
+    private final AtomicLong evicted = new AtomicLong();
+    private final AtomicLong broken = new AtomicLong();
+    private final AtomicLong reconnects = new AtomicLong();
+
+    public AdbSessionPool() {
+        this(DEFAULT_MAX_SESSIONS_PER_KEY, DEFAULT_IDLE_TIMEOUT_MS, DEFAULT_PROBE_AFTER_IDLE_MS,
+                DEFAULT_BORROW_TIMEOUT_MS);
+    }
+
+    public AdbSessionPool(int maxSessionsPerKey, long idleTimeoutMs, long probeAfterIdleMs, long borrowTimeoutMs) {
+        this.maxSessionsPerKey = maxSessionsPerKey;
+        this.idleTimeoutMs = idleTimeoutMs;
+        this.probeAfterIdleMs = probeAfterIdleMs;
+        this.borrowTimeoutMs = borrowTimeoutMs;
+
+        evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "AdbSessionPool-evictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1000, idleTimeoutMs / 2);
+        evictor.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    public static AdbSessionPool shared() {
+        AdbSessionPool pool = sharedPool;
+        if (pool == null) {
+            synchronized (AdbSessionPool.class) {
+                pool = sharedPool;
+                if (pool == null) {
+                    pool = new AdbSessionPool();
+                    sharedPool = pool;
+                }
+            }
+        }
+        return pool;
+    }
+
+    /**
+     * Берет сессию, выполняет действие и возвращает ее в пул.
+     * При IOException сессия считается сломанной и закрывается. Если при этом оборвалось само
+     * соединение (например, adbd перезапустился), действие один раз повторяется на новой сессии -
+     * поэтому через пул стоит выполнять команды, которые безопасно повторить.
+     */
+    public <T> T execute(String host, int port, SessionTask<T> task) throws IOException, InterruptedException {
+        for (int attempt = 0; ; attempt++) {
+            AdbClient client = borrow(host, port);
+            boolean ok = false;
+            try {
+                T result = task.run(client);
+                ok = true;
+                return result;
+            } catch (IOException e) {
+                if (attempt > 0 || client.isConnected()) {
+                    throw e;
+                }
+                reconnects.incrementAndGet();
+                AdbLog.w(TAG, "Session to " + key(host, port) + " lost, retrying on a new one", e);
+            } finally {
+                if (ok) {
+                    release(client);
+                } else {
+                    invalidate(client);
+                }
+            }
+        }
+    }
+
+    /**
+     * Выдает живую сессию: свободную из пула или новую, если лимит не исчерпан.
+     * Если все maxSessionsPerKey сессий заняты - ждет освобождения до borrowTimeoutMs.
+     */
+    public AdbClient borrow(String host, int port) throws IOException, InterruptedException {
+        Slot slot;
+        long deadline = System.currentTimeMillis() + borrowTimeoutMs;
+
+        while (true) {
+            IdleSession candidate = null;
+            synchronized (this) {
+                if (closed) {
+                    throw new IOException("Session pool closed");
+                }
+                slot = slots.get(key(host, port));
+                if (slot == null) {
+                    slot = new Slot(host, port);
+                    slots.put(key(host, port), slot);
+                }
+
+                if (!slot.idle.isEmpty()) {
+                    // Последняя возвращенная сессия - самая "теплая"
+                    candidate = slot.idle.pollLast();
+                } else if (slot.total < maxSessionsPerKey) {
+                    slot.total++;
+                    break;
+                } else {
+                    long left = deadline - System.currentTimeMillis();
+                    if (left <= 0) {
+                        throw new IOException("No free ADB session for " + key(host, port)
+                                + " (" + maxSessionsPerKey + " in use)");
+                    }
+                    wait(left);
+                    continue;
+                }
+            }
+
+            // Проверка выполняется вне блокировки пула
+            if (isHealthy(candidate)) {
+                reused.incrementAndGet();
+                markBorrowed(candidate.client, slot);
+                return candidate.client;
+            }
+            broken.incrementAndGet();
+            AdbLog.w(TAG, "Dropping broken session to " + key(host, port));
+            discard(candidate.client, slot);
+        }
+
+        // Слот зарезервирован - создаем новую сессию
+        try {
+            AdbClient client = AdbClient.connectShell(host, port, reconnectPolicy);
+            created.incrementAndGet();
+            markBorrowed(client, slot);
+            return client;
+        } catch (IOException | RuntimeException | InterruptedException e) {
+            synchronized (this) {
+                slot.total--;
+                notifyAll();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Возвращает исправную сессию в пул
+     */
+    public void release(AdbClient client) {
+        Slot slot;
+        boolean keep;
+        synchronized (this) {
+            slot = borrowed.remove(client);
+            if (slot == null) {
+                return;
+            }
+            keep = !closed && client.isShellOpen();
+            if (keep) {
+                slot.idle.addLast(new IdleSession(client, System.currentTimeMillis()));
+                notifyAll();
+            }
+        }
+        if (!keep) {
+            discard(client, slot);
+        }
+    }
+
+    /**
+     * Закрывает сломанную сессию; ее место в пуле освобождается для новой
+     */
+    public void invalidate(AdbClient client) {
+        Slot slot;
+        synchronized (this) {
+            slot = borrowed.remove(client);
+        }
+        if (slot != null) {
+            broken.incrementAndGet();
+            discard(client, slot);
+        }
+    }
+
+    private boolean isHealthy(IdleSession session) {
+        if (!session.client.isShellOpen()) {
+            return false;
+        }
+        if (System.currentTimeMillis() - session.idleSince < probeAfterIdleMs) {
+            return true;
+        }
+        try {
+            session.client.executeCommand("true");
+            return true;
+        } catch (IOException | RuntimeException e) {
+            AdbLog.w(TAG, "Liveness probe failed", e);
+            return false;
+        }
+    }
+
+    private synchronized void markBorrowed(AdbClient client, Slot slot) {
+        borrowed.put(client, slot);
+    }
+
+    private void discard(AdbClient client, Slot slot) {
+        closeQuietly(client);
+        synchronized (this) {
+            slot.total--;
+            notifyAll();
+        }
+    }
+
+    // Закрывает сессии, простаивающие дольше idleTimeoutMs
+    void evictIdle() {
+        List<AdbClient> expired = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            for (Slot slot : slots.values()) {
+                Iterator<IdleSession> it = slot.idle.iterator();
+                while (it.hasNext()) {
+                    IdleSession session = it.next();
+                    if (now - session.idleSince >= idleTimeoutMs || !session.client.isShellOpen()) {
+                        it.remove();
+                        slot.total--;
+                        expired.add(session.client);
+                    }
+                }
+            }
+            if (!expired.isEmpty()) {
+                notifyAll();
+            }
+        }
+
+        for (AdbClient client : expired) {
+            evicted.incrementAndGet();
+            closeQuietly(client);
+        }
+    }
+
+    public synchronized int getIdleCount() {
+        int count = 0;
+        for (Slot slot : slots.values()) {
+            count += slot.idle.size();
+        }
+        return count;
+    }
+
+    public synchronized int getBorrowedCount() {
+        return borrowed.size();
+    }
+
+    public long getCreatedCount() {
+        return created.get();
+    }
+
+    public long getReusedCount() {
+        return reused.get();
+    }
+
+    public long getEvictedCount() {
+        return evicted.get();
+    }
+
+    public long getBrokenCount() {
+        return broken.get();
+    }
+
+    // Сколько раз действие было прозрачно повторено на новой сессии после обрыва соединения
+    public long getReconnectCount() {
+        return reconnects.get();
+    }
+
+    @Override
+    public void close() {
+        List<AdbClient> toClose = new ArrayList<>();
+        synchronized (this) {
+            closed = true;
+            for (Slot slot : slots.values()) {
+                for (IdleSession session : slot.idle) {
+                    toClose.add(session.client);
+                }
+                slot.total -= slot.idle.size();
+                slot.idle.clear();
+            }
+            notifyAll();
+        }
+        evictor.shutdownNow();
+        for (AdbClient client : toClose) {
+            closeQuietly(client);
+        }
+    }
+
+    private static String key(String host, int port) {
+        return host + ":" + port;
+    }
+
+    private static void closeQuietly(AdbClient client) {
+        try {
+            client.close();
+        } catch (IOException e) {
+            AdbLog.w(TAG, "Error closing session", e);
+        }
+    }
+}
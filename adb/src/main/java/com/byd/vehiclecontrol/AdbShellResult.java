@@ -0,0 +1,42 @@
+package com.byd.vehiclecontrol;
+
+/**
+ * Результат команды shell: вывод и код завершения.
+ */
+public final class AdbShellResult {
+
+    // Код завершения неизвестен (режим без shell,v2 и без маркеров)
+    public static final int EXIT_CODE_UNKNOWN = -1;
+
+    private final String stdout;
+    private final String stderr;
+    private final int exitCode;
+
+    public AdbShellResult(String stdout, String stderr, int exitCode) {
+        this.stdout = stdout;
+        this.stderr = stderr;
+        this.exitCode = exitCode;
+    }
+
+    public String getStdout() {
+        return stdout;
+    }
+
+    // Пустая строка, если stderr не отделяется от stdout
+    public String getStderr() {
+        return stderr;
+    }
+
+    public int getExitCode() {
+        return exitCode;
+    }
+
+    public boolean isSuccess() {
+        return exitCode == 0;
+    }
+
+    @Override
+    public String toString() {
+        return "exit=" + exitCode + " stdout=" + stdout + (stderr.isEmpty() ? "" : " stderr=" + stderr);
+    }
+}
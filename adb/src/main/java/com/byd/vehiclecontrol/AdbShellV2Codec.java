@@ -0,0 +1,110 @@
+package com.byd.vehiclecontrol;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Пакеты протокола shell,v2: [id: 1 байт][длина: 4 байта LE][данные].
+ * stdout и stderr приходят раздельно, завершение команды - пакетом exit с кодом возврата.
+ */
+final class AdbShellV2Codec {
+
+    static final int ID_STDIN = 0;
+    static final int ID_STDOUT = 1;
+    static final int ID_STDERR = 2;
+    static final int ID_EXIT = 3;
+    static final int ID_CLOSE_STDIN = 4;
+    static final int ID_WINDOW_SIZE = 5;
+
+    static final int HEADER_SIZE = 5;
+
+    private AdbShellV2Codec() {
+    }
+
+    static byte[] packet(int id, byte[] data) {
+        ByteBuffer packet = ByteBuffer.allocate(HEADER_SIZE + data.length).order(ByteOrder.LITTLE_ENDIAN);
+        packet.put((byte) id).putInt(data.length).put(data);
+        return packet.array();
+    }
+
+    /**
+     * Инкрементальный разбор пакетов: данные stdout/stderr отдаются срезами входного буфера без копирования
+     */
+    static final class Parser {
+
+        interface Handler {
+            // Буфер действителен только на время вызова
+            void onStdout(ByteBuffer data) throws IOException;
+
+            void onStderr(ByteBuffer data) throws IOException;
+
+            void onExit(int exitCode) throws IOException;
+        }
+
+        private final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        private int packetId = -1;
+        private int length = 0;
+        private int remaining = 0;
+
+        void feed(ByteBuffer src, Handler handler) throws IOException {
+            while (src.hasRemaining()) {
+                if (packetId < 0) {
+                    int n = Math.min(header.remaining(), src.remaining());
+                    int limit = src.limit();
+                    src.limit(src.position() + n);
+                    header.put(src);
+                    src.limit(limit);
+                    if (header.hasRemaining()) {
+                        return;
+                    }
+
+                    header.flip();
+                    packetId = header.get() & 0xFF;
+                    length = header.getInt();
+                    remaining = length;
+                    header.clear();
+                    if (length < 0) {
+                        throw new IOException("Invalid shell packet length: " + length);
+                    }
+                    if (packetId == ID_EXIT && length == 0) {
+                        throw new IOException("Empty shell exit packet");
+                    }
+                    if (length == 0) {
+                        packetId = -1;
+                    }
+                    continue;
+                }
+
+                int n = Math.min(remaining, src.remaining());
+                int limit = src.limit();
+                int end = src.position() + n;
+                src.limit(end);
+                switch (packetId) {
+                    case ID_STDOUT:
+                        handler.onStdout(src);
+                        break;
+                    case ID_STDERR:
+                        handler.onStderr(src);
+                        break;
+                    case ID_EXIT:
+                        // Код возврата - первый байт данных
+                        if (remaining == length) {
+                            handler.onExit(src.get(src.position()) & 0xFF);
+                        }
+                        break;
+                    default:
+                        // Остальные пакеты (window size и т.п.) от устройства не ожидаются - пропускаем
+                        break;
+                }
+                src.limit(limit);
+                src.position(end);
+
+                remaining -= n;
+                if (remaining == 0) {
+                    packetId = -1;
+                }
+            }
+        }
+    }
+}
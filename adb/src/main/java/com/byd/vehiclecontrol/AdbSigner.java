@@ -0,0 +1,156 @@
+package com.byd.vehiclecontrol;
+
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.MessageDigest;
+import java.security.interfaces.RSAPrivateKey;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.util.concurrent.CountDownLatch;
+import javax.crypto.Cipher;
+
+/**
+ * Подпись AUTH токена ADB ключом RSA.
+ * Ключ разбирается, а Cipher/MessageDigest создаются один раз - в фоне при prewarm() или при первой подписи.
+ * Блок PKCS#1 (0x00 0x01 FF.. 0x00 DigestInfo) строится заранее, при подписи дописывается только SHA-1.
+ */
+public final class AdbSigner {
+    private static final String TAG = "AdbSigner";
+
+    // ASN.1 DigestInfo для SHA-1
+    private static final byte[] SHA1_DIGEST_INFO = {
+            0x30, 0x21, 0x30, 0x09, 0x06, 0x05, 0x2b, 0x0e,
+            0x03, 0x02, 0x1a, 0x05, 0x00, 0x04, 0x14
+    };
+    private static final int SHA1_SIZE = 20;
+
+    private final byte[] privateKeyData;
+    private final byte[] publicKey;
+
+    private final Object initLock = new Object();
+    private final CountDownLatch ready = new CountDownLatch(1);
+    private boolean initStarted = false;
+    private volatile Exception initFailure;
+
+    // Готовые объекты, используются под lock
+    private final Object lock = new Object();
+    private MessageDigest sha1;
+    private Cipher cipher;
+    private byte[] paddingTemplate;
+    private byte[] block;
+
+    /**
+     * @param privateKeyData закрытый ключ в PKCS#8
+     * @param publicKey открытый ключ в формате ADB ("<base64> user@host\0")
+     */
+    public AdbSigner(byte[] privateKeyData, byte[] publicKey) {
+        this.privateKeyData = privateKeyData;
+        this.publicKey = publicKey;
+    }
+
+    /**
+     * Запускает разбор ключа и пробную подпись в фоновом потоке, не блокируя вызывающего
+     */
+    public void prewarm() {
+        synchronized (initLock) {
+            if (initStarted) {
+                return;
+            }
+            initStarted = true;
+        }
+        Thread thread = new Thread(this::initialize, "AdbSigner-init");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // Ключ разобран и Cipher готов: подпись больше не ждет инициализации
+    boolean isReady() {
+        return ready.getCount() == 0 && initFailure == null;
+    }
+
+    public byte[] getPublicKey() {
+        return publicKey;
+    }
+
+    /**
+     * Подписывает токен из AUTH(TOKEN). Если инициализация еще идет в фоне - дожидается ее.
+     */
+    public byte[] sign(byte[] token) throws GeneralSecurityException {
+        awaitReady();
+
+        synchronized (lock) {
+            byte[] hash = sha1.digest(token);
+            System.arraycopy(paddingTemplate, 0, block, 0, block.length);
+            System.arraycopy(hash, 0, block, block.length - SHA1_SIZE, SHA1_SIZE);
+            return cipher.doFinal(block);
+        }
+    }
+
+    private void awaitReady() throws GeneralSecurityException {
+        boolean runHere;
+        synchronized (initLock) {
+            runHere = !initStarted;
+            initStarted = true;
+        }
+        if (runHere) {
+            initialize();
+        }
+
+        try {
+            ready.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GeneralSecurityException("Interrupted while loading ADB key", e);
+        }
+
+        if (initFailure != null) {
+            throw new GeneralSecurityException("ADB key unavailable", initFailure);
+        }
+    }
+
+    private void initialize() {
+        long start = System.nanoTime();
+        try {
+            RSAPrivateKey key = (RSAPrivateKey) KeyFactory.getInstance("RSA")
+                    .generatePrivate(new PKCS8EncodedKeySpec(privateKeyData));
+            int size = (key.getModulus().bitLength() + 7) / 8;
+
+            byte[] template = new byte[size];
+            template[0] = 0x00;
+            template[1] = 0x01;
+            int separator = size - SHA1_SIZE - SHA1_DIGEST_INFO.length - 1;
+            for (int i = 2; i < separator; i++) {
+                template[i] = (byte) 0xFF;
+            }
+            template[separator] = 0x00;
+            System.arraycopy(SHA1_DIGEST_INFO, 0, template, separator + 1, SHA1_DIGEST_INFO.length);
+
+            Cipher rsa = Cipher.getInstance("RSA/ECB/NoPadding");
+            rsa.init(Cipher.ENCRYPT_MODE, key);
+
+            synchronized (lock) {
+                sha1 = MessageDigest.getInstance("SHA-1");
+                cipher = rsa;
+                paddingTemplate = template;
+                block = new byte[size];
+            }
+        } catch (Exception e) {
+            initFailure = e;
+            AdbLog.e(TAG, "Failed to load ADB key", e);
+        } finally {
+            ready.countDown();
+        }
+
+        if (initFailure == null) {
+            // Пробная подпись: загрузка провайдера и прогрев, чтобы первое рукопожатие не платило за это
+            try {
+                synchronized (lock) {
+                    System.arraycopy(paddingTemplate, 0, block, 0, block.length);
+                    cipher.doFinal(block);
+                }
+            } catch (Exception e) {
+                AdbLog.w(TAG, "Signer warm-up failed", e);
+            }
+        }
+        AdbLog.d(TAG, "Signer ready in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+}
@@ -0,0 +1,576 @@
+package com.byd.vehiclecontrol;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FrameOutputStream;
+import net.jpountz.xxhash.XXHashFactory;
+
+/**
+ * Клиент службы sync: (push/pull/stat/list) поверх потока AdbClient.
+ * Пакеты: [id: 4 символа][длина или значение: 4 байта LE][данные].
+ *
+ * Файлы передаются кусками по 64 КиБ через FileChannel без промежуточных массивов:
+ * при отправке кусок читается из файла прямо в буфер пакета после заголовка,
+ * при приеме пишется в файл прямо из буферов, принятых AdbClient.
+ *
+ * Если устройство поддерживает sync v2 с LZ4 (sendrecv_v2_lz4), файлы передаются через SND2/RCV2
+ * со сжатием: данные сжимаются и распаковываются потоково, кусками, без буферизации файла целиком.
+ *
+ * Клиент выполняет одну операцию за раз. После ошибки adbd закрывает службу, поэтому
+ * любая ошибка закрывает и клиент - для следующей операции нужен новый openSync().
+ */
+public final class AdbSyncClient implements AutoCloseable {
+    private static final String TAG = "AdbSyncClient";
+
+    public static final int MAX_CHUNK_SIZE = 64 * 1024;
+    public static final int DEFAULT_FILE_MODE = 0644;
+
+    // adbd не принимает пути длиннее
+    private static final int MAX_PATH_LENGTH = 1024;
+
+    static final int ID_STAT = id("STAT");
+    static final int ID_LIST = id("LIST");
+    static final int ID_DENT = id("DENT");
+    static final int ID_SEND = id("SEND");
+    static final int ID_RECV = id("RECV");
+    static final int ID_DATA = id("DATA");
+    static final int ID_DONE = id("DONE");
+    static final int ID_OKAY = id("OKAY");
+    static final int ID_FAIL = id("FAIL");
+    static final int ID_QUIT = id("QUIT");
+    static final int ID_SEND_V2 = id("SND2");
+    static final int ID_RECV_V2 = id("RCV2");
+
+    // Флаги сжатия sync v2
+    static final int SYNC_FLAG_LZ4 = 2;
+
+    static final int HEADER_SIZE = 8;
+    // STAT: id, mode, size, mtime
+    private static final int STAT_SIZE = 16;
+    // DENT: id, mode, size, mtime, длина имени
+    private static final int DENT_SIZE = 20;
+
+    // Биты st_mode
+    private static final int S_IFMT = 0170000;
+    private static final int S_IFREG = 0100000;
+    private static final int S_IFDIR = 0040000;
+    private static final int S_IFLNK = 0120000;
+
+    /**
+     * Файл на устройстве (результат STAT или элемент LIST)
+     */
+    public static final class Entry {
+        private final String name;
+        private final int mode;
+        private final long size;
+        private final long mtimeSeconds;
+
+        Entry(String name, int mode, long size, long mtimeSeconds) {
+            this.name = name;
+            this.mode = mode;
+            this.size = size;
+            this.mtimeSeconds = mtimeSeconds;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getMode() {
+            return mode;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public long getLastModifiedMs() {
+            return mtimeSeconds * 1000;
+        }
+
+        // STAT отдает нулевой mode, если файла нет или к нему нет доступа
+        public boolean exists() {
+            return mode != 0;
+        }
+
+        public boolean isFile() {
+            return (mode & S_IFMT) == S_IFREG;
+        }
+
+        public boolean isDirectory() {
+            return (mode & S_IFMT) == S_IFDIR;
+        }
+
+        public boolean isSymlink() {
+            return (mode & S_IFMT) == S_IFLNK;
+        }
+
+        @Override
+        public String toString() {
+            return name + " mode=" + Integer.toOctalString(mode) + " size=" + size;
+        }
+    }
+
+    private final AdbClientStream stream;
+    private final boolean compressionAvailable;
+    private boolean compressionEnabled = true;
+    private final ByteBuffer header = ByteBuffer.allocate(DENT_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    // Заголовок DATA + кусок файла, создается при первой отправке
+    private ByteBuffer packet;
+    // Байт данных в пакетах DATA текущей передачи (сжатых, если передача со сжатием)
+    private long wireBytes;
+
+    /**
+     * @param compressionAvailable устройство поддерживает sync v2 с LZ4
+     */
+    AdbSyncClient(AdbClientStream stream, boolean compressionAvailable) {
+        this.stream = stream;
+        this.compressionAvailable = compressionAvailable;
+    }
+
+    public boolean isCompressionAvailable() {
+        return compressionAvailable;
+    }
+
+    /**
+     * Сжатие включено по умолчанию, если устройство его поддерживает.
+     * Для уже сжатых файлов (apk, zip, изображения) его стоит выключить - выигрыша не будет.
+     */
+    public void setCompressionEnabled(boolean enabled) {
+        compressionEnabled = enabled;
+    }
+
+    private boolean useCompression() {
+        return compressionAvailable && compressionEnabled;
+    }
+
+    /**
+     * Сведения о файле; если файла нет - Entry с exists() == false
+     */
+    public Entry stat(String remotePath) throws IOException {
+        checkOpen();
+        try {
+            sendRequest(ID_STAT, remotePath);
+            ByteBuffer response = readHeader(STAT_SIZE);
+            expect(response.getInt(), ID_STAT);
+            int mode = response.getInt();
+            long size = response.getInt() & 0xFFFFFFFFL;
+            long mtime = response.getInt() & 0xFFFFFFFFL;
+            return new Entry(remotePath, mode, size, mtime);
+        } catch (IOException e) {
+            stream.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Содержимое каталога (без "." и "..")
+     */
+    public List<Entry> list(String remoteDir) throws IOException {
+        checkOpen();
+        try {
+            sendRequest(ID_LIST, remoteDir);
+            List<Entry> entries = new ArrayList<>();
+            while (true) {
+                ByteBuffer response = readHeader(DENT_SIZE);
+                int id = response.getInt();
+                if (id == ID_DONE) {
+                    return entries;
+                }
+                expect(id, ID_DENT);
+                int mode = response.getInt();
+                long size = response.getInt() & 0xFFFFFFFFL;
+                long mtime = response.getInt() & 0xFFFFFFFFL;
+                String name = readString(response.getInt());
+                if (!name.equals(".") && !name.equals("..")) {
+                    entries.add(new Entry(name, mode, size, mtime));
+                }
+            }
+        } catch (IOException e) {
+            stream.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Отправляет файл на устройство; права 0755 для исполняемых файлов, иначе 0644
+     */
+    public AdbTransferStats push(File local, String remotePath) throws IOException {
+        return push(local, remotePath, local.canExecute() ? 0755 : DEFAULT_FILE_MODE);
+    }
+
+    public AdbTransferStats push(File local, String remotePath, int mode) throws IOException {
+        checkOpen();
+        boolean compress = useCompression();
+        long start = System.nanoTime();
+        long total;
+        wireBytes = 0;
+
+        try (FileInputStream input = new FileInputStream(local);
+             FileChannel channel = input.getChannel()) {
+            if (compress) {
+                total = sendCompressed(channel, remotePath, S_IFREG | (mode & 07777));
+            } else {
+                total = sendPlain(channel, remotePath, S_IFREG | (mode & 07777));
+            }
+
+            sendPacket(ID_DONE, (int) (local.lastModified() / 1000));
+            readStatus();
+        } catch (IOException e) {
+            // При ошибке adbd отвечает FAIL и закрывает поток, не дожидаясь конца данных - причина важнее "Stream closed"
+            IOException failure = e;
+            if (stream.hasPendingData()) {
+                try {
+                    readStatus();
+                } catch (IOException fail) {
+                    failure = fail;
+                }
+            }
+            stream.close();
+            throw failure;
+        }
+
+        AdbTransferStats stats = new AdbTransferStats(remotePath, true, total, wireBytes, compress,
+                System.nanoTime() - start);
+        AdbLog.d(TAG, stats.toString());
+        return stats;
+    }
+
+    /**
+     * Получает файл с устройства. При ошибке недокачанный локальный файл удаляется.
+     */
+    public AdbTransferStats pull(String remotePath, File local) throws IOException {
+        checkOpen();
+        boolean compress = useCompression();
+        long start = System.nanoTime();
+        long total;
+        boolean ok = false;
+        wireBytes = 0;
+
+        try (FileOutputStream output = new FileOutputStream(local);
+             FileChannel channel = output.getChannel()) {
+            if (compress) {
+                total = receiveCompressed(channel, remotePath);
+            } else {
+                total = receivePlain(channel, remotePath);
+            }
+            ok = true;
+        } catch (IOException e) {
+            stream.close();
+            throw e;
+        } finally {
+            if (!ok && !local.delete()) {
+                AdbLog.w(TAG, "Could not delete partial file " + local);
+            }
+        }
+
+        AdbTransferStats stats = new AdbTransferStats(remotePath, false, total, wireBytes, compress,
+                System.nanoTime() - start);
+        AdbLog.d(TAG, stats.toString());
+        return stats;
+    }
+
+    // SEND: путь с правами, затем куски файла как есть
+    private long sendPlain(FileChannel channel, String remotePath, int mode) throws IOException {
+        sendRequest(ID_SEND, remotePath + "," + mode);
+
+        ByteBuffer data = packetBuffer();
+        long total = 0;
+        while (true) {
+            data.clear();
+            data.position(HEADER_SIZE);
+            int n = channel.read(data);
+            if (n < 0) {
+                return total;
+            }
+            data.putInt(0, ID_DATA);
+            data.putInt(4, n);
+            data.flip();
+            stream.write(data);
+            total += n;
+            wireBytes += n;
+        }
+    }
+
+    // SND2: путь, затем настройка {SND2, mode, flags}; в пакетах DATA идет поток LZ4 frame
+    private long sendCompressed(FileChannel channel, String remotePath, int mode) throws IOException {
+        sendRequest(ID_SEND_V2, remotePath);
+        ByteBuffer setup = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN);
+        setup.putInt(ID_SEND_V2);
+        setup.putInt(mode);
+        setup.putInt(SYNC_FLAG_LZ4);
+        setup.flip();
+        stream.write(setup);
+
+        ByteBuffer chunk = ByteBuffer.allocate(MAX_CHUNK_SIZE);
+        long total = 0;
+        // Java реализации LZ4 и xxHash: на Android нет нативной библиотеки lz4-java
+        try (LZ4FrameOutputStream lz4 = new LZ4FrameOutputStream(new DataPacketOutputStream(),
+                LZ4FrameOutputStream.BLOCKSIZE.SIZE_64KB, -1L, LZ4Factory.safeInstance().fastCompressor(),
+                XXHashFactory.safeInstance().hash32(), LZ4FrameOutputStream.FLG.Bits.BLOCK_INDEPENDENCE)) {
+            int n;
+            while ((n = channel.read(chunk)) >= 0) {
+                lz4.write(chunk.array(), chunk.arrayOffset(), n);
+                total += n;
+                chunk.clear();
+            }
+        }
+        return total;
+    }
+
+    // RECV: пакеты DATA пишутся в файл прямо из принятых буферов
+    private long receivePlain(FileChannel channel, String remotePath) throws IOException {
+        sendRequest(ID_RECV, remotePath);
+        long total = 0;
+        while (true) {
+            int length = nextDataPacket(remotePath);
+            if (length < 0) {
+                return total;
+            }
+            stream.transferTo(channel, length, AdbClient.READ_TIMEOUT_MS);
+            total += length;
+            wireBytes += length;
+        }
+    }
+
+    // RCV2: путь, затем настройка {RCV2, flags}; пакеты DATA несут поток LZ4 frame
+    private long receiveCompressed(FileChannel channel, String remotePath) throws IOException {
+        sendRequest(ID_RECV_V2, remotePath);
+        sendPacket(ID_RECV_V2, SYNC_FLAG_LZ4);
+
+        ByteBuffer chunk = ByteBuffer.allocate(MAX_CHUNK_SIZE);
+        InputStream lz4 = new AdbLz4FrameInputStream(new DataPacketInputStream(remotePath));
+        long total = 0;
+        int n;
+        while ((n = lz4.read(chunk.array(), chunk.arrayOffset(), chunk.capacity())) >= 0) {
+            chunk.limit(n);
+            while (chunk.hasRemaining()) {
+                channel.write(chunk);
+            }
+            chunk.clear();
+            total += n;
+        }
+        return total;
+    }
+
+    /**
+     * Читает заголовок ответа на RECV/RCV2.
+     * @return длина данных пакета DATA или -1 для DONE
+     */
+    private int nextDataPacket(String remotePath) throws IOException {
+        ByteBuffer response = readHeader(HEADER_SIZE);
+        int id = response.getInt();
+        int length = response.getInt();
+        if (id == ID_DONE) {
+            return -1;
+        }
+        if (id == ID_FAIL) {
+            throw new IOException("Pull " + remotePath + " failed: " + readString(length));
+        }
+        expect(id, ID_DATA);
+        if (length < 0 || length > MAX_CHUNK_SIZE) {
+            throw new IOException("Invalid sync DATA length " + length);
+        }
+        return length;
+    }
+
+    private ByteBuffer packetBuffer() {
+        if (packet == null) {
+            packet = ByteBuffer.allocateDirect(HEADER_SIZE + MAX_CHUNK_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        return packet;
+    }
+
+    /**
+     * Содержимое пакетов DATA как один поток; конец - на DONE
+     */
+    private final class DataPacketInputStream extends InputStream {
+        private final String remotePath;
+        private final byte[] one = new byte[1];
+        private int remaining = 0;
+        private boolean done = false;
+
+        DataPacketInputStream(String remotePath) {
+            this.remotePath = remotePath;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            while (remaining == 0) {
+                if (done) {
+                    return -1;
+                }
+                int length = nextDataPacket(remotePath);
+                if (length < 0) {
+                    done = true;
+                } else {
+                    remaining = length;
+                }
+            }
+            int n = stream.read(ByteBuffer.wrap(b, off, Math.min(len, remaining)), AdbClient.READ_TIMEOUT_MS);
+            if (n < 0) {
+                throw new IOException("Sync stream closed during pull of " + remotePath);
+            }
+            remaining -= n;
+            wireBytes += n;
+            return n;
+        }
+    }
+
+    /**
+     * Режет записанные байты на пакеты DATA по MAX_CHUNK_SIZE.
+     * close() отправляет остаток, поток ADB при этом не закрывается.
+     */
+    private final class DataPacketOutputStream extends OutputStream {
+        private final ByteBuffer packet = packetBuffer();
+
+        DataPacketOutputStream() {
+            packet.clear();
+            packet.position(HEADER_SIZE);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            packet.put((byte) b);
+            if (!packet.hasRemaining()) {
+                sendData();
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                int n = Math.min(len, packet.remaining());
+                packet.put(b, off, n);
+                off += n;
+                len -= n;
+                if (!packet.hasRemaining()) {
+                    sendData();
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (packet.position() > HEADER_SIZE) {
+                sendData();
+            }
+        }
+
+        private void sendData() throws IOException {
+            int n = packet.position() - HEADER_SIZE;
+            packet.putInt(0, ID_DATA);
+            packet.putInt(4, n);
+            packet.flip();
+            stream.write(packet);
+            wireBytes += n;
+            packet.clear();
+            packet.position(HEADER_SIZE);
+        }
+    }
+
+    public boolean isClosed() {
+        return stream.isClosed();
+    }
+
+    @Override
+    public void close() {
+        if (stream.isClosed()) {
+            return;
+        }
+        try {
+            sendPacket(ID_QUIT, 0);
+        } catch (IOException e) {
+            AdbLog.w(TAG, "Error sending QUIT", e);
+        }
+        stream.close();
+    }
+
+    // ===== Пакеты =====
+
+    private void checkOpen() throws IOException {
+        if (stream.isClosed()) {
+            throw new IOException("Sync stream closed");
+        }
+    }
+
+    private void sendRequest(int id, String path) throws IOException {
+        byte[] bytes = path.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_PATH_LENGTH) {
+            throw new IOException("Remote path too long: " + path);
+        }
+        ByteBuffer request = ByteBuffer.allocate(HEADER_SIZE + bytes.length).order(ByteOrder.LITTLE_ENDIAN);
+        request.putInt(id);
+        request.putInt(bytes.length);
+        request.put(bytes);
+        request.flip();
+        stream.write(request);
+    }
+
+    private void sendPacket(int id, int value) throws IOException {
+        ByteBuffer request = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        request.putInt(id);
+        request.putInt(value);
+        request.flip();
+        stream.write(request);
+    }
+
+    // Итог SEND: OKAY или FAIL с сообщением
+    private void readStatus() throws IOException {
+        ByteBuffer response = readHeader(HEADER_SIZE);
+        int id = response.getInt();
+        int length = response.getInt();
+        if (id == ID_FAIL) {
+            throw new IOException("Push failed: " + readString(length));
+        }
+        expect(id, ID_OKAY);
+    }
+
+    private ByteBuffer readHeader(int size) throws IOException {
+        header.clear();
+        header.limit(size);
+        stream.readFully(header, AdbClient.READ_TIMEOUT_MS);
+        header.flip();
+        return header;
+    }
+
+    private String readString(int length) throws IOException {
+        if (length < 0 || length > MAX_CHUNK_SIZE) {
+            throw new IOException("Invalid sync string length " + length);
+        }
+        ByteBuffer data = ByteBuffer.allocate(length);
+        stream.readFully(data, AdbClient.READ_TIMEOUT_MS);
+        return new String(data.array(), 0, length, StandardCharsets.UTF_8);
+    }
+
+    private static void expect(int id, int expected) throws IOException {
+        if (id != expected) {
+            throw new IOException("Unexpected sync response " + name(id) + ", expected " + name(expected));
+        }
+    }
+
+    static int id(String name) {
+        return name.charAt(0) | name.charAt(1) << 8 | name.charAt(2) << 16 | name.charAt(3) << 24;
+    }
+
+    private static String name(int id) {
+        char[] chars = {(char) (id & 0xFF), (char) (id >> 8 & 0xFF), (char) (id >> 16 & 0xFF), (char) (id >>> 24)};
+        return new String(chars);
+    }
+}
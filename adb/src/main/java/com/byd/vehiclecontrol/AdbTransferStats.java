@@ -0,0 +1,75 @@
+package com.byd.vehiclecontrol;
+
+import java.util.Locale;
+
+/**
+ * Итог передачи файла через sync: - объем, время и скорость
+ */
+public final class AdbTransferStats {
+
+    private final String remotePath;
+    private final boolean push;
+    private final long bytes;
+    private final long wireBytes;
+    private final boolean compressed;
+    private final long elapsedNanos;
+
+    AdbTransferStats(String remotePath, boolean push, long bytes, long wireBytes, boolean compressed,
+                     long elapsedNanos) {
+        this.remotePath = remotePath;
+        this.push = push;
+        this.bytes = bytes;
+        this.wireBytes = wireBytes;
+        this.compressed = compressed;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public String getRemotePath() {
+        return remotePath;
+    }
+
+    // true - файл отправлен на устройство, false - получен с устройства
+    public boolean isPush() {
+        return push;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    // Сколько байт данных ушло по сети (после сжатия)
+    public long getWireBytes() {
+        return wireBytes;
+    }
+
+    // Передача шла через sync v2 со сжатием LZ4
+    public boolean isCompressed() {
+        return compressed;
+    }
+
+    public double getCompressionRatio() {
+        return wireBytes == 0 ? 1 : (double) bytes / wireBytes;
+    }
+
+    public double getElapsedMs() {
+        return elapsedNanos / 1e6;
+    }
+
+    public double getBytesPerSecond() {
+        return elapsedNanos == 0 ? 0 : bytes * 1e9 / elapsedNanos;
+    }
+
+    public double getMegabytesPerSecond() {
+        return getBytesPerSecond() / (1024 * 1024);
+    }
+
+    @Override
+    public String toString() {
+        String result = String.format(Locale.US, "%s %s: %d bytes in %.1fms (%.2f MB/s)",
+                push ? "push" : "pull", remotePath, bytes, getElapsedMs(), getMegabytesPerSecond());
+        if (compressed) {
+            result += String.format(Locale.US, ", lz4 %d bytes on wire (x%.1f)", wireBytes, getCompressionRatio());
+        }
+        return result;
+    }
+}
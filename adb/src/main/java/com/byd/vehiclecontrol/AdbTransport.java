@@ -0,0 +1,238 @@
+package com.byd.vehiclecontrol;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+
+/**
+ * Неблокирующий транспорт одного ADB соединения поверх SocketChannel.
+ * Заголовок и данные собираются инкрементально: сообщение может прийти любыми кусками.
+ * В установившемся режиме ни чтение, ни запись не выделяют память на сообщение.
+ */
+class AdbTransport {
+
+    interface Listener {
+        /**
+         * Вызывается в потоке цикла; message действителен только на время вызова
+         */
+        void onMessage(AdbMessage message) throws IOException;
+        void onClosed(IOException cause);
+    }
+
+    private final SocketChannel channel;
+    private final AdbEventLoop loop;
+    private final Listener listener;
+    private final AdbMetrics metrics;
+    private final AdbBufferPool pool = AdbBufferPool.shared();
+
+    // Состояние разбора (меняется только в потоке цикла)
+    private final AdbMessageCodec.Decoder decoder;
+    private final AdbMessageCodec.Decoder.Handler handler;
+
+    // Запись: заголовок и данные уходят одним gathering write
+    private final ByteBuffer writeHeader =
+            ByteBuffer.allocateDirect(AdbMessageCodec.HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    private final ByteBuffer[] gather = new ByteBuffer[2];
+    // Данные из одного int (подтверждение delayed_ack), заполняются под writeLock
+    private final ByteBuffer intPayload =
+            ByteBuffer.allocateDirect(4).order(ByteOrder.LITTLE_ENDIAN);
+
+    // Очередь записи: то, что не удалось сразу отдать сокету (буферы из пула)
+    private final ArrayDeque<ByteBuffer> writeQueue = new ArrayDeque<>();
+    private final Object writeLock = new Object();
+    private SelectionKey key;
+    private volatile boolean closed = false;
+    private volatile boolean sendChecksums = true;
+
+    private AdbTransport(SocketChannel channel, AdbEventLoop loop, Listener listener, AdbMetrics metrics) {
+        this.channel = channel;
+        this.loop = loop;
+        this.listener = listener;
+        this.metrics = metrics;
+        this.decoder = new AdbMessageCodec.Decoder(pool, metrics);
+        this.handler = message -> {
+            metrics.recordIn(message.command, AdbMessageCodec.HEADER_SIZE + message.dataLength);
+            listener.onMessage(message);
+        };
+    }
+
+    /**
+     * Подключается (блокирующе, с таймаутом) через общую проверку доступности, затем переводит канал
+     * в неблокирующий режим и отдает его циклу событий.
+     */
+    static AdbTransport open(String host, int port, int connectTimeoutMs, AdbEventLoop loop, Listener listener,
+                             AdbMetrics metrics) throws IOException {
+        // Это же соединение отмечает host:port доступным - отдельная проверка перед ним не нужна
+        SocketChannel channel = AdbEndpointProbe.shared().connectChannel(host, port, connectTimeoutMs);
+        try {
+            channel.socket().setTcpNoDelay(true);
+            channel.configureBlocking(false);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+
+        AdbTransport transport = new AdbTransport(channel, loop, listener, metrics);
+        loop.register(transport);
+        return transport;
+    }
+
+    SocketChannel channel() {
+        return channel;
+    }
+
+    void onRegistered(SelectionKey key) {
+        synchronized (writeLock) {
+            this.key = key;
+            if (!writeQueue.isEmpty()) {
+                key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+            }
+        }
+    }
+
+    boolean isOpen() {
+        return !closed && channel.isOpen();
+    }
+
+    /**
+     * Включает/выключает контрольные суммы данных в обе стороны (по итогам CNXN)
+     */
+    void setChecksumEnabled(boolean enabled) {
+        sendChecksums = enabled;
+        decoder.setVerifyChecksum(enabled);
+    }
+
+    // ===== Чтение (поток цикла) =====
+
+    void onReadable(ByteBuffer readBuffer) throws IOException {
+        readBuffer.clear();
+        int read = channel.read(readBuffer);
+        if (read < 0) {
+            throw new IOException("Connection closed by peer");
+        }
+        readBuffer.flip();
+        decoder.decode(readBuffer, handler);
+    }
+
+    // ===== Запись (любой поток) =====
+
+    /**
+     * Отправляет сообщение. payload (может быть null) вычитывается до конца,
+     * после возврата вызывающий может сразу переиспользовать свой буфер.
+     */
+    void send(int command, int arg0, int arg1, ByteBuffer payload) throws IOException {
+        if (closed) {
+            throw new IOException("Transport closed");
+        }
+
+        int length = payload != null ? payload.remaining() : 0;
+        synchronized (writeLock) {
+            if (sendChecksums && length > 0) {
+                long start = System.nanoTime();
+                AdbMessageCodec.encodeHeader(writeHeader, command, arg0, arg1, payload, true);
+                metrics.recordChecksum(length, System.nanoTime() - start);
+            } else {
+                AdbMessageCodec.encodeHeader(writeHeader, command, arg0, arg1, payload, false);
+            }
+            metrics.recordOut(command, AdbMessageCodec.HEADER_SIZE + length);
+
+            // Пока очередь пуста, пишем прямо в сокет без участия цикла
+            if (writeQueue.isEmpty()) {
+                if (payload != null && payload.hasRemaining()) {
+                    gather[0] = writeHeader;
+                    gather[1] = payload;
+                    channel.write(gather);
+                    gather[1] = null;
+                } else {
+                    channel.write(writeHeader);
+                }
+                if (!writeHeader.hasRemaining() && (payload == null || !payload.hasRemaining())) {
+                    return;
+                }
+            }
+
+            // Сокет заполнен: копируем остаток в буфер из пула и дописываем по OP_WRITE
+            int left = writeHeader.remaining() + (payload != null ? payload.remaining() : 0);
+            ByteBuffer pending = pool.acquire(left);
+            pending.put(writeHeader);
+            if (payload != null) {
+                pending.put(payload);
+            }
+            pending.flip();
+            writeQueue.add(pending);
+            requestWrite();
+        }
+    }
+
+    /**
+     * Отправляет сообщение с одним int (little-endian) в данных без выделения буфера
+     */
+    void sendInt(int command, int arg0, int arg1, int value) throws IOException {
+        synchronized (writeLock) {
+            intPayload.clear();
+            intPayload.putInt(0, value);
+            send(command, arg0, arg1, intPayload);
+        }
+    }
+
+    private void requestWrite() {
+        final SelectionKey currentKey = key;
+        if (currentKey == null) {
+            return; // выставится в onRegistered
+        }
+        if (loop.inEventLoop()) {
+            currentKey.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        } else {
+            loop.execute(() -> {
+                if (currentKey.isValid()) {
+                    currentKey.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                }
+            });
+        }
+    }
+
+    void onWritable() throws IOException {
+        synchronized (writeLock) {
+            ByteBuffer buffer;
+            while ((buffer = writeQueue.peek()) != null) {
+                channel.write(buffer);
+                if (buffer.hasRemaining()) {
+                    return; // сокет снова полон, ждем следующего OP_WRITE
+                }
+                pool.release(writeQueue.poll());
+            }
+            key.interestOps(SelectionKey.OP_READ);
+        }
+    }
+
+    // ===== Закрытие =====
+
+    void close() {
+        closeWithError(null);
+    }
+
+    void closeWithError(IOException cause) {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // Игнорируем ошибки при закрытии
+        }
+        synchronized (writeLock) {
+            ByteBuffer buffer;
+            while ((buffer = writeQueue.poll()) != null) {
+                pool.release(buffer);
+            }
+        }
+        listener.onClosed(cause);
+    }
+}
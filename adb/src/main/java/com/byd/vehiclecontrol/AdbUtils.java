@@ -1,7 +1,14 @@
 package com.byd.vehiclecontrol;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
@@ -38,50 +45,103 @@ public class AdbUtils {
     }
 
     /**
-     * Асинхронное выполнение команды с таймаутом
+     * Асинхронное выполнение команды с таймаутом в пуле AdbExecutor.
+     * По таймауту команда прерывается (shell закрывается с CLSE), поток пула освобождается.
      */
     public static CompletableFuture<String> executeCommandAsync(String command) {
         return executeCommandAsync(DEFAULT_HOST, DEFAULT_PORT, command, DEFAULT_TIMEOUT_MS);
     }
 
     public static CompletableFuture<String> executeCommandAsync(String host, int port, String command, long timeoutMs) {
-        return CompletableFuture.supplyAsync(() -> {
-            try (AdbClient client = AdbClient.connectShell(host, port)) {
-                return client.executeCommand(command);
-            } catch (Exception e) {
-                throw new RuntimeException(e);
-            }
-        }).orTimeout(timeoutMs, TimeUnit.MILLISECONDS);
+        return AdbExecutor.shared().submit(cancellation ->
+                AdbSessionPool.shared().execute(host, port, client -> {
+                    cancellation.onCancel(client::abortShell);
+                    return client.executeCommand(command);
+                }), timeoutMs);
     }
 
     /**
-     * Выполнение одной команды (создает соединение, выполняет команду, закрывает)
+     * Выполнение одной команды на сессии из общего пула (рукопожатие только при первом обращении)
      */
     public static String executeCommandOnce(String command) throws IOException, InterruptedException {
         return executeCommandOnce(DEFAULT_HOST, DEFAULT_PORT, command);
     }
 
     public static String executeCommandOnce(String host, int port, String command) throws IOException, InterruptedException {
-        try (AdbClient client = AdbClient.connectShell(host, port)) {
-            return client.executeCommand(command);
-        }
+        return AdbSessionPool.shared().execute(host, port, client -> client.executeCommand(command));
     }
 
     /**
-     * Выполнение нескольких команд в одном сеансе
+     * Выполнение нескольких команд в одном сеансе.
+     * Команды отправляются конвейером: все сразу, ответы разбираются по маркерам.
+     * Как и в интерактивном shell, результат команды - stdout вместе с stderr.
+     * Если ответы не пришли за DEFAULT_TIMEOUT_MS, сессия закрывается, а не возвращается в пул.
      */
     public static String[] executeCommands(String... commands) throws IOException, InterruptedException {
         return executeCommands(DEFAULT_HOST, DEFAULT_PORT, commands);
     }
 
     public static String[] executeCommands(String host, int port, String... commands) throws IOException, InterruptedException {
-        try (AdbClient client = AdbClient.connectShell(host, port)) {
+        List<String> merged = new ArrayList<>(commands.length);
+        for (String command : commands) {
+            merged.add("{ " + command + "\n} 2>&1");
+        }
+
+        // Ответы ждем, не отдавая сессию: IOException из задачи закрывает ее в пуле
+        return AdbSessionPool.shared().execute(host, port, client -> {
+            List<CompletableFuture<AdbShellResult>> futures = client.executePipelined(merged);
+
+            long deadline = System.currentTimeMillis() + DEFAULT_TIMEOUT_MS;
             String[] results = new String[commands.length];
             for (int i = 0; i < commands.length; i++) {
-                results[i] = client.executeCommand(commands[i]);
+                long left = Math.max(0, deadline - System.currentTimeMillis());
+                try {
+                    results[i] = futures.get(i).get(left, TimeUnit.MILLISECONDS).getStdout();
+                } catch (ExecutionException e) {
+                    throw e.getCause() instanceof IOException
+                            ? (IOException) e.getCause()
+                            : new IOException(e.getCause());
+                } catch (TimeoutException e) {
+                    throw new SocketTimeoutException("Timeout executing " + commands[i]);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted executing " + commands[i]);
+                }
             }
             return results;
-        }
+        });
+    }
+
+    /**
+     * Получение файла с устройства через sync: на сессии из общего пула
+     */
+    public static AdbTransferStats pullFile(String remotePath, File local) throws IOException, InterruptedException {
+        return pullFile(DEFAULT_HOST, DEFAULT_PORT, remotePath, local);
+    }
+
+    public static AdbTransferStats pullFile(String host, int port, String remotePath, File local)
+            throws IOException, InterruptedException {
+        return AdbSessionPool.shared().execute(host, port, client -> {
+            try (AdbSyncClient sync = client.openSync()) {
+                return sync.pull(remotePath, local);
+            }
+        });
+    }
+
+    /**
+     * Отправка файла на устройство через sync: на сессии из общего пула
+     */
+    public static AdbTransferStats pushFile(File local, String remotePath) throws IOException, InterruptedException {
+        return pushFile(DEFAULT_HOST, DEFAULT_PORT, local, remotePath);
+    }
+
+    public static AdbTransferStats pushFile(String host, int port, File local, String remotePath)
+            throws IOException, InterruptedException {
+        return AdbSessionPool.shared().execute(host, port, client -> {
+            try (AdbSyncClient sync = client.openSync()) {
+                return sync.push(local, remotePath);
+            }
+        });
     }
 
     /**
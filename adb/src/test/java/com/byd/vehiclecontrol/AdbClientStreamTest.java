@@ -0,0 +1,158 @@
+package com.byd.vehiclecontrol;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * AdbClientStream: transferTo точно по длине поверх границ буферов и при закрытии во время записи,
+ * побайтовое чтение через asInputStream().
+ */
+public class AdbClientStreamTest {
+
+    private static final int OUTPUT_SIZE = 100_000;
+
+    private FakeAdbServer server;
+    private AdbClient client;
+    private String output;
+
+    @Before
+    public void setUp() throws IOException {
+        StringBuilder text = new StringBuilder(OUTPUT_SIZE);
+        for (int i = 0; text.length() < OUTPUT_SIZE; i++) {
+            text.append((char) ('a' + i % 26));
+        }
+        output = text.toString();
+
+        // Вывод приходит кусками по 4 КиБ: transferTo проходит через много буферов
+        server = new FakeAdbServer().setMaxData(4096).setResponder(command -> output);
+        client = AdbClient.connect(server.getHost(), server.getPort(), AdbEventLoop.getDefault(),
+                FakeAdbServer.getSigner());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        client.close();
+        server.close();
+    }
+
+    @Test
+    public void transferTo_movesExactLengthAndKeepsRest() throws IOException {
+        try (AdbClientStream stream = client.openStream("exec:dump")) {
+            ByteArrayOutputStream head = new ByteArrayOutputStream();
+            // Граница посреди буфера: остаток должен вернуться в очередь
+            int length = 50_001;
+            stream.transferTo(Channels.newChannel(head), length, AdbClient.READ_TIMEOUT_MS);
+            assertEquals(output.substring(0, length), new String(head.toByteArray(), StandardCharsets.UTF_8));
+
+            ByteArrayOutputStream rest = new ByteArrayOutputStream();
+            byte[] chunk = new byte[1000];
+            int n;
+            while ((n = stream.read(chunk, 0, chunk.length, AdbClient.READ_TIMEOUT_MS)) >= 0) {
+                rest.write(chunk, 0, n);
+            }
+            assertEquals(output.substring(length), new String(rest.toByteArray(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void transferTo_failsCleanlyWhenClosedDuringWrite() throws Exception {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        // При первой записи ждет, пока тест закроет поток
+        WritableByteChannel slow = new WritableByteChannel() {
+            @Override
+            public int write(ByteBuffer src) throws IOException {
+                writing.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+                int n = src.remaining();
+                src.position(src.limit());
+                return n;
+            }
+
+            @Override
+            public boolean isOpen() {
+                return true;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+
+        AdbClientStream stream = client.openStream("exec:dump");
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread transfer = new Thread(() -> {
+            try {
+                // Меньше одного буфера: остаток после закрытия должен уйти в пул ровно один раз
+                stream.transferTo(slow, 100, AdbClient.READ_TIMEOUT_MS);
+            } catch (Throwable e) {
+                failure.set(e);
+            }
+        });
+        transfer.start();
+
+        assertTrue(writing.await(5, TimeUnit.SECONDS));
+        stream.close();
+        release.countDown();
+        transfer.join(5000);
+
+        assertFalse(transfer.isAlive());
+        assertTrue(String.valueOf(failure.get()), failure.get() instanceof IOException);
+        assertNoDuplicateBuffers();
+
+        // Соединение не пострадало
+        assertEquals(output, client.exec("dump"));
+    }
+
+    @Test
+    public void asInputStream_readsByteByByte() throws IOException {
+        try (AdbClientStream stream = client.openStream("exec:dump");
+             InputStream input = stream.asInputStream()) {
+            ByteArrayOutputStream read = new ByteArrayOutputStream();
+            int b;
+            while ((b = input.read()) >= 0) {
+                read.write(b);
+            }
+            assertEquals(output, new String(read.toByteArray(), StandardCharsets.UTF_8));
+        }
+    }
+
+    // Буфер, возвращенный в пул дважды, выдается двум владельцам сразу
+    private static void assertNoDuplicateBuffers() {
+        AdbBufferPool pool = AdbBufferPool.shared();
+        List<ByteBuffer> taken = new ArrayList<>();
+        Set<ByteBuffer> unique = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (int i = 0; i < 256; i++) {
+            ByteBuffer buffer = pool.acquire(AdbBufferPool.SMALL_SIZE);
+            taken.add(buffer);
+            unique.add(buffer);
+        }
+        for (ByteBuffer buffer : taken) {
+            pool.release(buffer);
+        }
+        assertEquals(taken.size(), unique.size());
+    }
+}
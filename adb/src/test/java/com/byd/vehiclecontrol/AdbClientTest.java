@@ -0,0 +1,268 @@
+package com.byd.vehiclecontrol;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPairGenerator;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * AdbClient против FakeAdbServer: рукопожатие, согласование протокола и службы shell без устройства.
+ */
+public class AdbClientTest {
+
+    private FakeAdbServer server;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new FakeAdbServer();
+    }
+
+    @After
+    public void tearDown() {
+        server.close();
+    }
+
+    @Test
+    public void connect_negotiatesVersionAndMaxData() throws IOException {
+        server.setVersion(0x01000001).setMaxData(4096);
+
+        try (AdbClient client = connect()) {
+            assertEquals(0x01000001, client.getProtocolVersion());
+            assertEquals(4096, client.getMaxData());
+            assertTrue(client.hasFeature(AdbClient.FEATURE_SHELL_V2));
+            assertEquals(0x01000001, server.getHostVersion());
+            assertTrue(server.getHostBanner().startsWith("host::"));
+        }
+    }
+
+    @Test
+    public void connect_authenticatesWithSignature() throws IOException {
+        try (AdbClient client = connect()) {
+            assertTrue(client.isConnected());
+            assertEquals(FakeAdbServer.AUTH_SIGNATURE, server.getLastAuthType());
+            assertTrue(server.isLastSignatureValid());
+        }
+    }
+
+    @Test
+    public void connect_sendsPublicKeyWhenSignatureRejected() throws IOException {
+        server.setRejectSignature(true);
+
+        try (AdbClient client = connect()) {
+            assertTrue(client.isConnected());
+            assertTrue(server.isLastSignatureValid());
+            assertEquals(FakeAdbServer.AUTH_RSAPUBLICKEY, server.getLastAuthType());
+        }
+    }
+
+    @Test
+    public void connect_sendsPublicKeyForUnknownKey() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        AdbSigner unknown = new AdbSigner(generator.generateKeyPair().getPrivate().getEncoded(),
+                "unknown@test\0".getBytes(StandardCharsets.UTF_8));
+
+        try (AdbClient client = AdbClient.connect(server.getHost(), server.getPort(),
+                AdbEventLoop.getDefault(), unknown)) {
+            assertTrue(client.isConnected());
+            assertFalse(server.isLastSignatureValid());
+            assertEquals(FakeAdbServer.AUTH_RSAPUBLICKEY, server.getLastAuthType());
+        }
+    }
+
+    @Test
+    public void exec_reassemblesSplitPacketsWithChecksums() throws IOException {
+        StringBuilder dump = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            dump.append("line ").append(i).append(" значение\n");
+        }
+        server.setVersion(0x01000000).setMaxData(1024).setSplitSize(7).setResponder(command -> dump.toString());
+
+        try (AdbClient client = connect()) {
+            assertEquals(dump.toString(), client.exec("dumpsys"));
+            assertTrue(server.getMaxWritePayload() <= 1024);
+        }
+    }
+
+    @Test
+    public void executeCommand_runsInInteractiveShell() throws IOException, InterruptedException {
+        server.setResponder(command -> command.equals("getprop ro.product.model") ? "BYD\n" : "\n");
+
+        try (AdbClient client = AdbClient.connectShell(server.getHost(), server.getPort())) {
+            String output = client.executeCommand("getprop ro.product.model");
+            assertTrue(output, output.contains("BYD"));
+        }
+    }
+
+    @Test
+    public void executeShell_returnsExitCodeOverShellV2() throws IOException {
+        server.setResponder(command -> "ok:" + command);
+
+        try (AdbClient client = connect()) {
+            AdbShellResult result = client.executeShell("id");
+            assertEquals("ok:id", result.getStdout());
+            assertEquals(0, result.getExitCode());
+        }
+    }
+
+    @Test
+    public void pipelinedShell_failsHungCommandAndClosesShell() throws Exception {
+        try (AdbClient client = connect()) {
+            // Интерактивный shell сервера не печатает маркеры: команда не завершится никогда
+            AdbPipelinedShell shell = new AdbPipelinedShell(client.openStream("shell:"), 200);
+            CompletableFuture<AdbShellResult> hung = shell.submit("sleep 1000");
+            CompletableFuture<AdbShellResult> queued = shell.submit("id");
+
+            try {
+                hung.get(5, TimeUnit.SECONDS);
+                fail("command must time out");
+            } catch (ExecutionException e) {
+                assertTrue(String.valueOf(e.getCause()), e.getCause() instanceof SocketTimeoutException);
+            }
+            try {
+                queued.get(5, TimeUnit.SECONDS);
+                fail("shell must be closed");
+            } catch (ExecutionException e) {
+                assertTrue(String.valueOf(e.getCause()), e.getCause() instanceof IOException);
+            }
+            assertTrue(shell.isClosed());
+            // Таймаут засчитан один раз - за команду, которую он завершил
+            assertEquals(1, client.getMetrics().snapshot().getTimeoutCount());
+        }
+    }
+
+    @Test
+    public void pipelinedShell_idleWaitIsNotCountedAsTimeout() throws Exception {
+        try (AdbClient client = connect()) {
+            // Короткий срок: за время простоя поток чтения просыпается много раз
+            AdbPipelinedShell shell = new AdbPipelinedShell(client.openStream("shell:"), 50);
+            Thread.sleep(500);
+
+            assertFalse(shell.isClosed());
+            assertEquals(0, client.getMetrics().snapshot().getTimeoutCount());
+            shell.close();
+        }
+    }
+
+    @Test
+    public void delayedAck_acknowledgesInBatches() throws IOException {
+        String output = repeat('x', 4 * 1024 * 1024);
+        server.setMaxData(64 * 1024).setResponder(command -> output);
+
+        int classicOkays = okaysForExec(server);
+
+        server.setFeatures("shell_v2,delayed_ack");
+        int batchedOkays = okaysForExec(server);
+
+        // 4 МиБ кусками по 64 КиБ: OKAY на каждый WRTE против одного на половину окна
+        assertTrue("classic=" + classicOkays, classicOkays >= 32);
+        assertTrue("batched=" + batchedOkays, batchedOkays < 16);
+
+        // OKAY с окном читался из буфера пула: следующие владельцы получают буферы в исходном порядке байт
+        AdbBufferPool pool = AdbBufferPool.shared();
+        List<ByteBuffer> taken = new ArrayList<>();
+        for (int i = 0; i < 64; i++) {
+            ByteBuffer buffer = pool.acquire(AdbBufferPool.SMALL_SIZE);
+            taken.add(buffer);
+            assertEquals(ByteOrder.BIG_ENDIAN, buffer.order());
+        }
+        for (ByteBuffer buffer : taken) {
+            pool.release(buffer);
+        }
+    }
+
+    @Test
+    public void connect_loadsKeyWhileWaitingForCnxn() throws Exception {
+        // Сервер задерживает и прием CNXN, и ответ: AUTH приходит не раньше чем через 600 мс,
+        // а ключ должен быть готов раньше
+        server.setLatencyMs(300);
+        AdbSigner signer = FakeAdbServer.getSigner();
+        assertFalse(signer.isReady());
+
+        CompletableFuture<AdbClient> connecting = CompletableFuture.supplyAsync(() -> {
+            try {
+                return AdbClient.connect(server.getHost(), server.getPort(), AdbEventLoop.getDefault(), signer);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        long deadline = System.currentTimeMillis() + 300;
+        while (!signer.isReady() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertTrue("key must be loaded before AUTH arrives", signer.isReady());
+
+        try (AdbClient client = connecting.get(5, TimeUnit.SECONDS)) {
+            AdbHandshakeTiming timing = client.getHandshakeTiming();
+            // Фаза AUTH - только подпись токена, без разбора ключа
+            assertTrue(timing.toString(), timing.getAuthSignMs() > 0);
+            assertTrue(timing.toString(), timing.getAuthSignMs() < timing.getCnxnMs() / 4);
+        }
+    }
+
+    @Test
+    public void handshakeTiming_includesServerLatency() throws IOException {
+        server.setLatencyMs(20);
+
+        try (AdbClient client = connect()) {
+            assertTrue(client.getHandshakeTiming().getCnxnMs() >= 20);
+        }
+    }
+
+    @Test
+    public void metrics_countMessagesChecksumsAndLatency() throws IOException {
+        server.setVersion(0x01000000).setResponder(command -> "ok\n");
+
+        try (AdbClient client = connect()) {
+            for (int i = 0; i < 10; i++) {
+                client.exec("echo ok");
+            }
+
+            AdbMetrics.Snapshot snapshot = client.getMetrics().snapshot();
+            int wrte = 0x45545257;
+            assertEquals(10, snapshot.getMessagesOut(0x4e45504f));
+            assertTrue(snapshot.getMessagesIn(wrte) >= 10);
+            assertTrue(snapshot.getBytesIn(wrte) >= 10 * (24 + 3));
+            assertTrue(snapshot.getChecksumBytes() > 0);
+            assertEquals(10, snapshot.getLatency(AdbMetrics.OP_EXEC).getCount());
+            assertEquals(10, snapshot.getLatency(AdbMetrics.OP_OPEN).getCount());
+            assertEquals(1, snapshot.getLatency(AdbMetrics.OP_HANDSHAKE).getCount());
+            assertNotNull(snapshot.getHandshakeTiming());
+            assertTrue(AdbMetrics.global().snapshot().getTotalMessagesIn() >= snapshot.getTotalMessagesIn());
+        }
+    }
+
+    private AdbClient connect() throws IOException {
+        return AdbClient.connect(server.getHost(), server.getPort(), AdbEventLoop.getDefault(),
+                FakeAdbServer.getSigner());
+    }
+
+    private int okaysForExec(FakeAdbServer server) throws IOException {
+        try (AdbClient client = connect()) {
+            int before = server.getOkaysReceived();
+            assertEquals(4 * 1024 * 1024, client.exec("logcat -d").length());
+            return server.getOkaysReceived() - before;
+        }
+    }
+
+    private static String repeat(char ch, int count) {
+        StringBuilder builder = new StringBuilder(count);
+        for (int i = 0; i < count; i++) {
+            builder.append(ch);
+        }
+        return builder.toString();
+    }
+}
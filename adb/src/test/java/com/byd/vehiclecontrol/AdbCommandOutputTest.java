@@ -0,0 +1,125 @@
+package com.byd.vehiclecontrol;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+/**
+ * AdbCommandOutput: малый вывод остается в памяти, большой уходит во временный файл,
+ * который удаляется при close().
+ */
+public class AdbCommandOutputTest {
+
+    private File spillDir;
+
+    @Before
+    public void setUp() throws IOException {
+        spillDir = Files.createTempDirectory("adb-spill").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        File[] left = spillDir.listFiles();
+        if (left != null) {
+            for (File file : left) {
+                file.delete();
+            }
+        }
+        spillDir.delete();
+    }
+
+    @Test
+    public void append_spillsAtThresholdKeepingEarlierData() throws IOException {
+        try (AdbCommandOutput output = new AdbCommandOutput(10, spillDir)) {
+            output.append(ByteBuffer.wrap("hello ".getBytes(StandardCharsets.UTF_8)));
+            assertFalse(output.isSpilled());
+
+            // Direct буфер, как из пула транспорта
+            byte[] tail = "world!".getBytes(StandardCharsets.UTF_8);
+            ByteBuffer direct = ByteBuffer.allocateDirect(tail.length);
+            direct.put(tail).flip();
+            output.append(direct);
+            assertFalse(direct.hasRemaining());
+            assertTrue(output.isSpilled());
+            output.finish();
+
+            assertEquals(12, output.size());
+            assertEquals(12, output.getFile().length());
+            assertEquals("hello world!", output.asString());
+        }
+    }
+
+    @Test
+    public void exec_keepsSmallOutputInMemory() throws IOException {
+        String text = repeatLines(100);
+        try (FakeAdbServer server = new FakeAdbServer().setResponder(command -> text);
+             AdbClient client = connect(server);
+             AdbCommandOutput output = client.exec("logcat -d", spillDir)) {
+            assertFalse(output.isSpilled());
+            assertNull(output.getFile());
+            assertEquals(text, output.asString());
+            assertEquals(0, spillDir.list().length);
+        }
+    }
+
+    @Test
+    public void exec_spillsLargeOutputToFileAndDeletesItOnClose() throws IOException {
+        // Многобайтовые символы пересекают границы кусков при потоковом декодировании
+        String text = repeatLines(20_000);
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        File spilled;
+
+        try (FakeAdbServer server = new FakeAdbServer().setMaxData(4096).setResponder(command -> text);
+             AdbClient client = connect(server)) {
+            AdbCommandOutput output = client.exec("logcat -d", 64 * 1024, spillDir);
+            try {
+                assertTrue(output.isSpilled());
+                spilled = output.getFile();
+                assertEquals(spillDir, spilled.getParentFile());
+                assertEquals(bytes.length, output.size());
+                assertEquals(bytes.length, spilled.length());
+
+                try (InputStream input = output.openInputStream()) {
+                    assertArrayEquals(bytes, readAll(input));
+                }
+                assertEquals(text, output.asString());
+            } finally {
+                output.close();
+            }
+        }
+        assertFalse(spilled.exists());
+    }
+
+    private static AdbClient connect(FakeAdbServer server) throws IOException {
+        return AdbClient.connect(server.getHost(), server.getPort(), AdbEventLoop.getDefault(),
+                FakeAdbServer.getSigner());
+    }
+
+    private static String repeatLines(int count) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            text.append("строка ").append(i).append(" вывода команды\n");
+        }
+        return text.toString();
+    }
+
+    private static byte[] readAll(InputStream input) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] chunk = new byte[8192];
+        int n;
+        while ((n = input.read(chunk)) >= 0) {
+            out.write(chunk, 0, n);
+        }
+        return out.toByteArray();
+    }
+}
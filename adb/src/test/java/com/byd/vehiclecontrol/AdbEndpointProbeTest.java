@@ -0,0 +1,92 @@
+package com.byd.vehiclecontrol;
+
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.channels.SocketChannel;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class AdbEndpointProbeTest {
+
+    private static final String HOST = "127.0.0.1";
+
+    @Test
+    public void connect_handsOverConnectedSocketAndMarksReachable() throws Exception {
+        AdbEndpointProbe probe = new AdbEndpointProbe(60_000, 1000);
+        try (ServerSocket server = new ServerSocket(0, 1, InetAddress.getByName(HOST))) {
+            assertEquals(AdbEndpointProbe.UNKNOWN, probe.getCachedState(HOST, server.getLocalPort()));
+
+            try (Socket socket = probe.connect(HOST, server.getLocalPort());
+                 Socket accepted = server.accept()) {
+                // Проверочное соединение и есть рабочее: данные идут по нему
+                socket.getOutputStream().write(42);
+                assertEquals(42, accepted.getInputStream().read());
+            }
+            assertEquals(AdbEndpointProbe.REACHABLE, probe.getCachedState(HOST, server.getLocalPort()));
+        }
+    }
+
+    @Test
+    public void connectChannel_marksReachableAndUnreachable() throws Exception {
+        AdbEndpointProbe probe = new AdbEndpointProbe(60_000, 1000);
+        int port;
+        try (ServerSocket server = new ServerSocket(0, 1, InetAddress.getByName(HOST))) {
+            port = server.getLocalPort();
+            try (SocketChannel channel = probe.connectChannel(HOST, port, 1000)) {
+                assertTrue(channel.isConnected());
+            }
+            assertEquals(AdbEndpointProbe.REACHABLE, probe.getCachedState(HOST, port));
+        }
+        try {
+            probe.connectChannel(HOST, port, 1000).close();
+            fail("port is closed");
+        } catch (java.io.IOException expected) {
+            assertEquals(AdbEndpointProbe.UNREACHABLE, probe.getCachedState(HOST, port));
+        }
+    }
+
+    @Test
+    public void isReachable_answersFromCacheWithinTtl() throws Exception {
+        AdbEndpointProbe probe = new AdbEndpointProbe(60_000, 1000);
+        int port;
+        try (ServerSocket server = new ServerSocket(0, 1, InetAddress.getByName(HOST))) {
+            port = server.getLocalPort();
+            assertTrue(probe.isReachable(HOST, port));
+        }
+        // Порт закрыт, но результат еще свежий
+        assertTrue(probe.isReachable(HOST, port));
+    }
+
+    @Test
+    public void isReachable_rechecksAfterTtl() throws Exception {
+        AdbEndpointProbe probe = new AdbEndpointProbe(0, 1000);
+        int port;
+        try (ServerSocket server = new ServerSocket(0, 1, InetAddress.getByName(HOST))) {
+            port = server.getLocalPort();
+            assertTrue(probe.isReachable(HOST, port));
+        }
+        assertFalse(probe.isReachable(HOST, port));
+        assertNotNull(probe.getLastError(HOST, port));
+    }
+
+    @Test
+    public void refresh_updatesCacheInBackground() throws Exception {
+        AdbEndpointProbe probe = new AdbEndpointProbe(60_000, 1000);
+        try (ServerSocket server = new ServerSocket(0, 1, InetAddress.getByName(HOST))) {
+            int port = server.getLocalPort();
+            probe.startRefresh(HOST, port, 50);
+            try {
+                long deadline = System.currentTimeMillis() + 5000;
+                while (probe.getCachedState(HOST, port) == AdbEndpointProbe.UNKNOWN
+                        && System.currentTimeMillis() < deadline) {
+                    Thread.sleep(10);
+                }
+                assertEquals(AdbEndpointProbe.REACHABLE, probe.getCachedState(HOST, port));
+            } finally {
+                probe.stopRefresh(HOST, port);
+            }
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.byd.vehiclecontrol;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class AdbEventLoopTest {
+
+    @Test
+    public void getDefault_replacesStoppedLoop() throws Exception {
+        AdbEventLoop first = AdbEventLoop.getDefault();
+        assertSame(first, AdbEventLoop.getDefault());
+
+        first.close();
+        AdbEventLoop second = AdbEventLoop.getDefault();
+        assertNotSame(first, second);
+
+        // Новый цикл принимает подключения
+        try (FakeAdbServer server = new FakeAdbServer();
+             AdbClient client = AdbClient.connect(server.getHost(), server.getPort(), second,
+                     FakeAdbServer.getSigner())) {
+            assertTrue(client.isConnected());
+        }
+    }
+}
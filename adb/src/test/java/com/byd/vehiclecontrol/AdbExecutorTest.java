@@ -0,0 +1,175 @@
+package com.byd.vehiclecontrol;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+/**
+ * AdbExecutor: таймаут прерывает рабочий поток, переполненная очередь отклоняет задачи,
+ * cancelAll() закрывает ресурсы, метрики считают исходы.
+ */
+public class AdbExecutorTest {
+
+    private AdbExecutor executor;
+
+    @After
+    public void tearDown() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void submit_completesWithValue() throws Exception {
+        executor = new AdbExecutor("test", 2, 4);
+
+        assertEquals("ok", executor.submit(cancellation -> "ok", 1000).get(1, TimeUnit.SECONDS));
+        awaitCount(() -> executor.getCompletedCount(), 1);
+        assertEquals(0, executor.getFailedCount());
+        assertEquals(0, executor.getInFlight());
+    }
+
+    @Test
+    public void timeout_closesResourcesAndInterruptsWorker() throws Exception {
+        executor = new AdbExecutor("test", 1, 4);
+        AtomicBoolean closed = new AtomicBoolean();
+        CountDownLatch interrupted = new CountDownLatch(1);
+
+        CompletableFuture<String> future = executor.submit(cancellation -> {
+            cancellation.onCancel(() -> closed.set(true));
+            try {
+                Thread.sleep(10_000);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+                throw e;
+            }
+            return "late";
+        }, 100);
+
+        try {
+            future.get(2, TimeUnit.SECONDS);
+            fail("task must time out");
+        } catch (ExecutionException e) {
+            assertTrue(String.valueOf(e.getCause()), e.getCause() instanceof TimeoutException);
+        }
+        assertTrue(interrupted.await(2, TimeUnit.SECONDS));
+        assertTrue(closed.get());
+        awaitCount(() -> executor.getTimedOutCount(), 1);
+        awaitCount(() -> executor.getFailedCount(), 1);
+
+        // Поток освободился для следующей задачи
+        assertEquals("next", executor.submit(cancellation -> "next", 1000).get(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void submit_rejectsWhenQueueFull() throws Exception {
+        executor = new AdbExecutor("test", 1, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+
+        CompletableFuture<Boolean> running = executor.submit(cancellation -> {
+            started.countDown();
+            return release.await(5, TimeUnit.SECONDS);
+        }, 5000);
+        assertTrue(started.await(2, TimeUnit.SECONDS));
+        CompletableFuture<String> queued = executor.submit(cancellation -> "queued", 5000);
+        assertEquals(1, executor.getQueueDepth());
+
+        CompletableFuture<String> rejected = executor.submit(cancellation -> "rejected", 5000);
+        assertTrue(rejected.isCompletedExceptionally());
+        try {
+            rejected.get();
+            fail("queue is full");
+        } catch (ExecutionException e) {
+            assertTrue(String.valueOf(e.getCause()), e.getCause() instanceof RejectedExecutionException);
+        }
+        assertEquals(1, executor.getRejectedCount());
+        assertEquals(1, executor.getInFlight());
+
+        release.countDown();
+        assertTrue(running.get(2, TimeUnit.SECONDS));
+        assertEquals("queued", queued.get(2, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void cancelAll_cancelsRunningAndQueuedTasks() throws Exception {
+        executor = new AdbExecutor("test", 1, 4);
+        AtomicBoolean closed = new AtomicBoolean();
+        AtomicBoolean queuedRan = new AtomicBoolean();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+
+        CompletableFuture<String> running = executor.submit(cancellation -> {
+            cancellation.onCancel(() -> closed.set(true));
+            started.countDown();
+            try {
+                Thread.sleep(10_000);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+                throw e;
+            }
+            return "late";
+        }, 10_000);
+        CompletableFuture<String> queued = executor.submit(cancellation -> {
+            queuedRan.set(true);
+            return "queued";
+        }, 10_000);
+        assertTrue(started.await(2, TimeUnit.SECONDS));
+
+        executor.cancelAll();
+
+        assertTrue(running.isCancelled());
+        assertTrue(queued.isCancelled());
+        try {
+            running.get();
+            fail("task was cancelled");
+        } catch (CancellationException expected) {
+            // ожидаемо
+        }
+        assertTrue(interrupted.await(2, TimeUnit.SECONDS));
+        assertTrue(closed.get());
+        awaitCount(() -> executor.getFailedCount(), 2);
+
+        // Отмененная задача из очереди не запускается
+        assertEquals("after", executor.submit(cancellation -> "after", 1000).get(1, TimeUnit.SECONDS));
+        assertFalse(queuedRan.get());
+    }
+
+    @Test
+    public void cancellation_closesResourceRegisteredAfterCancel() {
+        AdbExecutor.Cancellation cancellation = new AdbExecutor.Cancellation();
+        AtomicBoolean before = new AtomicBoolean();
+        AtomicBoolean after = new AtomicBoolean();
+
+        cancellation.onCancel(() -> before.set(true));
+        cancellation.cancel();
+        assertTrue(before.get());
+        assertTrue(cancellation.isCancelled());
+
+        cancellation.onCancel(() -> after.set(true));
+        assertTrue(after.get());
+    }
+
+    private interface Counter {
+        long get();
+    }
+
+    // Метрики обновляются в whenComplete, возможно в другом потоке
+    private static void awaitCount(Counter counter, long expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 2000;
+        while (counter.get() != expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(expected, counter.get());
+    }
+}
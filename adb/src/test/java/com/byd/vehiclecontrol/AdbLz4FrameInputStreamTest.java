@@ -0,0 +1,93 @@
+package com.byd.vehiclecontrol;
+
+import net.jpountz.lz4.LZ4FrameOutputStream;
+import net.jpountz.xxhash.XXHashFactory;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Распаковка LZ4 frame: кадры lz4-java и связанные блоки, как их пишет adbd.
+ */
+public class AdbLz4FrameInputStreamTest {
+
+    @Test
+    public void read_decodesFramesWrittenByLz4Java() throws IOException {
+        StringBuilder text = new StringBuilder();
+        Random random = new Random(1);
+        while (text.length() < 300_000) {
+            text.append("I/ActivityManager: Start proc ").append(random.nextInt(100_000)).append('\n');
+        }
+        byte[] original = text.toString().getBytes(StandardCharsets.UTF_8);
+
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (LZ4FrameOutputStream lz4 = new LZ4FrameOutputStream(compressed)) {
+            lz4.write(original);
+        }
+
+        assertArrayEquals(original, readAll(new AdbLz4FrameInputStream(
+                new ByteArrayInputStream(compressed.toByteArray()))));
+    }
+
+    @Test
+    public void read_resolvesMatchesIntoPreviousBlock() throws IOException {
+        ByteArrayOutputStream frame = frameHeader();
+        // Блок 1 без сжатия
+        byte[] first = "hello world ".getBytes(StandardCharsets.US_ASCII);
+        intLE(frame, first.length | 0x80000000);
+        frame.write(first);
+        // Блок 2: совпадение длиной 12 на 12 байт назад (в блок 1), затем "ab" и перекрывающееся совпадение
+        byte[] second = {0x08, 12, 0, 0x22, 'a', 'b', 2, 0, 0x10, '!'};
+        intLE(frame, second.length);
+        frame.write(second);
+        intLE(frame, 0);
+
+        byte[] result = readAll(new AdbLz4FrameInputStream(new ByteArrayInputStream(frame.toByteArray())));
+        assertEquals("hello world hello world abababab!", new String(result, StandardCharsets.US_ASCII));
+    }
+
+    @Test(expected = IOException.class)
+    public void read_rejectsOffsetBeforeHistory() throws IOException {
+        ByteArrayOutputStream frame = frameHeader();
+        byte[] block = {0x10, 'a', 5, 0, 0x10, '!'};
+        intLE(frame, block.length);
+        frame.write(block);
+        intLE(frame, 0);
+
+        readAll(new AdbLz4FrameInputStream(new ByteArrayInputStream(frame.toByteArray())));
+    }
+
+    // Кадр со связанными блоками до 64 КиБ, без контрольных сумм - как у LZ4F по умолчанию
+    private static ByteArrayOutputStream frameHeader() {
+        ByteArrayOutputStream frame = new ByteArrayOutputStream();
+        intLE(frame, 0x184D2204);
+        byte[] descriptor = {0x40, 0x40};
+        frame.write(descriptor, 0, descriptor.length);
+        frame.write((XXHashFactory.safeInstance().hash32().hash(descriptor, 0, descriptor.length, 0) >> 8) & 0xFF);
+        return frame;
+    }
+
+    private static void intLE(ByteArrayOutputStream out, int value) {
+        out.write(value);
+        out.write(value >> 8);
+        out.write(value >> 16);
+        out.write(value >>> 24);
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1000];
+        int n;
+        while ((n = in.read(buffer)) >= 0) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,149 @@
+package com.byd.vehiclecontrol;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Кодирование/разбор ADB сообщений: корректность при любой нарезке потока
+ * и отсутствие выделений памяти в установившемся режиме.
+ */
+public class AdbMessageCodecTest {
+
+    private static final int CMD_WRITE = 1163154007;  // WRTE
+    private static final int CMD_OKAY = 1497451343;   // OKAY
+
+    @Test
+    public void decode_handlesArbitrarySplits() throws IOException {
+        byte[] text = "shell output line\n".getBytes(StandardCharsets.UTF_8);
+        ByteBuffer wire = ByteBuffer.allocate(1024).order(ByteOrder.LITTLE_ENDIAN);
+        ByteBuffer header = ByteBuffer.allocate(AdbMessageCodec.HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+        AdbMessageCodec.encodeHeader(header, CMD_WRITE, 7, 1, ByteBuffer.wrap(text));
+        wire.put(header).put(text);
+        AdbMessageCodec.encodeHeader(header, CMD_OKAY, 7, 1, null);
+        wire.put(header);
+        wire.flip();
+
+        for (int chunk = 1; chunk <= wire.remaining(); chunk++) {
+            AdbMessageCodec.Decoder decoder = new AdbMessageCodec.Decoder(new AdbBufferPool());
+            int[] commands = new int[2];
+            String[] payloads = new String[2];
+            int[] count = {0};
+
+            ByteBuffer src = wire.duplicate();
+            while (src.hasRemaining()) {
+                ByteBuffer piece = src.slice();
+                piece.limit(Math.min(chunk, src.remaining()));
+                src.position(src.position() + piece.limit());
+
+                decoder.decode(piece, message -> {
+                    commands[count[0]] = message.command;
+                    payloads[count[0]] = new String(message.data(), StandardCharsets.UTF_8);
+                    count[0]++;
+                });
+            }
+
+            assertEquals(2, count[0]);
+            assertEquals(CMD_WRITE, commands[0]);
+            assertEquals("shell output line\n", payloads[0]);
+            assertEquals(CMD_OKAY, commands[1]);
+            assertEquals("", payloads[1]);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void decode_rejectsBadChecksum() throws IOException {
+        byte[] text = "abc".getBytes(StandardCharsets.UTF_8);
+        ByteBuffer header = ByteBuffer.allocate(AdbMessageCodec.HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        AdbMessageCodec.encodeHeader(header, CMD_WRITE, 1, 1, ByteBuffer.wrap(text));
+
+        ByteBuffer wire = ByteBuffer.allocate(64);
+        wire.put(header).put("abd".getBytes(StandardCharsets.UTF_8));
+        wire.flip();
+
+        new AdbMessageCodec.Decoder(new AdbBufferPool()).decode(wire, message -> { });
+    }
+
+    @Test
+    public void decode_skipsChecksumWhenNegotiatedOff() throws IOException {
+        byte[] text = "abc".getBytes(StandardCharsets.UTF_8);
+        ByteBuffer header = ByteBuffer.allocate(AdbMessageCodec.HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        AdbMessageCodec.encodeHeader(header, CMD_WRITE, 1, 1, ByteBuffer.wrap(text), false);
+
+        ByteBuffer wire = ByteBuffer.allocate(64);
+        wire.put(header).put(text);
+        wire.flip();
+
+        AdbMessageCodec.Decoder decoder = new AdbMessageCodec.Decoder(new AdbBufferPool());
+        decoder.setVerifyChecksum(false);
+        int[] count = {0};
+        decoder.decode(wire, message -> count[0]++);
+        assertEquals(1, count[0]);
+    }
+
+    @Test
+    public void steadyState_allocatesNothingPerMessage() throws IOException {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        AdbBufferPool pool = new AdbBufferPool();
+        AdbMessageCodec.Decoder decoder = new AdbMessageCodec.Decoder(pool);
+        ByteBuffer header = ByteBuffer.allocateDirect(AdbMessageCodec.HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        ByteBuffer payload = ByteBuffer.allocate(4000);
+        ByteBuffer wire = ByteBuffer.allocateDirect(64 * 1024);
+        long[] received = {0};
+        AdbMessageCodec.Decoder.Handler handler = message -> {
+            // Получатель забирает данные и потом возвращает буфер в пул, как AdbClientStream
+            ByteBuffer data = message.detachPayload();
+            received[0] += data != null ? data.remaining() : 0;
+            pool.release(data);
+        };
+
+        // Прогрев: JIT и заполнение пула
+        runMessages(20_000, header, payload, wire, decoder, handler);
+
+        long poolAllocations = pool.getAllocationCount();
+        long threadId = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        int messages = 100_000;
+        runMessages(messages, header, payload, wire, decoder, handler);
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+        assertEquals("pool must not grow in steady state", poolAllocations, pool.getAllocationCount());
+        assertTrue("allocated " + allocated + " bytes for " + messages + " messages",
+                allocated < messages / 10);
+        assertTrue(received[0] > 0);
+    }
+
+    // WRTE с данными + OKAY, как в обычном обмене по потоку
+    private static void runMessages(int count, ByteBuffer header, ByteBuffer payload, ByteBuffer wire,
+                                    AdbMessageCodec.Decoder decoder,
+                                    AdbMessageCodec.Decoder.Handler handler) throws IOException {
+        for (int i = 0; i < count; i++) {
+            wire.clear();
+
+            payload.clear();
+            payload.limit(100 + (i % 3900));
+            AdbMessageCodec.encodeHeader(header, CMD_WRITE, 5, 1, payload);
+            wire.put(header);
+            wire.put(payload);
+
+            AdbMessageCodec.encodeHeader(header, CMD_OKAY, 1, 5, null);
+            wire.put(header);
+
+            wire.flip();
+            decoder.decode(wire, handler);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.byd.vehiclecontrol;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class AdbMetricsTest {
+
+    @Test
+    public void histogram_bucketsAreContiguous() {
+        for (long micros = 0; micros < 100_000; micros++) {
+            int bucket = AdbMetrics.Histogram.bucket(micros);
+            assertTrue(micros <= AdbMetrics.Histogram.upperBound(bucket));
+            assertTrue(bucket == 0 || micros > AdbMetrics.Histogram.upperBound(bucket - 1));
+        }
+    }
+
+    @Test
+    public void latency_percentilesWithinBucketError() {
+        AdbMetrics metrics = new AdbMetrics(null);
+        // 1..1000 мс: p50 ~ 500, p99 ~ 990
+        for (int ms = 1; ms <= 1000; ms++) {
+            metrics.recordLatency(AdbMetrics.OP_EXEC, ms * 1_000_000L);
+        }
+
+        AdbMetrics.LatencySnapshot latency = metrics.snapshot().getLatency(AdbMetrics.OP_EXEC);
+        assertEquals(1000, latency.getCount());
+        assertEquals(500.5, latency.getMeanMs(), 0.01);
+        assertEquals(500, latency.getP50Ms(), 500 * 0.25);
+        assertEquals(990, latency.getP99Ms(), 990 * 0.25);
+        assertEquals(1000, latency.getMaxMs(), 0.01);
+    }
+
+    @Test
+    public void records_propagateToParent() {
+        AdbMetrics parent = new AdbMetrics(null);
+        AdbMetrics child = new AdbMetrics(parent);
+        child.recordOut(0x45545257, 100);
+        child.recordTimeout();
+
+        assertEquals(1, parent.snapshot().getMessagesOut(0x45545257));
+        assertEquals(100, parent.snapshot().getBytesOut(0x45545257));
+        assertEquals(1, parent.snapshot().getTimeoutCount());
+    }
+}
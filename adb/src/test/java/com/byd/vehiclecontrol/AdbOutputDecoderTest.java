@@ -0,0 +1,49 @@
+package com.byd.vehiclecontrol;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+/**
+ * Декодирование вывода, когда многобайтные символы разрезаны между пакетами.
+ */
+public class AdbOutputDecoderTest {
+
+    @Test
+    public void decode_joinsCharactersSplitAcrossChunks() throws IOException {
+        String text = "Привет, мир ✓ 😀\n";
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+
+        for (int chunk = 1; chunk <= bytes.length; chunk++) {
+            AdbOutputDecoder decoder = new AdbOutputDecoder();
+            StringBuilder result = new StringBuilder();
+            for (int offset = 0; offset < bytes.length; offset += chunk) {
+                int n = Math.min(chunk, bytes.length - offset);
+                decoder.decode(ByteBuffer.wrap(bytes, offset, n), result::append);
+            }
+            decoder.finish(result::append);
+
+            assertEquals("chunk " + chunk, text, result.toString());
+        }
+    }
+
+    @Test
+    public void finish_replacesTruncatedCharacterAndResets() throws IOException {
+        AdbOutputDecoder decoder = new AdbOutputDecoder();
+        StringBuilder result = new StringBuilder();
+
+        byte[] bytes = "ж".getBytes(StandardCharsets.UTF_8);
+        decoder.decode(ByteBuffer.wrap(bytes, 0, 1), result::append);
+        decoder.finish(result::append);
+        assertEquals("�", result.toString());
+
+        result.setLength(0);
+        decoder.decode(ByteBuffer.wrap("ok".getBytes(StandardCharsets.UTF_8)), result::append);
+        decoder.finish(result::append);
+        assertEquals("ok", result.toString());
+    }
+}
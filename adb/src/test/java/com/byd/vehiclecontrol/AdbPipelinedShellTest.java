@@ -0,0 +1,106 @@
+package com.byd.vehiclecontrol;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * AdbPipelinedShell против shell:sh FakeAdbServer: ответы по маркерам в порядке отправки,
+ * маркер на границе WRTE, пакет команд одной записью и AdbUtils.executeCommands поверх конвейера.
+ */
+public class AdbPipelinedShellTest {
+
+    private FakeAdbServer server;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new FakeAdbServer()
+                .setResponder(command -> "out:" + command + "\n")
+                .setExitStatus(command -> command.startsWith("exit ") ? Integer.parseInt(command.substring(5)) : 0);
+    }
+
+    @After
+    public void tearDown() {
+        server.close();
+    }
+
+    @Test
+    public void submitAll_resolvesInOrderWithOwnOutputAndExitCode() throws Exception {
+        try (AdbClient client = connect()) {
+            List<CompletableFuture<AdbShellResult>> results =
+                    client.executePipelined(Arrays.asList("id", "exit 1", "getprop ro.product.model", "exit 42"));
+
+            assertResult(results.get(0), "out:id\n", 0);
+            assertResult(results.get(1), "out:exit 1\n", 1);
+            assertResult(results.get(2), "out:getprop ro.product.model\n", 0);
+            assertResult(results.get(3), "out:exit 42\n", 42);
+
+            // Следующие команды идут в тот же shell
+            assertResult(client.executePipelined("uptime"), "out:uptime\n", 0);
+            assertEquals(1, client.getOpenStreams().size());
+        }
+    }
+
+    @Test
+    public void submitAll_parsesMarkerSplitAcrossWrites() throws Exception {
+        // maxdata 32: 20 байт вывода и начало маркера в одном WRTE, конец маркера - в следующем
+        server.setMaxData(32).setResponder(command -> "0123456789abcdefghi\n");
+
+        try (AdbClient client = connect()) {
+            List<CompletableFuture<AdbShellResult>> results =
+                    client.executePipelined(Arrays.asList("first", "exit 3", "third"));
+
+            assertResult(results.get(0), "0123456789abcdefghi\n", 0);
+            assertResult(results.get(1), "0123456789abcdefghi\n", 3);
+            assertResult(results.get(2), "0123456789abcdefghi\n", 0);
+        }
+    }
+
+    @Test
+    public void submitAll_sendsBatchInOneWrite() throws Exception {
+        List<String> commands = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            commands.add("echo " + i);
+        }
+
+        try (AdbClient client = connect()) {
+            int before = server.getWritesReceived();
+            List<CompletableFuture<AdbShellResult>> results = client.executePipelined(commands);
+            for (int i = 0; i < commands.size(); i++) {
+                assertResult(results.get(i), "out:echo " + i + "\n", 0);
+            }
+            // Один WRTE на весь пакет, а не запрос-ответ на каждую команду
+            assertEquals(1, server.getWritesReceived() - before);
+        }
+    }
+
+    @Test
+    public void executeCommands_returnsOutputsInOrder() throws Exception {
+        String[] outputs = AdbUtils.executeCommands(server.getHost(), server.getPort(),
+                "getprop ro.build.version.sdk", "exit 1", "pm list packages");
+
+        assertEquals(Arrays.asList("out:getprop ro.build.version.sdk\n", "out:exit 1\n", "out:pm list packages\n"),
+                Arrays.asList(outputs));
+    }
+
+    private AdbClient connect() throws IOException {
+        return AdbClient.connect(server.getHost(), server.getPort(), AdbEventLoop.getDefault(),
+                FakeAdbServer.getSigner());
+    }
+
+    private static void assertResult(CompletableFuture<AdbShellResult> future, String stdout, int exitCode)
+            throws Exception {
+        AdbShellResult result = future.get(5, TimeUnit.SECONDS);
+        assertEquals(stdout, result.getStdout());
+        assertEquals(exitCode, result.getExitCode());
+    }
+}
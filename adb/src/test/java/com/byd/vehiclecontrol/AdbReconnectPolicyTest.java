@@ -0,0 +1,91 @@
+package com.byd.vehiclecontrol;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+import static org.junit.Assert.*;
+
+/**
+ * AdbReconnectPolicy: границы паузы с разбросом и отказ connectShell по дедлайну и по серии "connection refused".
+ */
+public class AdbReconnectPolicyTest {
+
+    private static final String HOST = "127.0.0.1";
+
+    @Test
+    public void nextDelayMs_staysWithinJitteredBounds() {
+        AdbReconnectPolicy policy = new AdbReconnectPolicy(100, 1000, 30_000, 10, 3);
+
+        for (int attempt = 0; attempt < 8; attempt++) {
+            long base = Math.min(1000, 100L << attempt);
+            long min = Long.MAX_VALUE;
+            long max = 0;
+            for (int i = 0; i < 500; i++) {
+                long delay = policy.nextDelayMs(attempt);
+                assertTrue("attempt " + attempt + ": " + delay, delay >= base / 2 && delay <= base);
+                min = Math.min(min, delay);
+                max = Math.max(max, delay);
+            }
+            // Разброс действительно есть: клиенты не переподключаются в один момент
+            assertTrue("attempt " + attempt + ": " + min + ".." + max, max - min >= base / 10);
+        }
+    }
+
+    @Test
+    public void connectShell_givesUpAfterRefusedAttempts() throws Exception {
+        int port = closedPort();
+        AdbReconnectPolicy policy = new AdbReconnectPolicy(10, 20, 10_000, 10, 3);
+
+        long start = System.currentTimeMillis();
+        try {
+            AdbClient.connectShell(HOST, port, policy).close();
+            fail("port is closed");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("after 3 attempts"));
+        }
+        assertTrue(System.currentTimeMillis() - start < 5000);
+        assertEquals(1, policy.getFailureCount());
+        assertEquals(0, policy.getRecoveryCount());
+    }
+
+    @Test
+    public void connectShell_stopsAtDeadline() throws Exception {
+        // Порт принимает соединения и сразу их закрывает: это не "refused", счетчик серии не растет
+        try (ServerSocket server = new ServerSocket(0, 50, InetAddress.getByName(HOST))) {
+            Thread acceptor = new Thread(() -> {
+                while (!server.isClosed()) {
+                    try {
+                        Socket socket = server.accept();
+                        socket.close();
+                    } catch (IOException e) {
+                        return;
+                    }
+                }
+            });
+            acceptor.setDaemon(true);
+            acceptor.start();
+
+            AdbReconnectPolicy policy = new AdbReconnectPolicy(50, 50, 500, 1000, 3);
+            long start = System.currentTimeMillis();
+            try {
+                AdbClient.connectShell(HOST, server.getLocalPort(), policy).close();
+                fail("handshake cannot succeed");
+            } catch (IOException e) {
+                assertFalse(e.getMessage(), e.getMessage().contains("after 1000 attempts"));
+            }
+            long elapsed = System.currentTimeMillis() - start;
+            assertTrue("elapsed " + elapsed, elapsed >= 400 && elapsed < 3000);
+            assertEquals(1, policy.getFailureCount());
+        }
+    }
+
+    private static int closedPort() throws IOException {
+        try (ServerSocket server = new ServerSocket(0, 1, InetAddress.getByName(HOST))) {
+            return server.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.byd.vehiclecontrol;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * AdbSessionPool против FakeAdbServer: лимит на устройство, вытеснение простаивающих сессий,
+ * пробная команда после простоя и однократный повтор при обрыве соединения.
+ */
+public class AdbSessionPoolTest {
+
+    private FakeAdbServer server;
+    private final List<String> commands = new CopyOnWriteArrayList<>();
+
+    @Before
+    public void setUp() throws IOException {
+        server = new FakeAdbServer().setResponder(command -> {
+            commands.add(command);
+            return "ok\n";
+        });
+    }
+
+    @After
+    public void tearDown() {
+        server.close();
+    }
+
+    @Test
+    public void borrow_waitsWhenPerKeyLimitReached() throws Exception {
+        try (AdbSessionPool pool = new AdbSessionPool(2, 60_000, 60_000, 200)) {
+            AdbClient first = pool.borrow(server.getHost(), server.getPort());
+            AdbClient second = pool.borrow(server.getHost(), server.getPort());
+            assertNotSame(first, second);
+            assertEquals(2, pool.getBorrowedCount());
+
+            long start = System.currentTimeMillis();
+            try {
+                pool.borrow(server.getHost(), server.getPort());
+                fail("third session exceeds the per-key limit");
+            } catch (IOException expected) {
+                assertTrue(System.currentTimeMillis() - start >= 150);
+            }
+
+            // Освободившаяся сессия выдается снова, новая не создается
+            pool.release(first);
+            assertSame(first, pool.borrow(server.getHost(), server.getPort()));
+            assertEquals(2, pool.getCreatedCount());
+            assertEquals(1, pool.getReusedCount());
+            assertEquals(2, server.getConnectionCount());
+
+            pool.release(first);
+            pool.release(second);
+            assertEquals(2, pool.getIdleCount());
+        }
+    }
+
+    @Test
+    public void evictIdle_closesSessionsIdleTooLong() throws Exception {
+        try (AdbSessionPool pool = new AdbSessionPool(2, 50, 60_000, 1000)) {
+            AdbClient client = pool.borrow(server.getHost(), server.getPort());
+            pool.release(client);
+            assertEquals(1, pool.getIdleCount());
+
+            Thread.sleep(100);
+            pool.evictIdle();
+
+            assertEquals(0, pool.getIdleCount());
+            assertEquals(1, pool.getEvictedCount());
+            assertFalse(client.isShellOpen());
+
+            // Место освободилось: следующая сессия создается заново
+            assertNotSame(client, pool.borrow(server.getHost(), server.getPort()));
+            assertEquals(2, pool.getCreatedCount());
+        }
+    }
+
+    @Test
+    public void borrow_probesSessionAfterIdle() throws Exception {
+        try (AdbSessionPool pool = new AdbSessionPool(2, 60_000, 0, 1000)) {
+            AdbClient client = pool.borrow(server.getHost(), server.getPort());
+            pool.release(client);
+            assertFalse(commands.contains("true"));
+
+            assertSame(client, pool.borrow(server.getHost(), server.getPort()));
+            assertTrue(commands.toString(), commands.contains("true"));
+            assertEquals(1, pool.getReusedCount());
+            pool.release(client);
+        }
+    }
+
+    @Test
+    public void borrow_replacesSessionBrokenWhileIdle() throws Exception {
+        try (AdbSessionPool pool = new AdbSessionPool(2, 60_000, 0, 1000)) {
+            AdbClient client = pool.borrow(server.getHost(), server.getPort());
+            pool.release(client);
+
+            server.dropConnections();
+            awaitDisconnected(client);
+
+            AdbClient fresh = pool.borrow(server.getHost(), server.getPort());
+            assertNotSame(client, fresh);
+            assertEquals(1, pool.getBrokenCount());
+            assertEquals(2, pool.getCreatedCount());
+            pool.release(fresh);
+        }
+    }
+
+    @Test
+    public void execute_retriesOnceOnConnectionLoss() throws Exception {
+        try (AdbSessionPool pool = new AdbSessionPool(2, 60_000, 60_000, 1000)) {
+            AtomicInteger calls = new AtomicInteger();
+            String result = pool.execute(server.getHost(), server.getPort(), client -> {
+                if (calls.incrementAndGet() == 1) {
+                    server.dropConnections();
+                    awaitDisconnected(client);
+                    throw new IOException("Connection lost");
+                }
+                return client.executeCommand("id");
+            });
+
+            assertTrue(result, result.contains("ok"));
+            assertEquals(2, calls.get());
+            assertEquals(1, pool.getReconnectCount());
+            assertEquals(0, pool.getBorrowedCount());
+        }
+    }
+
+    @Test
+    public void execute_doesNotRetryWhenConnectionAlive() throws Exception {
+        try (AdbSessionPool pool = new AdbSessionPool(2, 60_000, 60_000, 1000)) {
+            AtomicInteger calls = new AtomicInteger();
+            try {
+                pool.execute(server.getHost(), server.getPort(), client -> {
+                    calls.incrementAndGet();
+                    throw new IOException("Command failed");
+                });
+                fail("failure must propagate");
+            } catch (IOException e) {
+                assertEquals("Command failed", e.getMessage());
+            }
+
+            assertEquals(1, calls.get());
+            assertEquals(0, pool.getReconnectCount());
+            // Сессия с ошибкой в пул не возвращается
+            assertEquals(0, pool.getIdleCount());
+            assertEquals(1, pool.getBrokenCount());
+        }
+    }
+
+    @Test
+    public void execute_retriesOnlyOnce() throws Exception {
+        try (AdbSessionPool pool = new AdbSessionPool(2, 60_000, 60_000, 1000)) {
+            AtomicInteger calls = new AtomicInteger();
+            try {
+                pool.execute(server.getHost(), server.getPort(), client -> {
+                    calls.incrementAndGet();
+                    server.dropConnections();
+                    awaitDisconnected(client);
+                    throw new IOException("Connection lost");
+                });
+                fail("second loss must propagate");
+            } catch (IOException expected) {
+                // ожидаемо
+            }
+            assertEquals(2, calls.get());
+            assertEquals(1, pool.getReconnectCount());
+        }
+    }
+
+    private static void awaitDisconnected(AdbClient client) throws IOException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (client.isConnected()) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new IOException("Client did not notice the dropped connection");
+            }
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.byd.vehiclecontrol;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+/**
+ * Разбор пакетов shell,v2 при любой нарезке потока.
+ */
+public class AdbShellV2CodecTest {
+
+    @Test
+    public void parser_separatesStreamsAndExitCode() throws IOException {
+        ByteBuffer wire = ByteBuffer.allocate(256);
+        wire.put(AdbShellV2Codec.packet(AdbShellV2Codec.ID_STDOUT, bytes("hello\n")));
+        wire.put(AdbShellV2Codec.packet(AdbShellV2Codec.ID_STDERR, bytes("warn\n")));
+        wire.put(AdbShellV2Codec.packet(AdbShellV2Codec.ID_STDOUT, bytes("")));
+        wire.put(AdbShellV2Codec.packet(AdbShellV2Codec.ID_STDOUT, bytes("world\n")));
+        wire.put(AdbShellV2Codec.packet(AdbShellV2Codec.ID_EXIT, new byte[]{7}));
+        wire.flip();
+
+        for (int chunk = 1; chunk <= wire.remaining(); chunk++) {
+            StringBuilder stdout = new StringBuilder();
+            StringBuilder stderr = new StringBuilder();
+            int[] exitCode = {-1};
+            AdbShellV2Codec.Parser parser = new AdbShellV2Codec.Parser();
+            AdbShellV2Codec.Parser.Handler handler = new AdbShellV2Codec.Parser.Handler() {
+                @Override
+                public void onStdout(ByteBuffer data) {
+                    stdout.append(StandardCharsets.UTF_8.decode(data));
+                }
+
+                @Override
+                public void onStderr(ByteBuffer data) {
+                    stderr.append(StandardCharsets.UTF_8.decode(data));
+                }
+
+                @Override
+                public void onExit(int code) {
+                    exitCode[0] = code;
+                }
+            };
+
+            ByteBuffer src = wire.duplicate();
+            while (src.hasRemaining()) {
+                ByteBuffer piece = src.slice();
+                piece.limit(Math.min(chunk, src.remaining()));
+                src.position(src.position() + piece.limit());
+                parser.feed(piece, handler);
+            }
+
+            assertEquals("hello\nworld\n", stdout.toString());
+            assertEquals("warn\n", stderr.toString());
+            assertEquals(7, exitCode[0]);
+        }
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+}
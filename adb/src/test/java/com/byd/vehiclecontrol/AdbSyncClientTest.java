@@ -0,0 +1,169 @@
+package com.byd.vehiclecontrol;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * AdbSyncClient против службы sync: FakeAdbServer: push/pull/stat/list без устройства,
+ * в том числе SND2/RCV2 со сжатием LZ4.
+ */
+public class AdbSyncClientTest {
+
+    private FakeAdbServer server;
+    private AdbClient client;
+    private final List<File> localFiles = new ArrayList<>();
+
+    @Before
+    public void setUp() throws IOException {
+        // Мелкий maxdata: куски sync по 64 КиБ приходят несколькими WRTE
+        server = new FakeAdbServer().setMaxData(4096);
+        client = AdbClient.connect(server.getHost(), server.getPort(), AdbEventLoop.getDefault(),
+                FakeAdbServer.getSigner());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        client.close();
+        server.close();
+        for (File file : localFiles) {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void pushThenPull_roundTripsContent() throws IOException {
+        byte[] content = randomBytes(300_000);
+        File local = localFile();
+        Files.write(local.toPath(), content);
+
+        try (AdbSyncClient sync = client.openSync()) {
+            assertFalse(sync.isCompressionAvailable());
+
+            AdbTransferStats pushed = sync.push(local, "/sdcard/upload.bin", 0600);
+            assertEquals(content.length, pushed.getBytes());
+            assertArrayEquals(content, server.getFile("/sdcard/upload.bin"));
+            assertEquals(0100600, server.getFileMode("/sdcard/upload.bin"));
+
+            // Тот же поток sync: операции идут одна за другой
+            File copy = localFile();
+            AdbTransferStats pulled = sync.pull("/sdcard/upload.bin", copy);
+            assertEquals(content.length, pulled.getBytes());
+            assertArrayEquals(content, Files.readAllBytes(copy.toPath()));
+        }
+    }
+
+    @Test
+    public void pushThenPull_compressesWithLz4WhenSupported() throws IOException {
+        // Сжимаемый текст и случайный хвост: несколько блоков LZ4 и кусков DATA
+        StringBuilder log = new StringBuilder();
+        for (int i = 0; log.length() < 1_000_000; i++) {
+            log.append("I/ActivityManager: Start proc ").append(i % 100).append(" com.byd.app\n");
+        }
+        byte[] text = log.toString().getBytes(StandardCharsets.UTF_8);
+        byte[] content = Arrays.copyOf(text, text.length + 100_000);
+        System.arraycopy(randomBytes(100_000), 0, content, text.length, 100_000);
+        File local = localFile();
+        Files.write(local.toPath(), content);
+
+        try (FakeAdbServer v2 = new FakeAdbServer().setMaxData(4096)
+                .setFeatures("shell_v2,cmd,sendrecv_v2,sendrecv_v2_lz4");
+             AdbClient v2Client = AdbClient.connect(v2.getHost(), v2.getPort(), AdbEventLoop.getDefault(),
+                     FakeAdbServer.getSigner());
+             AdbSyncClient sync = v2Client.openSync()) {
+            assertTrue(sync.isCompressionAvailable());
+
+            AdbTransferStats pushed = sync.push(local, "/sdcard/app.log");
+            assertTrue(pushed.isCompressed());
+            assertEquals(content.length, pushed.getBytes());
+            assertTrue(pushed.toString(), pushed.getWireBytes() < content.length / 2);
+            assertArrayEquals(content, v2.getFile("/sdcard/app.log"));
+
+            File copy = localFile();
+            AdbTransferStats pulled = sync.pull("/sdcard/app.log", copy);
+            assertTrue(pulled.isCompressed());
+            assertEquals(content.length, pulled.getBytes());
+            assertTrue(pulled.toString(), pulled.getWireBytes() < content.length / 2);
+            assertArrayEquals(content, Files.readAllBytes(copy.toPath()));
+            assertEquals(2, v2.getCompressedTransfers());
+
+            // Без сжатия тот же поток идет через SEND/RECV
+            sync.setCompressionEnabled(false);
+            assertFalse(sync.pull("/sdcard/app.log", copy).isCompressed());
+            assertArrayEquals(content, Files.readAllBytes(copy.toPath()));
+            assertEquals(2, v2.getCompressedTransfers());
+        }
+    }
+
+    @Test
+    public void stat_reportsFilesDirectoriesAndMissingPaths() throws IOException {
+        server.putFile("/data/local/tmp/app.txt", new byte[123]);
+
+        try (AdbSyncClient sync = client.openSync()) {
+            AdbSyncClient.Entry file = sync.stat("/data/local/tmp/app.txt");
+            assertTrue(file.exists());
+            assertTrue(file.isFile());
+            assertEquals(123, file.getSize());
+
+            assertTrue(sync.stat("/data/local/tmp").isDirectory());
+            assertFalse(sync.stat("/data/local/tmp/missing").exists());
+        }
+    }
+
+    @Test
+    public void list_skipsDotEntries() throws IOException {
+        server.putFile("/sdcard/a.txt", new byte[1])
+                .putFile("/sdcard/b.txt", new byte[2])
+                .putFile("/sdcard/Download/c.txt", new byte[3]);
+
+        try (AdbSyncClient sync = client.openSync()) {
+            List<String> names = new ArrayList<>();
+            for (AdbSyncClient.Entry entry : sync.list("/sdcard")) {
+                names.add(entry.getName() + (entry.isDirectory() ? "/" : ""));
+            }
+            assertEquals(3, names.size());
+            assertTrue(names.toString(), names.contains("a.txt"));
+            assertTrue(names.toString(), names.contains("b.txt"));
+            assertTrue(names.toString(), names.contains("Download/"));
+        }
+    }
+
+    @Test
+    public void pull_missingFileFailsAndDeletesPartialFile() throws IOException {
+        File local = localFile();
+
+        AdbSyncClient sync = client.openSync();
+        try {
+            sync.pull("/sdcard/missing.bin", local);
+            fail("pull of a missing file must fail");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("No such file"));
+        }
+        assertFalse(local.exists());
+        // После ошибки adbd закрывает службу, клиент закрывается вместе с ней
+        assertTrue(sync.isClosed());
+    }
+
+    private File localFile() throws IOException {
+        File file = File.createTempFile("sync", ".bin");
+        localFiles.add(file);
+        return file;
+    }
+
+    static byte[] randomBytes(int size) {
+        byte[] data = new byte[size];
+        new Random(size).nextBytes(data);
+        return data;
+    }
+}
@@ -0,0 +1,967 @@
+package com.byd.vehiclecontrol;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.SecureRandom;
+import java.security.Signature;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import net.jpountz.lz4.LZ4FrameInputStream;
+import net.jpountz.lz4.LZ4FrameOutputStream;
+
+/**
+ * Локальный adbd для тестов и замеров AdbClient без устройства.
+ * Слушает loopback порт и говорит CNXN/AUTH/OPEN/WRTE/OKAY/CLSE.
+ *
+ * Службы:
+ * - "shell:" - интерактивный shell с приглашением; каждая строка ввода отвечается через Responder
+ * - "shell:sh" - shell без PTY (конвейер AdbPipelinedShell): ни эха, ни приглашения; группы "{ cmd\n} ..."
+ *   выполняются целиком, echo после группы печатает $? из ExitStatus
+ * - "shell:cmd", "exec:cmd" - однократная команда, вывод Responder и CLSE
+ * - "shell,v2,raw:cmd" - то же в пакетах shell,v2 с кодом возврата из ExitStatus
+ * - "sync:" - STAT/LIST/SEND/RECV над файлами в памяти сервера (putFile/getFile);
+ *   с features sendrecv_v2,sendrecv_v2_lz4 - еще SND2/RCV2 со сжатием LZ4
+ *
+ * Настраиваются версия протокола, maxdata, список features, задержка на каждый пакет,
+ * нарезка записей в сокет (проверка сборки сообщений из кусков) и поведение AUTH.
+ * AUTH как у adbd: случайный токен, подпись проверяется ключом фикстуры (getSigner()), чужая подпись
+ * отвергается новым токеном, открытый ключ принимается (пользователь подтвердил его на устройстве).
+ * Если клиент и сервер объявили delayed_ack, поток работает с окном вместо OKAY на каждый WRTE.
+ */
+public class FakeAdbServer implements AutoCloseable {
+
+    static final int CMD_CNXN = 0x4e584e43;
+    static final int CMD_AUTH = 0x48545541;
+    static final int CMD_OPEN = 0x4e45504f;
+    static final int CMD_OKAY = 0x59414b4f;
+    static final int CMD_CLSE = 0x45534c43;
+    static final int CMD_WRTE = 0x45545257;
+
+    static final int AUTH_TOKEN = 1;
+    static final int AUTH_SIGNATURE = 2;
+    static final int AUTH_RSAPUBLICKEY = 3;
+
+    static final String PROMPT = "fake:/ $ ";
+    private static final int SEND_WINDOW = 1024 * 1024;
+    private static final long OKAY_TIMEOUT_MS = 5000;
+    private static final int TOKEN_SIZE = 20;
+
+    // Ключ фикстуры: генерация RSA дорогая, поэтому один на все серверы
+    private static volatile KeyPair keyPair;
+
+    // Файл в памяти сервера для службы sync:
+    private static final class FakeFile {
+        final byte[] data;
+        final int mode;
+        final long mtimeSeconds;
+
+        FakeFile(byte[] data, int mode, long mtimeSeconds) {
+            this.data = data;
+            this.mode = mode;
+            this.mtimeSeconds = mtimeSeconds;
+        }
+    }
+
+    private static final int S_IFREG = 0100000;
+    private static final int S_IFDIR = 0040000;
+
+    /**
+     * Ответ на команду shell
+     */
+    public interface Responder {
+        String respond(String command);
+    }
+
+    /**
+     * Код завершения команды shell
+     */
+    public interface ExitStatus {
+        int exitStatus(String command);
+    }
+
+    private final ServerSocket server;
+    private final ExecutorService executor = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "FakeAdbServer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final List<Socket> sockets = new CopyOnWriteArrayList<>();
+    private final Map<String, FakeFile> files = new ConcurrentHashMap<>();
+    private final AtomicInteger compressedTransfers = new AtomicInteger();
+
+    // Настройки; меняются до подключения клиента
+    private volatile Responder responder = command -> command + "\n";
+    private volatile ExitStatus exitStatus = command -> 0;
+    private volatile int version = 0x01000001;
+    private volatile int maxData = 256 * 1024;
+    private volatile String features = "shell_v2,cmd";
+    private volatile boolean requireAuth = true;
+    private volatile boolean rejectSignature = false;
+    private volatile long latencyMs = 0;
+    private volatile int splitSize = 0;
+
+    // Что видел сервер
+    private volatile int hostVersion;
+    private volatile int hostMaxData;
+    private volatile String hostBanner;
+    private volatile int lastAuthType;
+    private volatile boolean lastSignatureValid;
+    private final AtomicInteger connections = new AtomicInteger();
+    private final AtomicInteger okaysReceived = new AtomicInteger();
+    private final AtomicInteger writesReceived = new AtomicInteger();
+    private final SecureRandom random = new SecureRandom();
+    private volatile int maxWritePayload;
+
+    public FakeAdbServer() throws IOException {
+        server = new ServerSocket();
+        server.setReuseAddress(true);
+        server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        executor.execute(this::acceptLoop);
+    }
+
+    public String getHost() {
+        return server.getInetAddress().getHostAddress();
+    }
+
+    public int getPort() {
+        return server.getLocalPort();
+    }
+
+    public FakeAdbServer setResponder(Responder responder) {
+        this.responder = responder;
+        return this;
+    }
+
+    public FakeAdbServer setExitStatus(ExitStatus exitStatus) {
+        this.exitStatus = exitStatus;
+        return this;
+    }
+
+    // 0x01000000 - с контрольными суммами, 0x01000001 - без
+    public FakeAdbServer setVersion(int version) {
+        this.version = version;
+        return this;
+    }
+
+    public FakeAdbServer setMaxData(int maxData) {
+        this.maxData = maxData;
+        return this;
+    }
+
+    // Список features через запятую, как в баннере CNXN
+    public FakeAdbServer setFeatures(String features) {
+        this.features = features;
+        return this;
+    }
+
+    // false - CNXN без AUTH, как adbd с отключенной авторизацией
+    public FakeAdbServer setRequireAuth(boolean requireAuth) {
+        this.requireAuth = requireAuth;
+        return this;
+    }
+
+    // Отвергать подпись: клиент должен отправить открытый ключ
+    public FakeAdbServer setRejectSignature(boolean rejectSignature) {
+        this.rejectSignature = rejectSignature;
+        return this;
+    }
+
+    // Задержка перед обработкой каждого принятого и отправкой каждого пакета
+    public FakeAdbServer setLatencyMs(long latencyMs) {
+        this.latencyMs = latencyMs;
+        return this;
+    }
+
+    // Писать в сокет кусками такого размера (0 - целиком)
+    public FakeAdbServer setSplitSize(int splitSize) {
+        this.splitSize = splitSize;
+        return this;
+    }
+
+    public int getHostVersion() {
+        return hostVersion;
+    }
+
+    public int getHostMaxData() {
+        return hostMaxData;
+    }
+
+    public String getHostBanner() {
+        return hostBanner;
+    }
+
+    // Файл для sync: с правами 0644; каталоги существуют неявно, пока в них есть файлы
+    public FakeAdbServer putFile(String path, byte[] data) {
+        files.put(path, new FakeFile(data, S_IFREG | 0644, System.currentTimeMillis() / 1000));
+        return this;
+    }
+
+    // Содержимое файла или null
+    public byte[] getFile(String path) {
+        FakeFile file = files.get(path);
+        return file != null ? file.data : null;
+    }
+
+    // st_mode файла или 0
+    public int getFileMode(String path) {
+        FakeFile file = files.get(path);
+        return file != null ? file.mode : 0;
+    }
+
+    // Сколько SND2/RCV2 прошло со сжатием LZ4
+    public int getCompressedTransfers() {
+        return compressedTransfers.get();
+    }
+
+    public int getLastAuthType() {
+        return lastAuthType;
+    }
+
+    // Прошла ли проверку последняя подпись AUTH(SIGNATURE)
+    public boolean isLastSignatureValid() {
+        return lastSignatureValid;
+    }
+
+    /**
+     * Подписчик с ключом, который сервер считает авторизованным
+     */
+    public static AdbSigner getSigner() {
+        KeyPair pair = keyPair();
+        return new AdbSigner(pair.getPrivate().getEncoded(), "fake@test\0".getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static KeyPair keyPair() {
+        KeyPair pair = keyPair;
+        if (pair == null) {
+            synchronized (FakeAdbServer.class) {
+                pair = keyPair;
+                if (pair == null) {
+                    try {
+                        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+                        generator.initialize(2048);
+                        pair = generator.generateKeyPair();
+                    } catch (GeneralSecurityException e) {
+                        throw new IllegalStateException(e);
+                    }
+                    keyPair = pair;
+                }
+            }
+        }
+        return pair;
+    }
+
+    public int getConnectionCount() {
+        return connections.get();
+    }
+
+    public int getOkaysReceived() {
+        return okaysReceived.get();
+    }
+
+    public int getWritesReceived() {
+        return writesReceived.get();
+    }
+
+    public int getMaxWritePayload() {
+        return maxWritePayload;
+    }
+
+    // Обрывает все соединения, сервер продолжает принимать новые
+    public void dropConnections() {
+        for (Socket socket : sockets) {
+            closeQuietly(socket);
+        }
+        sockets.clear();
+    }
+
+    @Override
+    public void close() {
+        closeQuietly(server);
+        dropConnections();
+        executor.shutdownNow();
+    }
+
+    private void acceptLoop() {
+        while (!server.isClosed()) {
+            try {
+                Socket socket = server.accept();
+                socket.setTcpNoDelay(true);
+                sockets.add(socket);
+                connections.incrementAndGet();
+                Connection connection = new Connection(socket);
+                executor.execute(() -> serve(connection));
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    // ===== Соединение =====
+
+    private final class Connection {
+        final Socket socket;
+        final DataInputStream in;
+        final OutputStream out;
+        final Map<Integer, Service> services = new ConcurrentHashMap<>();
+        final AtomicInteger nextId = new AtomicInteger(1000);
+        boolean online = false;
+        boolean delayedAck = false;
+        byte[] token;
+
+        Connection(Socket socket) throws IOException {
+            this.socket = socket;
+            this.in = new DataInputStream(socket.getInputStream());
+            this.out = socket.getOutputStream();
+        }
+
+        synchronized void send(int command, int arg0, int arg1, byte[] data) throws IOException {
+            sleepLatency();
+            boolean checksum = version < 0x01000001;
+            ByteBuffer message = ByteBuffer.allocate(24 + data.length).order(ByteOrder.LITTLE_ENDIAN);
+            message.putInt(command);
+            message.putInt(arg0);
+            message.putInt(arg1);
+            message.putInt(data.length);
+            message.putInt(checksum ? checksum(data) : 0);
+            message.putInt(~command);
+            message.put(data);
+
+            byte[] bytes = message.array();
+            int chunk = splitSize > 0 ? splitSize : bytes.length;
+            for (int offset = 0; offset < bytes.length; offset += chunk) {
+                out.write(bytes, offset, Math.min(chunk, bytes.length - offset));
+                out.flush();
+            }
+        }
+
+        void close() {
+            for (Service service : services.values()) {
+                service.closed = true;
+            }
+            closeQuietly(socket);
+        }
+    }
+
+    private void serve(Connection connection) {
+        try {
+            byte[] header = new byte[24];
+            while (true) {
+                connection.in.readFully(header);
+                ByteBuffer fields = ByteBuffer.wrap(header).order(ByteOrder.LITTLE_ENDIAN);
+                int command = fields.getInt();
+                int arg0 = fields.getInt();
+                int arg1 = fields.getInt();
+                int length = fields.getInt();
+                byte[] data = new byte[length];
+                connection.in.readFully(data);
+                sleepLatency();
+                handle(connection, command, arg0, arg1, data);
+            }
+        } catch (IOException e) {
+            // Клиент отключился
+        } finally {
+            connection.close();
+        }
+    }
+
+    // Новый токен на каждую попытку, как у adbd
+    private void sendToken(Connection connection) throws IOException {
+        connection.token = new byte[TOKEN_SIZE];
+        random.nextBytes(connection.token);
+        connection.send(CMD_AUTH, AUTH_TOKEN, 0, connection.token);
+    }
+
+    // Подпись AdbSigner: PKCS#1 v1.5 от SHA-1 токена
+    private static boolean verify(byte[] token, byte[] signature) {
+        if (token == null) {
+            return false;
+        }
+        try {
+            Signature verifier = Signature.getInstance("SHA1withRSA");
+            verifier.initVerify(keyPair().getPublic());
+            verifier.update(token);
+            return verifier.verify(signature);
+        } catch (GeneralSecurityException e) {
+            return false;
+        }
+    }
+
+    private void handle(Connection connection, int command, int arg0, int arg1, byte[] data) throws IOException {
+        switch (command) {
+            case CMD_CNXN:
+                hostVersion = arg0;
+                hostMaxData = arg1;
+                hostBanner = cString(data);
+                connection.delayedAck = hasFeature(bannerFeatures(hostBanner), "delayed_ack")
+                        && hasFeature(features, "delayed_ack");
+                if (requireAuth) {
+                    sendToken(connection);
+                } else {
+                    goOnline(connection);
+                }
+                break;
+
+            case CMD_AUTH:
+                lastAuthType = arg0;
+                if (arg0 == AUTH_SIGNATURE) {
+                    lastSignatureValid = verify(connection.token, data);
+                    if (lastSignatureValid && !rejectSignature) {
+                        goOnline(connection);
+                    } else {
+                        sendToken(connection);
+                    }
+                } else if (arg0 == AUTH_RSAPUBLICKEY) {
+                    goOnline(connection);
+                }
+                break;
+
+            case CMD_OPEN: {
+                Service service = new Service(connection, connection.nextId.getAndIncrement(), arg0, cString(data));
+                connection.services.put(service.localId, service);
+                if (connection.delayedAck && arg1 > 0) {
+                    // Окно клиента из OPEN, свое окно - в OKAY
+                    service.sendWindow = arg1;
+                    connection.send(CMD_OKAY, service.localId, arg0, intLE(SEND_WINDOW));
+                } else {
+                    connection.send(CMD_OKAY, service.localId, arg0, new byte[0]);
+                }
+                executor.execute(service::start);
+                break;
+            }
+
+            case CMD_OKAY: {
+                okaysReceived.incrementAndGet();
+                Service service = connection.services.get(arg1);
+                if (service != null) {
+                    service.onOkay(data);
+                }
+                break;
+            }
+
+            case CMD_WRTE: {
+                writesReceived.incrementAndGet();
+                maxWritePayload = Math.max(maxWritePayload, data.length);
+                Service service = connection.services.get(arg1);
+                if (service == null) {
+                    connection.send(CMD_CLSE, 0, arg0, new byte[0]);
+                    break;
+                }
+                connection.send(CMD_OKAY, arg1, arg0, service.window ? intLE(data.length) : new byte[0]);
+                service.input.execute(() -> service.onInput(data));
+                break;
+            }
+
+            case CMD_CLSE: {
+                Service service = connection.services.remove(arg1);
+                if (service != null) {
+                    service.closed = true;
+                    connection.send(CMD_CLSE, arg1, arg0, new byte[0]);
+                }
+                break;
+            }
+
+            default:
+                break;
+        }
+    }
+
+    private void goOnline(Connection connection) throws IOException {
+        if (connection.online) {
+            return;
+        }
+        connection.online = true;
+        String banner = "device::ro.product.name=fake;ro.product.model=FakeAdbServer;features=" + features;
+        connection.send(CMD_CNXN, version, maxData, (banner + "\0").getBytes(StandardCharsets.UTF_8));
+    }
+
+    // ===== Службы =====
+
+    private final class Service {
+        final Connection connection;
+        final int localId;
+        final int remoteId;
+        final String destination;
+        final boolean window;
+        // Ввод обрабатывается по порядку в отдельном потоке, чтобы не блокировать чтение сокета
+        final ExecutorService input = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "FakeAdbServer-input");
+            thread.setDaemon(true);
+            return thread;
+        });
+        final StringBuilder line = new StringBuilder();
+        // shell:sh: строки текущей группы { ... }, null вне группы
+        StringBuilder group;
+        final BlockingQueue<byte[]> syncInput = new LinkedBlockingQueue<>();
+        final Object lock = new Object();
+        // Классический режим: следующий WRTE только после OKAY; delayed_ack: пока окно клиента не исчерпано
+        boolean writeReady = true;
+        long sendWindow;
+        volatile boolean closed = false;
+
+        Service(Connection connection, int localId, int remoteId, String destination) {
+            this.connection = connection;
+            this.localId = localId;
+            this.remoteId = remoteId;
+            this.destination = destination;
+            this.window = connection.delayedAck;
+        }
+
+        void start() {
+            try {
+                if (destination.equals("shell:")) {
+                    write(PROMPT.getBytes(StandardCharsets.UTF_8));
+                } else if (destination.equals("shell:sh")) {
+                    // Ждет команд на входе
+                } else if (destination.startsWith("shell,v2,raw:")) {
+                    String command = destination.substring("shell,v2,raw:".length());
+                    String output = responder.respond(command);
+                    write(AdbShellV2Codec.packet(AdbShellV2Codec.ID_STDOUT, output.getBytes(StandardCharsets.UTF_8)));
+                    write(AdbShellV2Codec.packet(AdbShellV2Codec.ID_EXIT,
+                            new byte[]{(byte) exitStatus.exitStatus(command)}));
+                    finish();
+                } else if (destination.startsWith("shell:") || destination.startsWith("exec:")) {
+                    String command = destination.substring(destination.indexOf(':') + 1);
+                    write(responder.respond(command).getBytes(StandardCharsets.UTF_8));
+                    finish();
+                } else if (destination.equals("sync:")) {
+                    serveSync();
+                } else {
+                    finish();
+                }
+            } catch (IOException | InterruptedException e) {
+                closed = true;
+            }
+        }
+
+        // Интерактивный shell: эхо строки, ответ и новое приглашение
+        void onInput(byte[] data) {
+            if (destination.equals("sync:")) {
+                syncInput.add(data);
+                return;
+            }
+            boolean script = destination.equals("shell:sh");
+            if (!script && !destination.equals("shell:")) {
+                return;
+            }
+            try {
+                for (char ch : new String(data, StandardCharsets.UTF_8).toCharArray()) {
+                    if (ch != '\n') {
+                        line.append(ch);
+                        continue;
+                    }
+                    String command = line.toString();
+                    line.setLength(0);
+                    if (script) {
+                        onScriptLine(command);
+                    } else {
+                        String reply = command + "\r\n" + responder.respond(command) + PROMPT;
+                        write(reply.getBytes(StandardCharsets.UTF_8));
+                    }
+                }
+            } catch (IOException | InterruptedException e) {
+                closed = true;
+            }
+        }
+
+        // shell:sh: группа "{ cmd" ... "} </dev/null; echo \"...$?\"" выполняется, когда пришла закрывающая строка;
+        // вывод и echo уходят одной записью, как из буфера sh
+        private void onScriptLine(String text) throws IOException, InterruptedException {
+            if (group == null && !text.startsWith("{ ")) {
+                if (!text.isEmpty()) {
+                    write(responder.respond(text).getBytes(StandardCharsets.UTF_8));
+                }
+                return;
+            }
+            if (group == null) {
+                group = new StringBuilder(text.substring(2));
+                return;
+            }
+            String echo = "; echo \"";
+            int start = text.indexOf(echo);
+            if (!text.startsWith("}") || start < 0) {
+                group.append('\n').append(text);
+                return;
+            }
+
+            String command = unwrapGroups(group.toString());
+            group = null;
+            String status = text.substring(start + echo.length(), text.lastIndexOf('"'))
+                    .replace("$?", String.valueOf(exitStatus.exitStatus(command)));
+            write((responder.respond(command) + status + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+
+        // sync: запросы по одному до QUIT или закрытия потока клиентом
+        private void serveSync() throws IOException, InterruptedException {
+            DataInputStream in = new DataInputStream(new SyncInputStream());
+            while (true) {
+                int id = readIntLE(in);
+                int length = readIntLE(in);
+                if (id == AdbSyncClient.ID_QUIT) {
+                    finish();
+                    return;
+                }
+                byte[] request = new byte[length];
+                in.readFully(request);
+                String path = new String(request, StandardCharsets.UTF_8);
+
+                if (id == AdbSyncClient.ID_STAT) {
+                    write(syncStat(path));
+                } else if (id == AdbSyncClient.ID_LIST) {
+                    write(syncList(path));
+                } else if (id == AdbSyncClient.ID_SEND) {
+                    int comma = path.lastIndexOf(',');
+                    int mode = Integer.parseInt(path.substring(comma + 1));
+                    write(syncReceiveFile(in, path.substring(0, comma), mode));
+                } else if (id == AdbSyncClient.ID_RECV) {
+                    write(syncSendFile(path));
+                } else if (id == AdbSyncClient.ID_SEND_V2) {
+                    // Настройка {SND2, mode, flags}
+                    expectSync(readIntLE(in), AdbSyncClient.ID_SEND_V2);
+                    int mode = readIntLE(in);
+                    int flags = readIntLE(in);
+                    write(syncReceiveFileV2(in, path, mode, flags));
+                } else if (id == AdbSyncClient.ID_RECV_V2) {
+                    // Настройка {RCV2, flags}
+                    expectSync(readIntLE(in), AdbSyncClient.ID_RECV_V2);
+                    write(syncSendFileV2(path, readIntLE(in)));
+                } else {
+                    write(syncFail("unknown sync request"));
+                    finish();
+                    return;
+                }
+            }
+        }
+
+        private byte[] syncStat(String path) {
+            FakeFile file = files.get(path);
+            ByteBuffer reply = syncBuffer(16).putInt(AdbSyncClient.ID_STAT);
+            if (file != null) {
+                reply.putInt(file.mode).putInt(file.data.length).putInt((int) file.mtimeSeconds);
+            } else if (isDirectory(path)) {
+                reply.putInt(S_IFDIR | 0755).putInt(0).putInt(0);
+            } else {
+                reply.putInt(0).putInt(0).putInt(0);
+            }
+            return reply.array();
+        }
+
+        // DENT на каждый элемент каталога, включая "." и "..", затем DONE того же размера
+        private byte[] syncList(String dir) {
+            String prefix = dir.endsWith("/") ? dir : dir + "/";
+            Map<String, FakeFile> children = new TreeMap<>();
+            children.put(".", null);
+            children.put("..", null);
+            for (Map.Entry<String, FakeFile> entry : files.entrySet()) {
+                if (!entry.getKey().startsWith(prefix)) {
+                    continue;
+                }
+                String rest = entry.getKey().substring(prefix.length());
+                int slash = rest.indexOf('/');
+                children.put(slash < 0 ? rest : rest.substring(0, slash), slash < 0 ? entry.getValue() : null);
+            }
+
+            ByteArrayOutputStream reply = new ByteArrayOutputStream();
+            for (Map.Entry<String, FakeFile> child : children.entrySet()) {
+                FakeFile file = child.getValue();
+                byte[] name = child.getKey().getBytes(StandardCharsets.UTF_8);
+                ByteBuffer dent = syncBuffer(20 + name.length).putInt(AdbSyncClient.ID_DENT);
+                if (file != null) {
+                    dent.putInt(file.mode).putInt(file.data.length).putInt((int) file.mtimeSeconds);
+                } else {
+                    dent.putInt(S_IFDIR | 0755).putInt(0).putInt(0);
+                }
+                dent.putInt(name.length).put(name);
+                reply.write(dent.array(), 0, dent.capacity());
+            }
+            reply.write(syncBuffer(20).putInt(AdbSyncClient.ID_DONE).array(), 0, 20);
+            return reply.toByteArray();
+        }
+
+        // SEND: пакеты DATA до DONE с mtime, ответ OKAY
+        private byte[] syncReceiveFile(DataInputStream in, String path, int mode) throws IOException {
+            ByteArrayOutputStream data = new ByteArrayOutputStream();
+            while (true) {
+                int id = readIntLE(in);
+                int value = readIntLE(in);
+                if (id == AdbSyncClient.ID_DONE) {
+                    files.put(path, new FakeFile(data.toByteArray(), mode, value & 0xFFFFFFFFL));
+                    return syncBuffer(8).putInt(AdbSyncClient.ID_OKAY).putInt(0).array();
+                }
+                if (id != AdbSyncClient.ID_DATA || value < 0 || value > AdbSyncClient.MAX_CHUNK_SIZE) {
+                    throw new IOException("Bad sync DATA packet");
+                }
+                byte[] chunk = new byte[value];
+                in.readFully(chunk);
+                data.write(chunk, 0, value);
+            }
+        }
+
+        // SND2: как SEND, но в DATA поток LZ4 frame, если в flags есть SYNC_FLAG_LZ4
+        private byte[] syncReceiveFileV2(DataInputStream in, String path, int mode, int flags) throws IOException {
+            byte[] reply = syncReceiveFile(in, path, mode);
+            if ((flags & AdbSyncClient.SYNC_FLAG_LZ4) != 0) {
+                FakeFile file = files.get(path);
+                try (InputStream lz4 = new LZ4FrameInputStream(new ByteArrayInputStream(file.data))) {
+                    files.put(path, new FakeFile(readAll(lz4), file.mode, file.mtimeSeconds));
+                }
+                compressedTransfers.incrementAndGet();
+            }
+            return reply;
+        }
+
+        // RECV: содержимое кусками DATA по MAX_CHUNK_SIZE и DONE; FAIL, если файла нет
+        private byte[] syncSendFile(String path) {
+            FakeFile file = files.get(path);
+            if (file == null) {
+                return syncFail("No such file or directory");
+            }
+            return syncData(file.data);
+        }
+
+        // RCV2: с SYNC_FLAG_LZ4 файл сжимается в поток LZ4 frame и режется на DATA так же, как RECV
+        private byte[] syncSendFileV2(String path, int flags) throws IOException {
+            FakeFile file = files.get(path);
+            if (file == null) {
+                return syncFail("No such file or directory");
+            }
+            if ((flags & AdbSyncClient.SYNC_FLAG_LZ4) == 0) {
+                return syncData(file.data);
+            }
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            try (LZ4FrameOutputStream lz4 = new LZ4FrameOutputStream(compressed)) {
+                lz4.write(file.data);
+            }
+            compressedTransfers.incrementAndGet();
+            return syncData(compressed.toByteArray());
+        }
+
+        private byte[] syncData(byte[] data) {
+            ByteArrayOutputStream reply = new ByteArrayOutputStream();
+            for (int offset = 0; offset < data.length; offset += AdbSyncClient.MAX_CHUNK_SIZE) {
+                int length = Math.min(AdbSyncClient.MAX_CHUNK_SIZE, data.length - offset);
+                reply.write(syncBuffer(8).putInt(AdbSyncClient.ID_DATA).putInt(length).array(), 0, 8);
+                reply.write(data, offset, length);
+            }
+            reply.write(syncBuffer(8).putInt(AdbSyncClient.ID_DONE).putInt(0).array(), 0, 8);
+            return reply.toByteArray();
+        }
+
+        private byte[] syncFail(String message) {
+            byte[] text = message.getBytes(StandardCharsets.UTF_8);
+            return syncBuffer(8 + text.length).putInt(AdbSyncClient.ID_FAIL).putInt(text.length).put(text).array();
+        }
+
+        private boolean isDirectory(String path) {
+            String prefix = path.endsWith("/") ? path : path + "/";
+            for (String name : files.keySet()) {
+                if (name.startsWith(prefix)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        // Данные WRTE службы sync: как поток; конец - когда клиент закрыл службу
+        private final class SyncInputStream extends InputStream {
+            private byte[] current = new byte[0];
+            private int offset;
+
+            @Override
+            public int read() throws IOException {
+                byte[] one = new byte[1];
+                return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                while (offset == current.length) {
+                    byte[] next;
+                    try {
+                        next = syncInput.poll(100, TimeUnit.MILLISECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException();
+                    }
+                    if (next != null) {
+                        current = next;
+                        offset = 0;
+                    } else if (closed) {
+                        return -1;
+                    }
+                }
+                int n = Math.min(len, current.length - offset);
+                System.arraycopy(current, offset, b, off, n);
+                offset += n;
+                return n;
+            }
+        }
+
+        void onOkay(byte[] data) {
+            synchronized (lock) {
+                if (window && data.length >= 4) {
+                    sendWindow += ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN).getInt();
+                } else {
+                    writeReady = true;
+                }
+                lock.notifyAll();
+            }
+        }
+
+        // Отправляет данные кусками по maxdata с учетом подтверждений клиента
+        void write(byte[] data) throws IOException, InterruptedException {
+            for (int offset = 0; offset < data.length; offset += maxData) {
+                int length = Math.min(maxData, data.length - offset);
+                awaitWindow(length);
+                connection.send(CMD_WRTE, localId, remoteId, Arrays.copyOfRange(data, offset, offset + length));
+            }
+        }
+
+        private void awaitWindow(int length) throws IOException, InterruptedException {
+            long deadline = System.currentTimeMillis() + OKAY_TIMEOUT_MS;
+            synchronized (lock) {
+                while (window ? sendWindow <= 0 : !writeReady) {
+                    long left = deadline - System.currentTimeMillis();
+                    if (closed || left <= 0) {
+                        throw new IOException("No OKAY from client on " + destination);
+                    }
+                    lock.wait(Math.min(left, 100));
+                }
+                if (window) {
+                    sendWindow -= length;
+                } else {
+                    writeReady = false;
+                }
+            }
+        }
+
+        void finish() throws IOException {
+            if (connection.services.remove(localId) != null) {
+                connection.send(CMD_CLSE, localId, remoteId, new byte[0]);
+            }
+            closed = true;
+            input.shutdown();
+            try {
+                input.awaitTermination(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // ===== Утилиты =====
+
+    // Вложенные группы "{ cmd\n} 2>&1" раскрываются до самой команды
+    private static String unwrapGroups(String command) {
+        while (command.startsWith("{ ")) {
+            int close = command.lastIndexOf("\n}");
+            if (close < 0) {
+                break;
+            }
+            command = command.substring(2, close);
+        }
+        return command;
+    }
+
+    private void sleepLatency() {
+        if (latencyMs <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(latencyMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static boolean hasFeature(String list, String feature) {
+        return Arrays.asList(list.split(",")).contains(feature);
+    }
+
+    // Список features из баннера "host::features=a,b"
+    private static String bannerFeatures(String banner) {
+        int start = banner.indexOf("features=");
+        if (start < 0) {
+            return "";
+        }
+        String list = banner.substring(start + "features=".length());
+        int end = list.indexOf(';');
+        return end < 0 ? list : list.substring(0, end);
+    }
+
+    private static String cString(byte[] data) {
+        int length = data.length;
+        while (length > 0 && data[length - 1] == 0) {
+            length--;
+        }
+        return new String(data, 0, length, StandardCharsets.UTF_8);
+    }
+
+    private static int checksum(byte[] data) {
+        int sum = 0;
+        for (byte b : data) {
+            sum += b & 0xFF;
+        }
+        return sum;
+    }
+
+    private static ByteBuffer syncBuffer(int size) {
+        return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static void expectSync(int id, int expected) throws IOException {
+        if (id != expected) {
+            throw new IOException("Unexpected sync packet " + Integer.toHexString(id));
+        }
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] chunk = new byte[8192];
+        int n;
+        while ((n = in.read(chunk)) >= 0) {
+            out.write(chunk, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    private static int readIntLE(DataInputStream in) throws IOException {
+        return Integer.reverseBytes(in.readInt());
+    }
+
+    private static byte[] intLE(int value) {
+        return ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(value).array();
+    }
+
+    private static void closeQuietly(AutoCloseable closeable) {
+        try {
+            closeable.close();
+        } catch (Exception e) {
+            // Игнорируем
+        }
+    }
+}
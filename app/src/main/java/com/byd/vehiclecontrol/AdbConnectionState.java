@@ -0,0 +1,113 @@
+package com.byd.vehiclecontrol;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Состояние соединения AdbShellHelper: атомарные переходы и журнал последних переходов с временем.
+ * Читается без блокировки, переход и его запись в журнал выполняются вместе.
+ * Listener узнает о переходах в том же порядке, в каком они произошли.
+ */
+final class AdbConnectionState {
+    static final int DISCONNECTED = 0;
+    static final int CONNECTING = 1;
+    static final int CONNECTED = 2;
+    static final int FAILED = 3;
+    private static final String[] NAMES = {"DISCONNECTED", "CONNECTING", "CONNECTED", "FAILED"};
+
+    private static final int HISTORY_SIZE = 32;
+
+    static final class Transition {
+        final int from;
+        final int to;
+        final long timeMillis;
+        final String reason;
+
+        Transition(int from, int to, long timeMillis, String reason) {
+            this.from = from;
+            this.to = to;
+            this.timeMillis = timeMillis;
+            this.reason = reason;
+        }
+
+        @Override
+        public String toString() {
+            return new SimpleDateFormat("HH:mm:ss.SSS", Locale.US).format(new Date(timeMillis))
+                    + ' ' + name(from) + " -> " + name(to) + (reason == null ? "" : " (" + reason + ')');
+        }
+    }
+
+    interface Listener {
+        // Вызывается под блокировкой состояния: без долгих операций и без вызовов AdbConnectionState
+        void onTransition(int from, int to);
+    }
+
+    private final AtomicInteger state = new AtomicInteger(DISCONNECTED);
+    private final ArrayDeque<Transition> history = new ArrayDeque<>(HISTORY_SIZE);
+    private volatile Listener listener;
+
+    int get() {
+        return state.get();
+    }
+
+    void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Переход from -> to. Возвращает false, если состояние уже не from (его сменил другой поток).
+     */
+    synchronized boolean transition(int from, int to, String reason) {
+        if (!state.compareAndSet(from, to)) {
+            return false;
+        }
+        record(from, to, reason);
+        return true;
+    }
+
+    /**
+     * Переход в to из любого состояния. Возвращает прежнее состояние.
+     */
+    synchronized int moveTo(int to, String reason) {
+        int from = state.getAndSet(to);
+        if (from != to) {
+            record(from, to, reason);
+        }
+        return from;
+    }
+
+    // Последние переходы, старые первыми
+    synchronized List<Transition> getHistory() {
+        return new ArrayList<>(history);
+    }
+
+    static String name(int state) {
+        return NAMES[state];
+    }
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder out = new StringBuilder(name(state.get()));
+        for (Transition transition : history) {
+            out.append('\n').append(transition);
+        }
+        return out.toString();
+    }
+
+    private void record(int from, int to, String reason) {
+        if (history.size() == HISTORY_SIZE) {
+            history.removeFirst();
+        }
+        history.addLast(new Transition(from, to, System.currentTimeMillis(), reason));
+
+        Listener current = listener;
+        if (current != null) {
+            current.onTransition(from, to);
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.byd.vehiclecontrol;
 
 import android.content.Context;
+import android.os.SystemClock;
 import android.util.Base64;
 import android.util.Log;
 import android.widget.Toast;
@@ -11,22 +12,95 @@ import com.tananaev.adblib.AdbCrypto;
 import com.tananaev.adblib.AdbStream;
 
 import java.io.File;
-import java.net.ConnectException;
+import java.io.IOException;
 import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class AdbShellHelper {
     private static final String TAG = "AdbShellHelper";
     private static final String HOST = "127.0.0.1";  // IP adb over TCP
     private static final int PORT = 5555;
-
-    private static AdbCrypto crypto;
-    private static AdbConnection connection;
-    private static boolean isConnected = false;
-    private static Context appContext;
+    private static final int TCP_CONNECT_TIMEOUT_MS = AdbEndpointProbe.DEFAULT_CONNECT_TIMEOUT_MS;
+
+    // Все операции идут через один ограниченный пул: нажатия кнопок и автозапуск не плодят потоки,
+    // лишние задачи отклоняются, а не копятся
+    private static final int EXECUTOR_THREADS = 2;
+    private static final int EXECUTOR_QUEUE_CAPACITY = 16;
+
+    // Дедлайны операций: по истечении future завершается TimeoutException, поток ADB закрывается
+    public static final long CONNECT_TIMEOUT_MS = 20_000;
+    public static final long COMMAND_TIMEOUT_MS = 10_000;
+    public static final long SESSION_TIMEOUT_MS = 30_000;
+    public static final long APP_PROCESS_TIMEOUT_MS = 30_000;
+    // От порождения app_process до регистрации его binder (сигнал готовности)
+    public static final long APP_PROCESS_READY_TIMEOUT_MS = 10_000;
+
+    // Потолки ожидания вывода: команда завершается по закрытию потока, эти значения лишь ограничивают зависшие
+    private static final long COMMAND_OUTPUT_CEILING_MS = 5000;
+    private static final long LAUNCH_OUTPUT_CEILING_MS = 3000;
+    private static final long STATUS_OUTPUT_CEILING_MS = 2000;
+
+    // Вывод app_process уходит в файл: shell сразу завершается и закрывает поток, не дожидаясь фонового процесса
+    private static final String APP_PROCESS_LOG = "/data/local/tmp/vehiclecontrol_app_process.log";
+
+    private static final AdbExecutor executor =
+            new AdbExecutor("adb-shell", EXECUTOR_THREADS, EXECUTOR_QUEUE_CAPACITY);
+
+    // Подключение и отключение выполняются строго по одному
+    private static final Object connectionLock = new Object();
+
+    // Состояние соединения и текущая попытка подключения: все вызывающие присоединяются к ней,
+    // а не открывают свои сокеты к 5555
+    private static final AdbConnectionState state = new AdbConnectionState();
+    private static final Object attemptLock = new Object();
+    private static CompletableFuture<Boolean> connectAttempt;
+
+    // Фоновая проверка порта нужна только без соединения: открытое соединение само говорит, что adbd доступен,
+    // а каждая пробная проверка - лишний полуоткрытый транспорт в adbd
+    private static final Object refreshLock = new Object();
+    private static boolean reachabilityRefresh = false;
+
+    // Постоянный shell для команд; пересоздается, если его поток закрылся или сменилось соединение
+    private static final Object sessionLock = new Object();
+    private static AdbShellSession shellSession;
+
+    // Ключи ADB разбираются (или генерируются) один раз за жизнь процесса, в отдельном потоке:
+    // генерация RSA 2048 на ГУ занимает секунды и не должна занимать поток пула
+    private static final Object keysLock = new Object();
+    private static CompletableFuture<AdbCrypto> keys;
+    private static volatile boolean keysJustGenerated = false;
+
+    private static volatile AdbConnection connection;
+    private static volatile Context appContext;
     private static final String APP_PROCESS_CLASS = "com.byd.vehiclecontrol.VoiceAssistantProcess";
     private static Process appProcess = null;
-    private static boolean isAppProcessRunning = false;
+    private static volatile boolean isAppProcessRunning = false;
+    private static volatile long lastAppProcessReadyMs = -1;
+
+    static {
+        state.setListener((from, to) -> updateReachabilityRefresh());
+
+        // Регистрация и смерть app_process приходят через его binder - флаг обновляется без ADB
+        AppProcessTracker.addListener(new AppProcessTracker.Listener() {
+            @Override
+            public void onAppProcessStarted(int pid) {
+                isAppProcessRunning = true;
+            }
+
+            @Override
+            public void onAppProcessDied(int pid) {
+                isAppProcessRunning = false;
+            }
+        });
+    }
 
     public interface ConnectionCallback {
         void onConnected();
@@ -41,42 +115,123 @@ public class AdbShellHelper {
     }
 
     public static boolean isConnected() {
-        return isConnected && connection != null;
+        return state.get() == AdbConnectionState.CONNECTED && connection != null;
+    }
+
+    // Текущее состояние: одна из констант AdbConnectionState
+    public static int getConnectionState() {
+        return state.get();
+    }
+
+    // Задачи, ожидающие свободного потока
+    public static int getQueueDepth() {
+        return executor.getQueueDepth();
     }
 
     // Автоматическая проверка и подключение при запуске
-    public static void autoConnectOnStartup(Context context) {
+    public static CompletableFuture<Boolean> autoConnectOnStartup(Context context) {
         appContext = context.getApplicationContext();
 
-        new Thread(() -> {
-            try {
-                // Проверяем доступность ADB через TCP
-                if (isAdbTcpEnabled()) {
-                    // Если TCP доступен, пытаемся подключиться автоматически
-                    Log.d(TAG, "ADB TCP доступен, пытаемся автоподключение...");
-                    connectInternal(false); // false = не показывать Toast об ошибках TCP
-                } else {
-                    Log.d(TAG, "ADB TCP недоступен при запуске");
-                    if (connectionCallback != null) {
-                        connectionCallback.onError("ADB TCP не включен");
-                    }
-                }
-            } catch (Exception e) {
-                Log.e(TAG, "Ошибка при автоподключении: " + e.getMessage());
+        // Свежий отрицательный результат фоновой проверки - не тратим попытку на закрытый порт
+        if (AdbEndpointProbe.shared().getCachedState(HOST, PORT) == AdbEndpointProbe.UNREACHABLE) {
+            Log.d(TAG, "ADB TCP недоступен при запуске");
+            if (connectionCallback != null) {
+                connectionCallback.onError("ADB TCP не включен");
+            }
+            return CompletableFuture.completedFuture(false);
+        }
+        // Иначе доступность TCP проверяется самой попыткой; без Toast об ошибках TCP
+        return connectShared(false);
+    }
+
+    /**
+     * Фоновая проверка порта adbd: по ней автоподключение сразу знает, открыт ли порт
+     */
+    public static void startReachabilityRefresh() {
+        synchronized (refreshLock) {
+            reachabilityRefresh = true;
+        }
+        updateReachabilityRefresh();
+    }
+
+    // CONNECTED - проверка на паузе, DISCONNECTED/FAILED - снова идет; CONNECTING ничего не меняет.
+    // Состояние читается под refreshLock: последний вызов всегда видит последний переход
+    private static void updateReachabilityRefresh() {
+        synchronized (refreshLock) {
+            if (!reachabilityRefresh) {
+                return;
             }
-        }).start();
+            int current = state.get();
+            if (current == AdbConnectionState.CONNECTED) {
+                AdbEndpointProbe.shared().stopRefresh(HOST, PORT);
+            } else if (current != AdbConnectionState.CONNECTING) {
+                AdbEndpointProbe.shared().startRefresh(HOST, PORT, AdbEndpointProbe.DEFAULT_REFRESH_INTERVAL_MS);
+            }
+        }
     }
 
-    public static void connect(Context context) {
+    public static CompletableFuture<Boolean> connect(Context context) {
         appContext = context.getApplicationContext();
-        connectInternal(true); // true = показывать Toast об ошибках TCP
+        return connectShared(true); // true = показывать Toast об ошибках TCP
     }
 
-    private static void connectInternal(boolean showTcpErrorToast) {
-        new Thread(() -> {
+    /**
+     * Подключение с одной попыткой на всех: при живом соединении сразу true, во время подключения -
+     * результат текущей попытки. Отмена возвращенного future не отменяет общую попытку.
+     */
+    private static CompletableFuture<Boolean> connectShared(boolean showTcpErrorToast) {
+        synchronized (attemptLock) {
+            if (isConnected()) {
+                return CompletableFuture.completedFuture(true);
+            }
+            if (connectAttempt == null) {
+                state.moveTo(AdbConnectionState.CONNECTING, showTcpErrorToast ? "connect" : "auto connect");
+                CompletableFuture<Boolean> attempt = executor.submit(
+                        cancellation -> connectBlocking(showTcpErrorToast), CONNECT_TIMEOUT_MS);
+                connectAttempt = attempt;
+                attempt.whenComplete((connected, error) -> {
+                    synchronized (attemptLock) {
+                        if (connectAttempt == attempt) {
+                            connectAttempt = null;
+                        }
+                    }
+                    // Таймаут, отклонение пулом или отмена: попытка не дошла до своего перехода
+                    if (error != null) {
+                        state.transition(AdbConnectionState.CONNECTING, AdbConnectionState.FAILED, error.toString());
+                    }
+                });
+            } else {
+                Log.d(TAG, "Подключение уже идет, ждем его результат");
+            }
+            return connectAttempt.thenApply(connected -> connected);
+        }
+    }
+
+    // Подключение в текущем потоке пула; вызывается только из connectShared
+    private static boolean connectBlocking(boolean showTcpErrorToast) {
+        synchronized (connectionLock) {
+            // Все, что открыто этой попыткой и не опубликовано, закрывается в finally:
+            // таймаут пула и cancelAll() прерывают рукопожатие, и без этого утекали бы сокет и поток adblib
+            Socket socket = null;
+            AdbConnection newConnection = null;
+            boolean published = false;
             try {
-                // Проверяем доступность ADB через TCP
-                if (!isAdbTcpEnabled()) {
+                // Соединение, потерянное без disconnect(), закрываем перед новым
+                if (connection != null) {
+                    closeShellSession();
+                    connection.close();
+                    connection = null;
+                }
+
+                // Обычно ключи уже готовы: их начинает готовить VehicleApplication.onCreate
+                AdbCrypto crypto = awaitKeys();
+
+                // Один TCP connect с таймаутом: он же проверка доступности и сокет для adblib
+                try {
+                    socket = AdbEndpointProbe.shared().connect(HOST, PORT, TCP_CONNECT_TIMEOUT_MS);
+                } catch (IOException e) {
+                    Log.d(TAG, "ADB TCP порт недоступен: " + e.getMessage());
+                    state.transition(AdbConnectionState.CONNECTING, AdbConnectionState.FAILED, "ADB TCP не включен");
                     if (showTcpErrorToast) {
                         runOnUiThread(() -> {
                             Toast.makeText(appContext,
@@ -88,38 +243,31 @@ public class AdbShellHelper {
                     if (connectionCallback != null) {
                         connectionCallback.onError("ADB TCP не включен");
                     }
-                    return;
+                    return false;
                 }
 
-                AdbBase64 base64 = data -> Base64.encodeToString(data, Base64.NO_WRAP);
-                File privKey = new File(appContext.getFilesDir(), "adbkey");
-                File pubKey = new File(appContext.getFilesDir(), "adbkey.pub");
-
-                if (privKey.exists() && pubKey.exists()) {
-                    crypto = AdbCrypto.loadAdbKeyPair(base64, privKey, pubKey);
-                    Log.d(TAG, "ADB ключи загружены");
-                } else {
-                    crypto = AdbCrypto.generateAdbKeyPair(base64);
-                    crypto.saveAdbKeyPair(privKey, pubKey);
-                    Log.d(TAG, "ADB ключи созданы. Нужно авторизовать устройство");
-
-                    if (showTcpErrorToast) { // Показываем Toast только при ручном подключении
-                        runOnUiThread(() -> {
-                            Toast.makeText(appContext,
-                                    "Первое подключение: разрешите отладку в диалоге на экране",
-                                    Toast.LENGTH_LONG).show();
-                        });
-                    }
+                if (keysJustGenerated && showTcpErrorToast) { // Показываем Toast только при ручном подключении
+                    runOnUiThread(() -> {
+                        Toast.makeText(appContext,
+                                "Первое подключение: разрешите отладку в диалоге на экране",
+                                Toast.LENGTH_LONG).show();
+                    });
                 }
 
-                Socket socket = new Socket(HOST, PORT);
-                connection = AdbConnection.create(socket, crypto);
+                newConnection = AdbConnection.create(socket, crypto);
 
                 // Подключаемся с таймаутом
-                boolean connected = connection.connect(10, TimeUnit.SECONDS, false);
+                boolean connected = newConnection.connect(10, TimeUnit.SECONDS, false);
 
                 if (connected) {
-                    isConnected = true;
+                    // disconnect() во время рукопожатия побеждает: соединение не публикуем
+                    if (!state.transition(AdbConnectionState.CONNECTING, AdbConnectionState.CONNECTED, "handshake")) {
+                        Log.d(TAG, "Подключение отменено: " + AdbConnectionState.name(state.get()));
+                        return false;
+                    }
+                    connection = newConnection;
+                    published = true;
+                    keysJustGenerated = false;
                     Log.d(TAG, "Соединение с ADB установлено");
 
                     if (showTcpErrorToast) { // Показываем Toast только при ручном подключении
@@ -131,24 +279,13 @@ public class AdbShellHelper {
                     if (connectionCallback != null) {
                         connectionCallback.onConnected();
                     }
+                    return true;
                 } else {
                     throw new Exception("Таймаут подключения к ADB");
                 }
 
-            } catch (ConnectException e) {
-                Log.e(TAG, "Не удается подключиться к ADB: " + e.getMessage());
-                if (showTcpErrorToast) { // Показываем Toast только при ручном подключении
-                    runOnUiThread(() -> {
-                        Toast.makeText(appContext,
-                                "Включите отладку по Wi-Fi и перезапустите ADB:\n" +
-                                        "adb tcpip 5555",
-                                Toast.LENGTH_LONG).show();
-                    });
-                }
-                if (connectionCallback != null) {
-                    connectionCallback.onError("Нет подключения к ADB TCP");
-                }
             } catch (Exception e) {
+                state.transition(AdbConnectionState.CONNECTING, AdbConnectionState.FAILED, e.toString());
                 Log.e(TAG, "Ошибка при подключении: " + Log.getStackTraceString(e));
                 if (showTcpErrorToast) { // Показываем Toast только при ручном подключении
                     runOnUiThread(() -> {
@@ -158,151 +295,220 @@ public class AdbShellHelper {
                 if (connectionCallback != null) {
                     connectionCallback.onError(e.getMessage());
                 }
-                isConnected = false;
+                return false;
+            } finally {
+                if (!published) {
+                    closeQuietly(newConnection, socket);
+                }
             }
-        }).start();
+        }
     }
 
-    public static void disconnect() {
-        new Thread(() -> {
-            try {
-                if (connection != null) {
-                    connection.close();
-                    connection = null;
-                }
-                isConnected = false;
-                Log.d(TAG, "ADB соединение закрыто");
-
-                if (connectionCallback != null) {
-                    connectionCallback.onDisconnected();
-                }
-
-                runOnUiThread(() -> {
-                    Toast.makeText(appContext, "ADB отключено", Toast.LENGTH_SHORT).show();
-                });
-
-            } catch (Exception e) {
-                Log.e(TAG, "Ошибка при отключении: " + Log.getStackTraceString(e));
+    /**
+     * Начинает загрузку ключей ADB в фоне, а при первом запуске - их генерацию.
+     * Повторные вызовы возвращают тот же future; после ошибки следующий вызов пробует снова.
+     */
+    public static CompletableFuture<AdbCrypto> prepareKeys(Context context) {
+        Context applicationContext = context.getApplicationContext();
+        synchronized (keysLock) {
+            if (keys == null || keys.isCompletedExceptionally()) {
+                CompletableFuture<AdbCrypto> future = new CompletableFuture<>();
+                Thread thread = new Thread(() -> {
+                    try {
+                        future.complete(loadOrGenerateKeys(applicationContext));
+                    } catch (Exception e) {
+                        Log.e(TAG, "Ошибка подготовки ADB ключей: " + Log.getStackTraceString(e));
+                        future.completeExceptionally(e);
+                    }
+                }, "adb-keys");
+                thread.setDaemon(true);
+                thread.start();
+                keys = future;
             }
-        }).start();
+            return keys;
+        }
     }
 
-    // Проверяем доступность ADB TCP порта
-    private static boolean isAdbTcpEnabled() {
+    // Ключи для подключения: ждет фоновую подготовку, если она еще идет
+    private static AdbCrypto awaitKeys() throws Exception {
         try {
-            Socket testSocket = new Socket();
-            testSocket.connect(new java.net.InetSocketAddress(HOST, PORT), 3000);
-            testSocket.close();
-            return true;
-        } catch (Exception e) {
-            Log.d(TAG, "ADB TCP порт недоступен: " + e.getMessage());
-            return false;
+            return prepareKeys(appContext).get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
         }
     }
 
-    // Одноразовая команда с проверкой подключения
-    public static void runSingleCommand(String command) {
-        if (!isConnected()) {
-            runOnUiThread(() -> {
-                Toast.makeText(appContext, "Сначала подключитесь к ADB", Toast.LENGTH_SHORT).show();
-            });
-            return;
-        }
-
-        new Thread(() -> {
-            try {
-                AdbStream stream = connection.open("shell:" + command);
-                StringBuilder result = new StringBuilder();
+    private static AdbCrypto loadOrGenerateKeys(Context context) throws Exception {
+        AdbBase64 base64 = data -> Base64.encodeToString(data, Base64.NO_WRAP);
+        File privKey = new File(context.getFilesDir(), "adbkey");
+        File pubKey = new File(context.getFilesDir(), "adbkey.pub");
 
-                // Читаем ответ с таймаутом
-                long startTime = System.currentTimeMillis();
-                while (!stream.isClosed() && (System.currentTimeMillis() - startTime) < 5000) {
-                    try {
-                        byte[] data = stream.read();
-                        if (data != null) {
-                            result.append(new String(data));
-                        }
-                    } catch (Exception e) {
-                        break;
-                    }
-                }
+        if (privKey.exists() && pubKey.exists()) {
+            AdbCrypto crypto = AdbCrypto.loadAdbKeyPair(base64, privKey, pubKey);
+            Log.d(TAG, "ADB ключи загружены");
+            return crypto;
+        }
 
-                Log.d(TAG, "Команда: " + command);
-                Log.d(TAG, "Результат: " + result.toString());
+        long start = SystemClock.elapsedRealtime();
+        AdbCrypto crypto = AdbCrypto.generateAdbKeyPair(base64);
+        crypto.saveAdbKeyPair(privKey, pubKey);
+        keysJustGenerated = true;
+        Log.d(TAG, "ADB ключи созданы за " + (SystemClock.elapsedRealtime() - start)
+                + " мс. Нужно авторизовать устройство");
+        return crypto;
+    }
 
-                final String resultStr = result.toString();
-                runOnUiThread(() -> {
-                    if (resultStr.trim().isEmpty()) {
-                        Toast.makeText(appContext, "Команда выполнена: " + command, Toast.LENGTH_SHORT).show();
-                    } else {
-                        Toast.makeText(appContext, "Результат: " + resultStr.trim(), Toast.LENGTH_SHORT).show();
+    /**
+     * Отключение: сначала отменяются все операции в очереди и в работе (их потоки ADB закрываются),
+     * затем закрывается соединение
+     */
+    public static CompletableFuture<Void> disconnect() {
+        // Сначала состояние: идущая попытка подключения увидит это и не опубликует соединение
+        state.moveTo(AdbConnectionState.DISCONNECTED, "disconnect");
+        executor.cancelAll();
+
+        return executor.submit(cancellation -> {
+            synchronized (connectionLock) {
+                try {
+                    closeShellSession();
+                    if (connection != null) {
+                        connection.close();
+                        connection = null;
                     }
-                });
+                    Log.d(TAG, "ADB соединение закрыто");
 
-                stream.close();
-            } catch (Exception e) {
-                Log.e(TAG, "Ошибка при выполнении команды: " + Log.getStackTraceString(e));
-                runOnUiThread(() -> {
-                    Toast.makeText(appContext, "Ошибка выполнения команды: " + e.getMessage(), Toast.LENGTH_LONG).show();
-                });
-
-                // Если соединение потеряно, обновляем статус
-                if (e.getMessage() != null && e.getMessage().contains("Stream closed")) {
-                    isConnected = false;
                     if (connectionCallback != null) {
                         connectionCallback.onDisconnected();
                     }
+
+                    runOnUiThread(() -> {
+                        Toast.makeText(appContext, "ADB отключено", Toast.LENGTH_SHORT).show();
+                    });
+
+                } catch (Exception e) {
+                    Log.e(TAG, "Ошибка при отключении: " + Log.getStackTraceString(e));
                 }
             }
-        }).start();
+            return null;
+        }, CONNECT_TIMEOUT_MS);
     }
 
-    // Интерактивная сессия с проверкой подключения
-    public static void runInteractiveSession(String[] commands) {
+    // Одноразовая команда с проверкой подключения
+    public static CompletableFuture<String> runSingleCommand(String command) {
         if (!isConnected()) {
             runOnUiThread(() -> {
                 Toast.makeText(appContext, "Сначала подключитесь к ADB", Toast.LENGTH_SHORT).show();
             });
-            return;
+            return notConnected();
         }
 
-        new Thread(() -> {
-            try {
-                AdbStream stream = connection.open("shell:");
+        CompletableFuture<String> future = executor.submit(cancellation -> {
+            // Команда идет в уже запущенный sh: ни нового потока ADB, ни нового процесса на устройстве
+            AdbShellSession session = acquireShellSession();
+            cancellation.onCancel(session);
 
-                for (String cmd : commands) {
-                    stream.write(cmd + "\n");
-                    Log.d(TAG, "Отправлено: " + cmd);
+            final String resultStr = session.execute(command, COMMAND_OUTPUT_CEILING_MS).getStdout();
 
-                    Thread.sleep(500); // пауза между командами
+            Log.d(TAG, "Команда: " + command);
+            Log.d(TAG, "Результат: " + resultStr);
 
-                    try {
-                        byte[] response = stream.read();
-                        if (response != null) {
-                            Log.d(TAG, "Ответ: " + new String(response));
-                        }
-                    } catch (Exception e) {
-                        Log.w(TAG, "Не удалось прочитать ответ: " + e.getMessage());
-                    }
+            runOnUiThread(() -> {
+                if (resultStr.trim().isEmpty()) {
+                    Toast.makeText(appContext, "Команда выполнена: " + command, Toast.LENGTH_SHORT).show();
+                } else {
+                    Toast.makeText(appContext, "Результат: " + resultStr.trim(), Toast.LENGTH_SHORT).show();
                 }
+            });
+            return resultStr;
+        }, COMMAND_TIMEOUT_MS);
 
-                stream.close();
+        future.whenComplete((result, error) -> {
+            if (error == null || isCancellation(error)) {
+                return;
+            }
+            Log.e(TAG, "Ошибка при выполнении команды: " + Log.getStackTraceString(error));
+            runOnUiThread(() -> {
+                Toast.makeText(appContext, "Ошибка выполнения команды: " + error.getMessage(), Toast.LENGTH_LONG).show();
+            });
 
-                runOnUiThread(() -> {
-                    Toast.makeText(appContext, "Интерактивная сессия завершена", Toast.LENGTH_SHORT).show();
-                });
+            // Закрылся поток постоянного shell: это еще не потеря соединения
+            if (error.getMessage() != null && error.getMessage().contains("Stream closed")) {
+                onShellStreamClosed();
+            }
+        });
+        return future;
+    }
 
-            } catch (Exception e) {
-                Log.e(TAG, "Ошибка в интерактивной сессии: " + Log.getStackTraceString(e));
-                runOnUiThread(() -> {
-                    Toast.makeText(appContext, "Ошибка сессии: " + e.getMessage(), Toast.LENGTH_LONG).show();
-                });
+    /**
+     * sh постоянной сессии завершился (exit, kill) или соединение ADB оборвалось - по закрытому потоку
+     * это не различить. Пробуем открыть новый shell: получилось - сбой был на уровне сессии,
+     * нет - соединение мертво и помечается FAILED.
+     */
+    private static void onShellStreamClosed() {
+        executor.submit(cancellation -> {
+            acquireShellSession();
+            Log.d(TAG, "Постоянный shell пересоздан, соединение ADB живо");
+            return null;
+        }, COMMAND_TIMEOUT_MS).whenComplete((result, error) -> {
+            if (error == null || isCancellation(error)) {
+                return;
             }
-        }).start();
+            // Переполненная очередь пула ничего не говорит о соединении
+            if (!(error instanceof IOException || error instanceof TimeoutException)) {
+                Log.w(TAG, "Проверка соединения не выполнена: " + error);
+                return;
+            }
+            Log.w(TAG, "Не удалось открыть shell, соединение ADB потеряно: " + error);
+            if (state.transition(AdbConnectionState.CONNECTED, AdbConnectionState.FAILED, "connection lost")
+                    && connectionCallback != null) {
+                connectionCallback.onDisconnected();
+            }
+        });
+    }
+
+    // Интерактивная сессия с проверкой подключения
+    public static CompletableFuture<Void> runInteractiveSession(String[] commands) {
+        if (!isConnected()) {
+            runOnUiThread(() -> {
+                Toast.makeText(appContext, "Сначала подключитесь к ADB", Toast.LENGTH_SHORT).show();
+            });
+            return notConnected();
+        }
+
+        CompletableFuture<Void> future = executor.submit(cancellation -> {
+            AdbShellSession session = acquireShellSession();
+            cancellation.onCancel(session);
+
+            // Следующая команда уходит сразу по маркеру конца предыдущей, без пауз
+            for (String cmd : commands) {
+                Log.d(TAG, "Отправлено: " + cmd);
+                AdbShellResult response = session.execute(cmd, COMMAND_OUTPUT_CEILING_MS);
+                Log.d(TAG, "Ответ (" + response.getExitCode() + "): " + response.getStdout());
+            }
+
+            runOnUiThread(() -> {
+                Toast.makeText(appContext, "Интерактивная сессия завершена", Toast.LENGTH_SHORT).show();
+            });
+            return null;
+        }, SESSION_TIMEOUT_MS);
+
+        future.whenComplete((result, error) -> {
+            if (error == null || isCancellation(error)) {
+                return;
+            }
+            Log.e(TAG, "Ошибка в интерактивной сессии: " + Log.getStackTraceString(error));
+            runOnUiThread(() -> {
+                Toast.makeText(appContext, "Ошибка сессии: " + error.getMessage(), Toast.LENGTH_LONG).show();
+            });
+        });
+        return future;
     }
 
     // Проверка статуса подключения
     public static void checkConnectionStatus() {
+        Log.d(TAG, "Метрики ADB:\n" + AdbMetrics.global().snapshot());
+        Log.d(TAG, "app_process: готовность за " + lastAppProcessReadyMs + " мс");
+        Log.d(TAG, "Состояние соединения: " + state);
         runOnUiThread(() -> {
             if (isConnected()) {
                 Toast.makeText(appContext, "✅ ADB подключено", Toast.LENGTH_SHORT).show();
@@ -325,170 +531,310 @@ public class AdbShellHelper {
         }
     }
 
-    public static void startAppProcess(Context context) {
+    /**
+     * Запускает app_process. Future завершается PID процесса, как только тот зарегистрирует binder,
+     * или TimeoutException, если сигнала нет за APP_PROCESS_READY_TIMEOUT_MS после запуска.
+     */
+    public static CompletableFuture<Integer> startAppProcess(Context context) {
         if (!isConnected()) {
             runOnUiThread(() -> {
                 Toast.makeText(context, "Сначала подключитесь к ADB", Toast.LENGTH_SHORT).show();
             });
-            return;
+            return notConnected();
         }
 
-        new Thread(() -> {
-            try {
-                // Проверяем, что соединение все еще активно
-                if (connection == null) {
-                    Log.e(TAG, "Соединение с ADB потеряно, переподключаемся...");
-                    
-                    // Пытаемся переподключиться
-                    connect(context);
-                    Thread.sleep(1000); // Даем время на подключение
-                    
-                    if (!isConnected()) {
-                        runOnUiThread(() -> {
-                            Toast.makeText(context, "Не удалось подключиться к ADB", Toast.LENGTH_SHORT).show();
-                        });
-                        return;
-                    }
-                }
-                
-                // Получаем путь к APK файлу
-                String apkPath = context.getApplicationInfo().sourceDir;
-                Log.d(TAG, "APK Path: " + apkPath);
+        long launchStart = SystemClock.elapsedRealtime();
+        // Подписываемся до запуска: процесс может зарегистрироваться раньше, чем shell закроет поток
+        CompletableFuture<Integer> ready = AppProcessTracker.awaitRegistration();
 
-                // Получаем cache directory для рабочей директории
-                String cacheDir = "/data/data/" + context.getPackageName() + "/cache";
+        // Если соединение потеряно, переподключаемся через общую попытку, не занимая поток пула ожиданием
+        appContext = context.getApplicationContext();
+        CompletableFuture<Boolean> launch = connectShared(true).thenCompose(connected -> {
+            if (!connected) {
+                runOnUiThread(() -> {
+                    Toast.makeText(context, "Не удалось подключиться к ADB", Toast.LENGTH_SHORT).show();
+                });
+                return CompletableFuture.completedFuture(false);
+            }
+            return launchAppProcess(context);
+        });
+
+        launch.whenComplete((launched, error) -> {
+            if (error != null) {
+                // thenCompose оборачивает ошибку запуска; отмена должна остаться отменой
+                ready.completeExceptionally(error instanceof CompletionException && error.getCause() != null
+                        ? error.getCause() : error);
+            } else if (!launched) {
+                ready.cancel(false); // ADB недоступно, об этом уже сообщено
+            } else {
+                // Дедлайн отсчитывается от порождения процесса
+                ScheduledFuture<?> deadline = executor.schedule(() -> ready.completeExceptionally(
+                        new TimeoutException("app_process не сообщил о готовности за "
+                                + APP_PROCESS_READY_TIMEOUT_MS + " мс, см. " + APP_PROCESS_LOG)),
+                        APP_PROCESS_READY_TIMEOUT_MS);
+                ready.whenComplete((pid, readyError) -> deadline.cancel(false));
+            }
+        });
 
-                // Формируем команду app_process с правильными параметрами
-                // Используем CLASSPATH для надежной загрузки классов
-                String command = String.format(
-                        "CLASSPATH=%s app_process /system/bin %s &",
-                        apkPath,
-                        APP_PROCESS_CLASS
-                );
+        ready.whenComplete((pid, error) -> {
+            if (error == null) {
+                long readyMs = SystemClock.elapsedRealtime() - launchStart;
+                lastAppProcessReadyMs = readyMs;
+                Log.d(TAG, "app_process готов за " + readyMs + " мс, pid " + pid);
+                runOnUiThread(() -> {
+                    Toast.makeText(context, "app_process запущен (pid " + pid + ", " + readyMs + " мс)",
+                            Toast.LENGTH_SHORT).show();
+                });
+                return;
+            }
+            if (isCancellation(error)) {
+                launch.cancel(true);
+                return;
+            }
+            Log.e(TAG, "Ошибка запуска app_process: " + Log.getStackTraceString(error));
+            runOnUiThread(() -> {
+                Toast.makeText(context, "Ошибка запуска: " + error.getMessage(), Toast.LENGTH_LONG).show();
+            });
+        });
+        return ready;
+    }
 
-                Log.d(TAG, "Запуск app_process: " + command);
+    // Порождает app_process через ADB shell; готовность процесса ждет вызывающий
+    private static CompletableFuture<Boolean> launchAppProcess(Context context) {
+        return executor.submit(cancellation -> {
+            AdbConnection current = connection;
+            if (current == null) {
+                throw new IOException("ADB не подключено");
+            }
 
-                // Запускаем app_process через ADB shell
-                AdbStream stream = connection.open("shell:" + command);
+            // Получаем путь к APK файлу
+            String apkPath = context.getApplicationInfo().sourceDir;
+            Log.d(TAG, "APK Path: " + apkPath);
 
-                // Читаем начальный вывод
-                StringBuilder output = new StringBuilder();
-                long startTime = System.currentTimeMillis();
+            // Получаем cache directory для рабочей директории
+            String cacheDir = "/data/data/" + context.getPackageName() + "/cache";
 
-                while ((System.currentTimeMillis() - startTime) < 3000) {
-                    try {
-                        byte[] data = stream.read();
-                        if (data != null) {
-                            String response = new String(data);
-                            output.append(response);
-                            Log.d(TAG, "app_process output: " + response);
-                        }
-                    } catch (Exception e) {
-                        break;
-                    }
-                }
+            // Формируем команду app_process с правильными параметрами
+            // Используем CLASSPATH для надежной загрузки классов
+            String command = String.format(
+                    "CLASSPATH=%s app_process /system/bin %s > %s 2>&1 &",
+                    apkPath,
+                    APP_PROCESS_CLASS,
+                    APP_PROCESS_LOG
+            );
 
-                // Проверяем, запустился ли процесс
-                Thread.sleep(1000);
-                checkAppProcessStatus();
+            Log.d(TAG, "Запуск app_process: " + command);
 
-                runOnUiThread(() -> {
-                    Toast.makeText(context, "app_process запущен", Toast.LENGTH_SHORT).show();
-                });
+            // Запускаем app_process через ADB shell
+            AdbStream stream = current.open("shell:" + command);
+            cancellation.onCancel(stream);
 
-            } catch (Exception e) {
-                Log.e(TAG, "Ошибка запуска app_process: " + Log.getStackTraceString(e));
-                runOnUiThread(() -> {
-                    Toast.makeText(context, "Ошибка запуска: " + e.getMessage(), Toast.LENGTH_LONG).show();
-                });
+            // Поток закрывается, как только shell запустил процесс в фоне
+            String output = readUntilClosed(stream, LAUNCH_OUTPUT_CEILING_MS);
+            if (!output.trim().isEmpty()) {
+                Log.d(TAG, "app_process output: " + output);
             }
-        }).start();
+
+            // Готовность придет broadcast'ом с binder процесса - ни пауз, ни опроса ps
+            return true;
+        }, APP_PROCESS_TIMEOUT_MS);
+    }
+
+    // Время от запуска app_process до его сигнала готовности в последнем успешном запуске, -1 если не было
+    public static long getLastAppProcessReadyLatencyMs() {
+        return lastAppProcessReadyMs;
     }
 
     // Проверка статуса app_process
-    public static void checkAppProcessStatus() {
-        if (!isConnected()) {
-            return;
+    public static CompletableFuture<Boolean> checkAppProcessStatus() {
+        // Процесс зарегистрировал binder и он жив - ответ локальный, без ps через ADB
+        if (AppProcessTracker.isAlive()) {
+            int pid = AppProcessTracker.getPid();
+            isAppProcessRunning = true;
+            Log.d(TAG, "App process running (binder), pid " + pid);
+            runOnUiThread(() -> {
+                Toast.makeText(appContext, "✅ app_process запущен, pid " + pid, Toast.LENGTH_LONG).show();
+            });
+            return CompletableFuture.completedFuture(true);
         }
 
-        new Thread(() -> {
-            try {
-                // Проверяем активность соединения
-                if (connection == null) {
-                    Log.w(TAG, "Соединение неактивно при проверке статуса процесса");
-                    isAppProcessRunning = false;
-                    return;
-                }
-                
-                // Ищем наш процесс в списке запущенных процессов
-                // app_process запускается с CLASSPATH нашего APK, ищем по пути APK
-                AdbStream stream = connection.open("shell:ps -A | grep app_process");
+        // Binder не получен (например, процесс запущен до перезапуска приложения) - ищем через ps
+        if (!isConnected()) {
+            return CompletableFuture.completedFuture(false);
+        }
 
-                StringBuilder result = new StringBuilder();
-                long startTime = System.currentTimeMillis();
+        CompletableFuture<Boolean> future = executor.submit(AdbShellHelper::queryAppProcessStatus,
+                COMMAND_TIMEOUT_MS);
+        future.whenComplete((running, error) -> {
+            if (error != null && !isCancellation(error)) {
+                Log.e(TAG, "Ошибка проверки app_process: " + Log.getStackTraceString(error));
+            }
+        });
+        return future;
+    }
 
-                while ((System.currentTimeMillis() - startTime) < 2000) {
-                    try {
-                        byte[] data = stream.read();
-                        if (data != null) {
-                            result.append(new String(data));
-                        }
-                    } catch (Exception e) {
-                        break;
-                    }
-                }
+    // Проверка статуса в потоке текущей задачи
+    private static boolean queryAppProcessStatus(AdbExecutor.Cancellation cancellation) throws Exception {
+        // Проверяем активность соединения
+        if (connection == null) {
+            Log.w(TAG, "Соединение неактивно при проверке статуса процесса");
+            isAppProcessRunning = false;
+            return false;
+        }
 
-                stream.close();
+        // Ищем наш процесс в списке запущенных процессов
+        // app_process запускается с CLASSPATH нашего APK, ищем по пути APK
+        AdbStream stream = connection.open("shell:ps -A | grep app_process");
+        cancellation.onCancel(stream);
 
-                String processInfo = result.toString().trim();
-                isAppProcessRunning = !processInfo.isEmpty();
+        String processInfo = readUntilClosed(stream, STATUS_OUTPUT_CEILING_MS).trim();
+        isAppProcessRunning = !processInfo.isEmpty();
 
-                Log.d(TAG, "Process check result: " + processInfo);
-                Log.d(TAG, "App process running: " + isAppProcessRunning);
+        Log.d(TAG, "Process check result: " + processInfo);
+        Log.d(TAG, "App process running: " + isAppProcessRunning);
 
-                runOnUiThread(() -> {
-                    String message = isAppProcessRunning ?
-                            "✅ app_process запущен: " + processInfo :
-                            "❌ app_process не найден";
-                    Toast.makeText(appContext, message, Toast.LENGTH_LONG).show();
-                });
-
-            } catch (Exception e) {
-                Log.e(TAG, "Ошибка проверки app_process: " + Log.getStackTraceString(e));
-            }
-        }).start();
+        runOnUiThread(() -> {
+            String message = isAppProcessRunning ?
+                    "✅ app_process запущен: " + processInfo :
+                    "❌ app_process не найден";
+            Toast.makeText(appContext, message, Toast.LENGTH_LONG).show();
+        });
+        return isAppProcessRunning;
     }
 
     // Остановка app_process
-    public static void stopAppProcess() {
+    public static CompletableFuture<Void> stopAppProcess() {
         if (!isConnected()) {
-            return;
+            return notConnected();
         }
 
-        new Thread(() -> {
-            try {
-                // Убиваем процесс по имени класса
-                AdbStream stream = connection.open("shell:kill -9 $(ps -A | grep " + APP_PROCESS_CLASS + " | awk 'NR==1{print $2}')");
+        CompletableFuture<Void> future = executor.submit(cancellation -> {
+            // PID известен по регистрации процесса; поиск по ps - только если binder не получен
+            int pid = AppProcessTracker.getPid();
+            String command = pid != AppProcessTracker.NO_PID
+                    ? "kill -9 " + pid
+                    : "kill -9 $(ps -A | grep " + APP_PROCESS_CLASS + " | awk 'NR==1{print $2}')";
+            Log.d(TAG, "Остановка app_process: " + command);
 
-                Thread.sleep(500);
-                stream.close();
+            // Процесс работает от shell, поэтому kill идет через ADB, но в уже открытый sh
+            AdbShellSession session = acquireShellSession();
+            cancellation.onCancel(session);
+            session.execute(command, STATUS_OUTPUT_CEILING_MS);
 
-                isAppProcessRunning = false;
+            isAppProcessRunning = false;
 
-                runOnUiThread(() -> {
-                    Toast.makeText(appContext, "app_process остановлен", Toast.LENGTH_SHORT).show();
-                });
+            runOnUiThread(() -> {
+                Toast.makeText(appContext, "app_process остановлен", Toast.LENGTH_SHORT).show();
+            });
 
-                Log.d(TAG, "app_process остановлен");
+            Log.d(TAG, "app_process остановлен");
+            return null;
+        }, COMMAND_TIMEOUT_MS);
 
-            } catch (Exception e) {
-                Log.e(TAG, "Ошибка остановки app_process: " + Log.getStackTraceString(e));
+        future.whenComplete((result, error) -> {
+            if (error != null && !isCancellation(error)) {
+                Log.e(TAG, "Ошибка остановки app_process: " + Log.getStackTraceString(error));
             }
-        }).start();
+        });
+        return future;
     }
 
     // Проверка запущен ли app_process
     public static boolean isAppProcessRunning() {
-        return isAppProcessRunning;
+        return AppProcessTracker.isAlive() || isAppProcessRunning;
+    }
+
+    // Живой постоянный shell на текущем соединении (открывает новый, если прежний умер)
+    private static AdbShellSession acquireShellSession() throws IOException, InterruptedException {
+        synchronized (sessionLock) {
+            AdbConnection current = connection;
+            if (current == null) {
+                throw new IOException("ADB не подключено");
+            }
+            if (shellSession == null || !shellSession.isUsable(current)) {
+                if (shellSession != null) {
+                    Log.d(TAG, "Постоянный shell закрыт, открываем новый");
+                    shellSession.close();
+                }
+                shellSession = AdbShellSession.open(current, executor);
+            }
+            return shellSession;
+        }
+    }
+
+    private static void closeShellSession() {
+        synchronized (sessionLock) {
+            if (shellSession != null) {
+                shellSession.close();
+                shellSession = null;
+            }
+        }
+    }
+
+    /**
+     * Читает вывод, пока устройство не закроет поток (команда завершилась).
+     * ceilingMs - только потолок: по его истечении поток закрывается и возвращается прочитанное.
+     */
+    private static String readUntilClosed(AdbStream stream, long ceilingMs) throws InterruptedException {
+        AtomicBoolean hitCeiling = new AtomicBoolean();
+        ScheduledFuture<?> ceiling = executor.schedule(() -> {
+            hitCeiling.set(true);
+            closeQuietly(stream);
+        }, ceilingMs);
+
+        StringBuilder output = new StringBuilder();
+        try {
+            while (true) {
+                byte[] data;
+                try {
+                    data = stream.read(); // блокируется до данных или закрытия потока
+                } catch (IOException e) {
+                    break; // поток закрыт
+                }
+                if (data != null) {
+                    output.append(new String(data, StandardCharsets.UTF_8));
+                }
+            }
+        } finally {
+            ceiling.cancel(false);
+            closeQuietly(stream);
+        }
+
+        if (hitCeiling.get()) {
+            Log.w(TAG, "Поток не закрылся за " + ceilingMs + " мс, вывод обрезан");
+        }
+        return output.toString();
+    }
+
+    private static void closeQuietly(AdbStream stream) {
+        try {
+            stream.close();
+        } catch (IOException e) {
+            // Игнорируем ошибки при закрытии
+        }
+    }
+
+    // Закрывает неопубликованную попытку: соединение adblib (вместе с его сокетом и потоком) или голый сокет
+    private static void closeQuietly(AdbConnection newConnection, Socket socket) {
+        try {
+            if (newConnection != null) {
+                newConnection.close();
+            } else if (socket != null) {
+                socket.close();
+            }
+        } catch (IOException e) {
+            // Игнорируем ошибки при закрытии
+        }
+    }
+
+    private static <T> CompletableFuture<T> notConnected() {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(new IllegalStateException("ADB не подключено"));
+        return future;
+    }
+
+    // Отмена при отключении - не ошибка, о ней не сообщаем
+    private static boolean isCancellation(Throwable error) {
+        return error instanceof CancellationException;
     }
-}
\ No newline at end of file
+}
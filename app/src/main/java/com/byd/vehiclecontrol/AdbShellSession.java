@@ -0,0 +1,176 @@
+package com.byd.vehiclecontrol;
+
+import android.util.Log;
+
+import com.tananaev.adblib.AdbConnection;
+import com.tananaev.adblib.AdbStream;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Долгоживущий shell без PTY на соединении adblib: команды выполняются по очереди в одном процессе sh,
+ * конец вывода каждой команды отмечается маркером с ее кодом завершения.
+ * Так частые мелкие команды не открывают новый поток ADB и не порождают новый sh на устройстве.
+ *
+ * Команда выполняется в текущем shell ({ ... }), поэтому cd и переменные сохраняются между командами.
+ * stdin команды - /dev/null, чтобы она не съела маркер из потока.
+ */
+final class AdbShellSession implements AutoCloseable {
+    private static final String TAG = "AdbShellSession";
+
+    private final AdbConnection connection;
+    private final AdbStream stream;
+    private final AdbExecutor timer;
+    private final String marker;
+    private final byte[] markerBytes;
+    private long nextId = 1;
+    private volatile boolean closed = false;
+
+    // Вывод, принятый после маркера предыдущей команды (байты, чтобы не резать UTF-8 посередине символа)
+    private byte[] output = new byte[4096];
+    private int outputLength = 0;
+
+    private AdbShellSession(AdbConnection connection, AdbStream stream, AdbExecutor timer) {
+        this.connection = connection;
+        this.stream = stream;
+        this.timer = timer;
+
+        // Случайная часть маркера, чтобы он не совпал с выводом команды
+        byte[] random = new byte[8];
+        new SecureRandom().nextBytes(random);
+        StringBuilder token = new StringBuilder("__ADB_DONE_");
+        for (byte b : random) {
+            token.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        marker = token.append("__").toString();
+        markerBytes = marker.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Открывает shell:sh на соединении. timer нужен для потолка ожидания вывода команды.
+     */
+    static AdbShellSession open(AdbConnection connection, AdbExecutor timer) throws IOException, InterruptedException {
+        AdbStream stream = connection.open("shell:sh");
+        Log.d(TAG, "Постоянный shell открыт");
+        return new AdbShellSession(connection, stream, timer);
+    }
+
+    // Сессия открыта на этом соединении и ее поток жив
+    boolean isUsable(AdbConnection current) {
+        return !closed && connection == current && !stream.isClosed();
+    }
+
+    /**
+     * Выполняет команду и возвращает ее вывод (stdout и stderr вместе).
+     * Если маркер не пришел за timeoutMs, сессия закрывается: следующая команда откроет новую.
+     */
+    synchronized AdbShellResult execute(String command, long timeoutMs) throws IOException, InterruptedException {
+        if (closed) {
+            throw new IOException("Shell session closed");
+        }
+
+        long id = nextId++;
+        String script = "{ " + command + "\n} </dev/null 2>&1; echo \"" + marker + id + ":$?\"\n";
+
+        AtomicBoolean timedOut = new AtomicBoolean();
+        ScheduledFuture<?> ceiling = timer.schedule(() -> {
+            timedOut.set(true);
+            close();
+        }, timeoutMs);
+
+        try {
+            stream.write(script.getBytes(StandardCharsets.UTF_8));
+
+            while (true) {
+                AdbShellResult result = takeResult(id);
+                if (result != null) {
+                    return result;
+                }
+                byte[] data = stream.read(); // блокируется до данных или закрытия потока
+                if (data != null) {
+                    append(data);
+                }
+            }
+        } catch (IOException e) {
+            close();
+            if (timedOut.get()) {
+                throw new SocketTimeoutException("No output marker for " + timeoutMs + " ms: " + command);
+            }
+            throw e;
+        } catch (InterruptedException e) {
+            // Прерванную команду нельзя отделить от следующей - сессию не переиспользуем
+            close();
+            throw e;
+        } finally {
+            ceiling.cancel(false);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            stream.close();
+        } catch (IOException e) {
+            // Игнорируем ошибки при закрытии
+        }
+    }
+
+    private void append(byte[] data) {
+        if (outputLength + data.length > output.length) {
+            output = Arrays.copyOf(output, Math.max(output.length * 2, outputLength + data.length));
+        }
+        System.arraycopy(data, 0, output, outputLength, data.length);
+        outputLength += data.length;
+    }
+
+    // Результат команды id, если ее маркер уже принят целиком, иначе null
+    private AdbShellResult takeResult(long id) throws IOException {
+        int start = indexOf(markerBytes, 0);
+        if (start < 0) {
+            return null;
+        }
+        int end = indexOf(new byte[]{'\n'}, start);
+        if (end < 0) {
+            return null; // маркер пришел не полностью
+        }
+
+        String status = new String(output, start + markerBytes.length, end - start - markerBytes.length,
+                StandardCharsets.US_ASCII);
+        String text = new String(output, 0, start, StandardCharsets.UTF_8);
+        outputLength -= end + 1;
+        System.arraycopy(output, end + 1, output, 0, outputLength);
+
+        int colon = status.indexOf(':');
+        try {
+            if (colon < 0 || Long.parseLong(status.substring(0, colon)) != id) {
+                throw new IOException("Unexpected marker: " + status);
+            }
+            return new AdbShellResult(text, "", Integer.parseInt(status.substring(colon + 1).trim()));
+        } catch (NumberFormatException e) {
+            throw new IOException("Malformed marker: " + status);
+        }
+    }
+
+    private int indexOf(byte[] pattern, int from) {
+        outer:
+        for (int i = from; i <= outputLength - pattern.length; i++) {
+            for (int j = 0; j < pattern.length; j++) {
+                if (output[i + j] != pattern[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+}
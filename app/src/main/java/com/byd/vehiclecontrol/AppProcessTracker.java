@@ -0,0 +1,137 @@
+package com.byd.vehiclecontrol;
+
+import android.os.IBinder;
+import android.os.RemoteException;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Жизнь app_process по его CommunicationBinder. При регистрации процесс сообщает свой PID,
+ * на binder вешается DeathRecipient: статус читается локально, смерть процесса приходит сразу,
+ * без опроса ps через ADB. Регистрация служит и сигналом готовности для запуска процесса.
+ */
+final class AppProcessTracker {
+    private static final String TAG = "AppProcessTracker";
+
+    static final int NO_PID = -1;
+
+    interface Listener {
+        void onAppProcessStarted(int pid);
+        void onAppProcessDied(int pid);
+    }
+
+    private static final CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    // Запуски, ждущие регистрации следующего процесса
+    private static final List<CompletableFuture<Integer>> readyWaiters = new ArrayList<>();
+
+    private static IBinder binder;
+    private static IBinder.DeathRecipient deathRecipient;
+    private static int pid = NO_PID;
+
+    private AppProcessTracker() {
+    }
+
+    static void addListener(Listener listener) {
+        listeners.addIfAbsent(listener);
+    }
+
+    static void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Future с PID следующего зарегистрированного процесса. Подписываться нужно до запуска,
+     * иначе быстрая регистрация пройдет раньше подписки.
+     */
+    static CompletableFuture<Integer> awaitRegistration() {
+        CompletableFuture<Integer> ready = new CompletableFuture<>();
+        synchronized (AppProcessTracker.class) {
+            readyWaiters.add(ready);
+        }
+        // Отмененный или просроченный запуск больше не ждет
+        ready.whenComplete((pid, error) -> {
+            synchronized (AppProcessTracker.class) {
+                readyWaiters.remove(ready);
+            }
+        });
+        return ready;
+    }
+
+    /**
+     * Binder процесса получен. Возвращает false, если процесс умер раньше, чем мы подписались.
+     */
+    static boolean onRegistered(IBinder processBinder, int processPid) {
+        IBinder.DeathRecipient recipient = () -> onDied(processBinder);
+        List<CompletableFuture<Integer>> waiters;
+        synchronized (AppProcessTracker.class) {
+            unlinkLocked();
+            try {
+                processBinder.linkToDeath(recipient, 0);
+            } catch (RemoteException e) {
+                Log.w(TAG, "app_process умер до регистрации (pid " + processPid + ")");
+                return false;
+            }
+            binder = processBinder;
+            deathRecipient = recipient;
+            pid = processPid;
+            waiters = new ArrayList<>(readyWaiters);
+            readyWaiters.clear();
+        }
+
+        Log.d(TAG, "app_process зарегистрирован, pid " + processPid);
+        for (CompletableFuture<Integer> ready : waiters) {
+            ready.complete(processPid);
+        }
+        for (Listener listener : listeners) {
+            listener.onAppProcessStarted(processPid);
+        }
+        return true;
+    }
+
+    // Процесс жив, пока жив его binder
+    static synchronized boolean isAlive() {
+        return binder != null && binder.isBinderAlive();
+    }
+
+    // PID живого процесса или NO_PID
+    static synchronized int getPid() {
+        return isAlive() ? pid : NO_PID;
+    }
+
+    private static void onDied(IBinder deadBinder) {
+        int deadPid;
+        synchronized (AppProcessTracker.class) {
+            // Смерть прежнего процесса после регистрации нового не трогает новый
+            if (binder != deadBinder) {
+                return;
+            }
+            deadPid = pid;
+            binder = null;
+            deathRecipient = null;
+            pid = NO_PID;
+        }
+
+        if (VehicleApplication.sCommunicationBinder == deadBinder) {
+            VehicleApplication.sCommunicationBinder = null;
+        }
+
+        Log.w(TAG, "app_process завершился, pid " + deadPid);
+        for (Listener listener : listeners) {
+            listener.onAppProcessDied(deadPid);
+        }
+    }
+
+    private static void unlinkLocked() {
+        if (binder != null) {
+            binder.unlinkToDeath(deathRecipient, 0);
+            binder = null;
+            deathRecipient = null;
+            pid = NO_PID;
+        }
+    }
+}
@@ -29,6 +29,19 @@ public class MainActivity extends AppCompatActivity implements AdbShellHelper.Co
     private IVehicleControl vehicleControlService;
     private boolean isServiceBound = false;
     
+    // Запуск и смерть app_process приходят через его binder - обновляем статус сразу
+    private final AppProcessTracker.Listener appProcessListener = new AppProcessTracker.Listener() {
+        @Override
+        public void onAppProcessStarted(int pid) {
+            runOnUiThread(() -> updateAppProcessUI());
+        }
+
+        @Override
+        public void onAppProcessDied(int pid) {
+            runOnUiThread(() -> updateAppProcessUI());
+        }
+    };
+
     private ServiceConnection serviceConnection = new ServiceConnection() {
         @Override
         public void onServiceConnected(ComponentName name, IBinder service) {
@@ -57,6 +70,7 @@ public class MainActivity extends AppCompatActivity implements AdbShellHelper.Co
 
         // Устанавливаем callback для получения уведомлений о статусе соединения
         AdbShellHelper.setConnectionCallback(this);
+        AppProcessTracker.addListener(appProcessListener);
 
         // Привязываемся к VehicleBinderService
         bindToVehicleService();
@@ -142,12 +156,10 @@ public class MainActivity extends AppCompatActivity implements AdbShellHelper.Co
         btnStartAppProcess.setOnClickListener(v -> {
             btnStartAppProcess.setEnabled(false);
             btnStartAppProcess.setText("Запуск...");
-            AdbShellHelper.startAppProcess(this);
-
-            // Обновляем UI через 2 секунды
-            new android.os.Handler().postDelayed(() -> {
-                updateAppProcessUI();
-            }, 2000);
+            // UI обновляется по сигналу готовности процесса или по ошибке запуска, без задержек
+            AdbShellHelper.startAppProcess(this).whenComplete((pid, error) -> {
+                runOnUiThread(this::updateAppProcessUI);
+            });
         });
 
         btnStopAppProcess.setOnClickListener(v -> {
@@ -247,6 +259,7 @@ public class MainActivity extends AppCompatActivity implements AdbShellHelper.Co
     @Override
     protected void onDestroy() {
         super.onDestroy();
+        AppProcessTracker.removeListener(appProcessListener);
         
         // Отвязываемся от сервиса
         if (isServiceBound) {
@@ -21,15 +21,19 @@ public class VehicleApplication extends Application {
     private final BroadcastReceiver binderReceiver = new BroadcastReceiver() {
         @Override
         public void onReceive(Context context, Intent intent) {
-            if ("com.byd.vehiclecontrol.ACTION_COMMUNICATION_PROCESS_STARTED".equals(intent.getAction())) {
+            if (CommunicationBinder.ACTION_PROCESS_STARTED.equals(intent.getAction())) {
                 Bundle extras = intent.getExtras();
                 if (extras != null) {
-                    communicationBinder = extras.getBinder("COMMUNICATION_BINDER");
+                    communicationBinder = extras.getBinder(CommunicationBinder.EXTRA_BINDER);
                     if (communicationBinder != null) {
                         // Устанавливаем статическое поле для глобального доступа
                         sCommunicationBinder = communicationBinder;
                         Log.d(TAG, "Received communication binder, set static field");
 
+                        // Дальше жизнь процесса отслеживается через linkToDeath, без ps через ADB
+                        AppProcessTracker.onRegistered(communicationBinder,
+                                extras.getInt(CommunicationBinder.EXTRA_PID, AppProcessTracker.NO_PID));
+
                         // Уведомляем процесс что binder получен
                         CommunicationBinder.Companion.notifyReceived(communicationBinder);
                     } else {
@@ -45,8 +49,17 @@ public class VehicleApplication extends Application {
         super.onCreate();
         INSTANCE = this;
 
+        // Журнал модуля :adb направляем в logcat
+        AdbLog.setSink((priority, tag, message, error) -> Log.println(priority, tag,
+                error == null ? message : message + '\n' + Log.getStackTraceString(error)));
+
+        // Ключи ADB готовим сразу в фоне: первое подключение (ручное или при загрузке) не ждет генерацию RSA
+        AdbShellHelper.prepareKeys(this);
+        // Доступность порта adbd держим в кэше фоновой проверкой: автоподключение не ждет пробный сокет
+        AdbShellHelper.startReachabilityRefresh();
+
         // Регистрируем receiver для получения binder
-        IntentFilter filter = new IntentFilter("com.byd.vehiclecontrol.ACTION_COMMUNICATION_PROCESS_STARTED");
+        IntentFilter filter = new IntentFilter(CommunicationBinder.ACTION_PROCESS_STARTED);
         registerReceiver(binderReceiver, filter);
 
         Log.d(TAG, "Application created, receiver registered");
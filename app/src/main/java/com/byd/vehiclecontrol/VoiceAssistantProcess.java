@@ -3,6 +3,7 @@ package com.byd.vehiclecontrol;
 import android.app.ActivityThread;
 import android.app.Application;
 import android.content.Intent;
+import android.os.Bundle;
 import android.os.Handler;
 import android.os.IBinder;
 import android.os.Looper;
@@ -16,7 +17,6 @@ import com.byd.vehiclecontrol.shell.CommunicationProcess;
  */
 public class VoiceAssistantProcess {
     private static final String TAG = "VoiceAssistantProcess";
-    private static final String ACTION_COMMUNICATION_PROCESS_STARTED = "ACTION_voice_assistant_process_started";
     private CommunicationBinder communicationBinder;
     private CommunicationProcess communicationProcess;
 
@@ -53,10 +53,8 @@ public class VoiceAssistantProcess {
         try {
             System.out.println("Инициализация VoiceAssistantProcess...");
 
-            // Сначала попробуем самый простой тест
             System.out.println("Шаг 1: Базовая проверка...");
-            Thread.sleep(100);
-            
+
             System.out.println("Шаг 2: Инициализация Android runtime...");
             // Подготавливаем Android runtime среду
             initAndroidRuntime();
@@ -70,7 +68,7 @@ public class VoiceAssistantProcess {
             execute(args);
 
             System.out.println("Шаг 5: Отправка broadcast...");
-            // Отправляем broadcast что процесс запущен
+            // Сигнал готовности: broadcast с binder и PID, по нему завершается запуск в приложении
             sendBroadcast();
 
             System.out.println("Шаг 6: Тестирование системных сервисов...");
@@ -232,10 +230,18 @@ public class VoiceAssistantProcess {
                 return;
             }
 
-            Intent intent = new Intent(ACTION_COMMUNICATION_PROCESS_STARTED);
+            Intent intent = new Intent(CommunicationBinder.ACTION_PROCESS_STARTED);
             intent.setPackage("com.byd.vehiclecontrol"); // Наш package name
 
-            Log.d(TAG, "Отправляем broadcast: " + ACTION_COMMUNICATION_PROCESS_STARTED);
+            // Binder и PID: приложение следит за жизнью процесса через linkToDeath и останавливает его по PID
+            Bundle bundle = new Bundle();
+            if (communicationBinder != null) {
+                bundle.putBinder(CommunicationBinder.EXTRA_BINDER, communicationBinder);
+            }
+            bundle.putInt(CommunicationBinder.EXTRA_PID, android.os.Process.myPid());
+            intent.putExtras(bundle);
+
+            Log.d(TAG, "Отправляем broadcast: " + CommunicationBinder.ACTION_PROCESS_STARTED);
             application.sendBroadcast(intent);
 
             // Планируем проверку через 3 секунды (как в оригинале)
@@ -16,6 +16,11 @@ public class CommunicationBinder extends Binder {
     private static final int TRANSACTION_START_VEHICLE = 21;
     private static final int TRANSACTION_NOTIFY_RECEIVED = 7;
 
+    // Broadcast регистрации shell процесса: binder и PID процесса для отслеживания его жизни
+    public static final String ACTION_PROCESS_STARTED = "com.byd.vehiclecontrol.ACTION_COMMUNICATION_PROCESS_STARTED";
+    public static final String EXTRA_BINDER = "COMMUNICATION_BINDER";
+    public static final String EXTRA_PID = "COMMUNICATION_PID";
+
     private final CommunicationProcess process;
     private static boolean binderReceived = false;
     
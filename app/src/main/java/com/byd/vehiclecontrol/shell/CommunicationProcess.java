@@ -12,7 +12,6 @@ public class CommunicationProcess extends ShellProcess {
     private static final String TAG = "CommunicationProcess";
     public static final CommunicationProcess INSTANCE = new CommunicationProcess();
 
-    private static final String ACTION_COMMUNICATION_PROCESS_STARTED = "com.byd.vehiclecontrol.ACTION_COMMUNICATION_PROCESS_STARTED";
     private CommunicationBinder communicationBinder;
 
     private CommunicationProcess() {
@@ -40,14 +39,15 @@ public class CommunicationProcess extends ShellProcess {
 
     private void sendBroadcast() {
         Application currentApplication = ActivityThread.currentApplication();
-        Intent intent = new Intent(ACTION_COMMUNICATION_PROCESS_STARTED);
+        Intent intent = new Intent(CommunicationBinder.ACTION_PROCESS_STARTED);
         intent.setPackage("com.byd.vehiclecontrol");
 
         Log.d(TAG, "Sending broadcast with binder wrapper");
 
         // Передаем Binder через Bundle с Parcelable wrapper
         Bundle bundle = new Bundle();
-        bundle.putBinder("COMMUNICATION_BINDER", communicationBinder);
+        bundle.putBinder(CommunicationBinder.EXTRA_BINDER, communicationBinder);
+        bundle.putInt(CommunicationBinder.EXTRA_PID, android.os.Process.myPid());
         intent.putExtras(bundle);
 
         currentApplication.sendBroadcast(intent);
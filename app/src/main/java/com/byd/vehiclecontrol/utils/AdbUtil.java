@@ -2,6 +2,7 @@ package com.byd.vehiclecontrol.utils;
 
 import android.content.Context;
 import android.util.Log;
+import com.byd.vehiclecontrol.AdbEndpointProbe;
 import java.io.BufferedReader;
 import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
@@ -14,8 +15,8 @@ public class AdbUtil {
 
     public static boolean runShellCommandOnce(Context context, String... commands) {
         try {
-            // Подключаемся к локальному ADB демону
-            Socket socket = new Socket(ADB_HOST, ADB_PORT);
+            // Подключаемся к локальному ADB демону (с таймаутом, результат попадает в общий кэш доступности)
+            Socket socket = AdbEndpointProbe.shared().connect(ADB_HOST, ADB_PORT);
             OutputStreamWriter writer = new OutputStreamWriter(socket.getOutputStream());
             BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
 
@@ -52,13 +53,11 @@ public class AdbUtil {
     }
 
     public static boolean isAdbConnectable(Context context) {
-        try {
-            Socket socket = new Socket(ADB_HOST, ADB_PORT);
-            socket.close();
-            return true;
-        } catch (Exception e) {
-            Log.w(TAG, "ADB not connectable: " + e.getMessage());
-            return false;
+        // Свежий результат берется из общего кэша, без нового сокета
+        boolean reachable = AdbEndpointProbe.shared().isReachable(ADB_HOST, ADB_PORT);
+        if (!reachable) {
+            Log.w(TAG, "ADB not connectable: " + AdbEndpointProbe.shared().getLastError(ADB_HOST, ADB_PORT));
         }
+        return reachable;
     }
 }
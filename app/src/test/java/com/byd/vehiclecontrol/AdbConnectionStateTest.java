@@ -0,0 +1,120 @@
+package com.byd.vehiclecontrol;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * AdbConnectionState: переход по CAS против безусловного moveTo, disconnect() во время рукопожатия
+ * и ограничение журнала переходов.
+ */
+public class AdbConnectionStateTest {
+
+    @Test
+    public void transition_failsAfterMoveTo() {
+        AdbConnectionState state = new AdbConnectionState();
+        assertTrue(state.transition(AdbConnectionState.DISCONNECTED, AdbConnectionState.CONNECTING, "connect"));
+
+        // disconnect() пришел, пока шло рукопожатие
+        assertEquals(AdbConnectionState.CONNECTING, state.moveTo(AdbConnectionState.DISCONNECTED, "disconnect"));
+        assertFalse(state.transition(AdbConnectionState.CONNECTING, AdbConnectionState.CONNECTED, "handshake"));
+
+        assertEquals(AdbConnectionState.DISCONNECTED, state.get());
+        List<AdbConnectionState.Transition> history = state.getHistory();
+        assertEquals(2, history.size());
+        assertEquals(AdbConnectionState.DISCONNECTED, history.get(1).to);
+        assertEquals("disconnect", history.get(1).reason);
+    }
+
+    @Test
+    public void moveTo_sameStateIsNotRecorded() {
+        AdbConnectionState state = new AdbConnectionState();
+
+        assertEquals(AdbConnectionState.DISCONNECTED, state.moveTo(AdbConnectionState.DISCONNECTED, "disconnect"));
+        assertTrue(state.getHistory().isEmpty());
+
+        state.moveTo(AdbConnectionState.CONNECTING, "connect");
+        assertEquals(AdbConnectionState.CONNECTING, state.moveTo(AdbConnectionState.CONNECTING, "connect"));
+        assertEquals(1, state.getHistory().size());
+    }
+
+    @Test
+    public void transition_onlyOneConcurrentCallerWins() throws Exception {
+        for (int round = 0; round < 200; round++) {
+            AdbConnectionState state = new AdbConnectionState();
+            AtomicInteger winners = new AtomicInteger();
+            CountDownLatch start = new CountDownLatch(1);
+            Thread[] threads = new Thread[4];
+            for (int i = 0; i < threads.length; i++) {
+                threads[i] = new Thread(() -> {
+                    awaitQuietly(start);
+                    if (state.transition(AdbConnectionState.DISCONNECTED, AdbConnectionState.CONNECTING, "connect")) {
+                        winners.incrementAndGet();
+                    }
+                });
+                threads[i].start();
+            }
+            start.countDown();
+            for (Thread thread : threads) {
+                thread.join(5000);
+            }
+
+            assertEquals(1, winners.get());
+            assertEquals(1, state.getHistory().size());
+        }
+    }
+
+    @Test
+    public void disconnect_winsOverInFlightHandshake() throws Exception {
+        for (int round = 0; round < 200; round++) {
+            AdbConnectionState state = new AdbConnectionState();
+            state.moveTo(AdbConnectionState.CONNECTING, "connect");
+            AtomicBoolean connected = new AtomicBoolean();
+            CountDownLatch start = new CountDownLatch(1);
+
+            Thread handshake = new Thread(() -> {
+                awaitQuietly(start);
+                connected.set(state.transition(AdbConnectionState.CONNECTING, AdbConnectionState.CONNECTED,
+                        "handshake"));
+            });
+            handshake.start();
+            start.countDown();
+            state.moveTo(AdbConnectionState.DISCONNECTED, "disconnect");
+            handshake.join(5000);
+
+            // В любом порядке итог - DISCONNECTED; CONNECTED в журнале только если рукопожатие успело первым
+            assertEquals(AdbConnectionState.DISCONNECTED, state.get());
+            List<AdbConnectionState.Transition> history = state.getHistory();
+            assertEquals(AdbConnectionState.DISCONNECTED, history.get(history.size() - 1).to);
+            assertEquals(connected.get() ? 3 : 2, history.size());
+        }
+    }
+
+    @Test
+    public void history_keepsLast32Transitions() {
+        AdbConnectionState state = new AdbConnectionState();
+        for (int i = 0; i < 40; i++) {
+            state.moveTo(i % 2 == 0 ? AdbConnectionState.CONNECTING : AdbConnectionState.FAILED, "attempt " + i);
+        }
+
+        List<AdbConnectionState.Transition> history = state.getHistory();
+        assertEquals(32, history.size());
+        // Старые вытеснены, порядок - от старых к новым
+        assertEquals("attempt 8", history.get(0).reason);
+        assertEquals("attempt 39", history.get(31).reason);
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
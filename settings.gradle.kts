@@ -22,4 +22,5 @@ dependencyResolutionManagement {
 
 rootProject.name = "BYDManager"
 include(":app")
+include(":adb")
  
\ No newline at end of file